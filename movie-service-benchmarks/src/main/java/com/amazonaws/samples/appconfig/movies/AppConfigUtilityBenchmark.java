@@ -0,0 +1,101 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import com.amazonaws.samples.appconfig.utils.ConfigurationRefresher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link AppConfigUtility#getConfiguration(ConfigurationKey)} on its three paths, against a
+ * {@link StubAppConfigClient} that answers without delay, so the numbers are the cost of the utility itself.
+ *
+ * <ul>
+ *     <li>{@code hit}: the item is cached and fresh.</li>
+ *     <li>{@code miss}: the cache is empty; includes creating the cache and the utility.</li>
+ *     <li>{@code expired}: the item is cached but its TTL has run out and it is reloaded inline.</li>
+ *     <li>{@code expiredServedStale}: as {@code expired}, but a {@link ConfigurationRefresher} reloads it in the
+ *     background while the stale item is returned.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AppConfigUtilityBenchmark {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("MyContainerApplication",
+            "MyContainerApplicationProductionEnvironment", "MyContainerApplicationConfigurationProfile");
+
+    @Param({"10"})
+    public int movieCount;
+
+    private StubAppConfigClient client;
+    private AppConfigUtility fresh;
+    private AppConfigUtility expired;
+    private AppConfigUtility servedStale;
+    private ConfigurationRefresher refresher;
+
+    @Setup
+    public void setUp() {
+        client = new StubAppConfigClient(0, movieCount);
+        fresh = utility(new ConfigurationCache(), Duration.ofHours(1));
+        expired = utility(new ConfigurationCache(), Duration.ZERO);
+        final ConfigurationCache staleCache = new ConfigurationCache();
+        servedStale = utility(staleCache, Duration.ZERO);
+        refresher = new ConfigurationRefresher(servedStale, staleCache, Duration.ZERO, Duration.ZERO,
+                Executors.newSingleThreadScheduledExecutor());
+        fresh.getConfiguration(KEY);
+        expired.getConfiguration(KEY);
+        servedStale.getConfiguration(KEY);
+        servedStale.setBackgroundRefresher(refresher);
+    }
+
+    @TearDown
+    public void tearDown() {
+        refresher.close();
+    }
+
+    @Benchmark
+    public GetConfigurationResponse hit() {
+        return fresh.getConfiguration(KEY);
+    }
+
+    @Benchmark
+    public GetConfigurationResponse miss() {
+        return utility(new ConfigurationCache(), Duration.ofHours(1)).getConfiguration(KEY);
+    }
+
+    @Benchmark
+    public GetConfigurationResponse expired() {
+        return expired.getConfiguration(KEY);
+    }
+
+    @Benchmark
+    public GetConfigurationResponse expiredServedStale() {
+        return servedStale.getConfiguration(KEY);
+    }
+
+    private AppConfigUtility utility(final ConfigurationCache cache, final Duration ttl) {
+        return new AppConfigUtility(client, cache, ttl, UUID.randomUUID().toString());
+    }
+}
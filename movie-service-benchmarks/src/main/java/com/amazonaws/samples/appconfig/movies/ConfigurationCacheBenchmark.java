@@ -0,0 +1,87 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.cache.ConfigurationCacheItem;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link ConfigurationCache} reads and writes from several threads at once.
+ *
+ * <p>{@code keyCount} controls contention: with one key every thread reads and replaces the same entry. The cache is
+ * bounded to {@code keyCount} entries so that writes never evict.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigurationCacheBenchmark {
+
+    @Param({"1", "64"})
+    public int keyCount;
+
+    private ConfigurationCache cache;
+    private ConfigurationKey[] keys;
+    private ConfigurationCacheItem<GetConfigurationResponse> item;
+
+    @Setup
+    public void setUp() {
+        cache = new ConfigurationCache(keyCount, Long.MAX_VALUE, Duration.ofMinutes(5), Duration.ofHours(1));
+        keys = new ConfigurationKey[keyCount];
+        item = new ConfigurationCacheItem<>(Duration.ofSeconds(30));
+        item.setValue(GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String(StubAppConfigClient.moviesJson(10)))
+                .configurationVersion("1")
+                .build());
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = new ConfigurationKey("MyContainerApplication", "MyContainerApplicationProductionEnvironment",
+                    "profile-" + i);
+            cache.put(keys[i], item);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ConfigurationCacheItem<GetConfigurationResponse> get() {
+        return cache.get(randomKey());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(6)
+    public ConfigurationCacheItem<GetConfigurationResponse> readWriteGet() {
+        return cache.get(randomKey());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public void readWritePut() {
+        cache.put(randomKey(), item);
+    }
+
+    private ConfigurationKey randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+}
@@ -0,0 +1,265 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.VirtualThreads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test of {@code /movies/getMovies} against {@code /movies/getMoviesAsync} during a refresh storm: background
+ * refresh is off and the TTL is short, so every time the configuration expires all concurrent requests wait for the
+ * same reload from an AppConfig stub with a fixed latency. The blocking endpoint holds a Tomcat worker per waiting
+ * request; the asynchronous one releases it. On Java 21 and later the blocking endpoint is run a second time with
+ * {@code appconfig.virtualThreads=true}, where each waiting request holds a virtual thread instead, and the clients run
+ * on virtual threads too, so that tens of thousands of concurrent connections can be opened from one machine:
+ *
+ * <pre>
+ * java -Dloadtest.concurrency=10000 -Dloadtest.thinkMillis=2000 -cp target/benchmarks.jar com.amazonaws.samples.appconfig.movies.EndpointLoadTest
+ * </pre>
+ *
+ * <p>Each endpoint runs against a fresh application on a random port. The test reports throughput, latency
+ * percentiles, the peak number of Tomcat worker threads (platform threads only, so none with virtual threads) and the number of AppConfig calls. Settings are system
+ * properties:
+ *
+ * <pre>
+ * java -Dloadtest.concurrency=400 -cp target/benchmarks.jar com.amazonaws.samples.appconfig.movies.EndpointLoadTest
+ * </pre>
+ *
+ * <ul>
+ *     <li>{@code loadtest.concurrency}: concurrent clients (default 256).</li>
+ *     <li>{@code loadtest.thinkMillis}: mean pause of each client between two requests, drawn uniformly from zero to
+ *     twice the mean so the clients do not fall into step with the TTL (default 0, back to back). Use it to
+ *     keep the offered load below what the machine can serve, so that queueing for CPU does not hide the difference.</li>
+ *     <li>{@code loadtest.warmupSeconds}, {@code loadtest.durationSeconds}: length of the unrecorded and recorded
+ *     phases (default 5 and 20).</li>
+ *     <li>{@code loadtest.latencyMillis}: AppConfig latency (default 200).</li>
+ *     <li>{@code loadtest.ttlSeconds}: configuration TTL (default 1).</li>
+ *     <li>{@code loadtest.maxThreads}: Tomcat worker threads (default 200, the Tomcat default).</li>
+ *     <li>{@code loadtest.movieCount}: movies in the configuration (default 100).</li>
+ * </ul>
+ */
+public final class EndpointLoadTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 256);
+    private static final int THINK_MILLIS = Integer.getInteger("loadtest.thinkMillis", 0);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmupSeconds", 5);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.durationSeconds", 20);
+    private static final int LATENCY_MILLIS = Integer.getInteger("loadtest.latencyMillis", 200);
+    private static final int TTL_SECONDS = Integer.getInteger("loadtest.ttlSeconds", 1);
+    private static final int MAX_THREADS = Integer.getInteger("loadtest.maxThreads", 200);
+    private static final int MOVIE_COUNT = Integer.getInteger("loadtest.movieCount", 100);
+
+    private EndpointLoadTest() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        // keep one connection per client alive instead of the default five
+        System.setProperty("http.maxConnections", String.valueOf(CONCURRENCY));
+        // start every run with an empty cache; an empty value cannot be passed as a command line argument
+        System.setProperty("appconfig.snapshotDirectory", "");
+        System.out.printf("concurrency=%d, think time=%d ms, AppConfig latency=%d ms, TTL=%d s, Tomcat max threads=%d, "
+                        + "%d s per endpoint, virtual threads %s%n",
+                CONCURRENCY, THINK_MILLIS, LATENCY_MILLIS, TTL_SECONDS, MAX_THREADS, DURATION_SECONDS,
+                VirtualThreads.isSupported() ? "supported" : "not supported");
+
+        final List<Result> results = new ArrayList<>();
+        results.add(run("/movies/getMovies", "/movies/getMovies", false));
+        results.add(run("/movies/getMoviesAsync", "/movies/getMoviesAsync", false));
+        if (VirtualThreads.isSupported()) {
+            results.add(run("/movies/getMovies", "/movies/getMovies (virtual)", true));
+        }
+
+        System.out.println();
+        System.out.printf("%-28s %10s %8s %9s %9s %9s %9s %15s %10s%n",
+                "endpoint", "requests/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "peak workers", "upstream");
+        for (final Result result : results) {
+            System.out.printf("%-28s %10.0f %8d %9.1f %9.1f %9.1f %9.1f %15d %10d%n",
+                    result.name,
+                    result.latenciesNanos.length / (double) DURATION_SECONDS,
+                    result.errors,
+                    millis(result.percentile(0.50)),
+                    millis(result.percentile(0.99)),
+                    millis(result.percentile(0.999)),
+                    millis(result.percentile(1.0)),
+                    result.peakWorkerThreads,
+                    result.upstreamCalls);
+        }
+    }
+
+    private static Result run(final String path, final String name, final boolean virtualThreads) throws Exception {
+        final Set<Thread> previousWorkers = workerThreads(Collections.<Thread>emptySet());
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder(MoviesApplication.class, StubClients.class)
+                .run("--server.port=0",
+                        "--server.tomcat.max-threads=" + MAX_THREADS,
+                        // the Tomcat default of 10000 connections would turn clients away at the highest concurrency
+                        "--server.tomcat.max-connections=" + Math.max(10_000, 2 * CONCURRENCY),
+                        "--server.tomcat.accept-count=" + CONCURRENCY,
+                        "--appconfig.virtualThreads=" + virtualThreads,
+                        "--appconfig.retrieval=legacy",
+                        "--appconfig.backgroundRefresh=false",
+                        "--appconfig.cacheTtlInSeconds=" + TTL_SECONDS);
+        try {
+            final StubAppConfigClient client = context.getBean(StubAppConfigClient.class);
+            final StubAppConfigAsyncClient asyncClient = context.getBean(StubAppConfigAsyncClient.class);
+            final URL url = new URL("http://localhost:" + context.getEnvironment().getProperty("local.server.port") + path);
+            System.out.println("Running " + name);
+            final Load warmup = Load.start(url);
+            TimeUnit.SECONDS.sleep(WARMUP_SECONDS);
+            warmup.stop();
+
+            final long upstreamCallsBefore = client.getCalls() + asyncClient.getCalls();
+            final Load load = Load.start(url);
+            int peakWorkerThreads = 0;
+            final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+            while (System.nanoTime() < end) {
+                peakWorkerThreads = Math.max(peakWorkerThreads, workerThreads(previousWorkers).size());
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+            final Result result = load.stop();
+            result.name = name;
+            result.peakWorkerThreads = peakWorkerThreads;
+            result.upstreamCalls = client.getCalls() + asyncClient.getCalls() - upstreamCallsBefore;
+            return result;
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * @return the live Tomcat worker threads, other than the given ones left over from a previous run.
+     */
+    private static Set<Thread> workerThreads(final Set<Thread> excluded) {
+        final Set<Thread> workers = new HashSet<>();
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("http-nio-") && thread.getName().contains("-exec-")
+                    && !excluded.contains(thread)) {
+                workers.add(thread);
+            }
+        }
+        return workers;
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Makes the stubs the clients the service is wired with, instead of the real ones which are never created.
+     */
+    public static class StubClients {
+        @Bean
+        @Primary
+        public StubAppConfigClient stubAppConfigClient() {
+            return new StubAppConfigClient(LATENCY_MILLIS, MOVIE_COUNT);
+        }
+
+        @Bean
+        @Primary
+        public StubAppConfigAsyncClient stubAppConfigAsyncClient() {
+            return new StubAppConfigAsyncClient(LATENCY_MILLIS, MOVIE_COUNT);
+        }
+    }
+
+    /**
+     * {@link #CONCURRENCY} clients sending requests, {@link #THINK_MILLIS} apart, until stopped. The clients are
+     * virtual threads where supported.
+     */
+    private static final class Load {
+        private final ExecutorService clients = VirtualThreads.isSupported()
+                ? VirtualThreads.newThreadPerTaskExecutor("loadtest-client-") : Executors.newFixedThreadPool(CONCURRENCY);
+        private final List<Future<long[]>> latencies = new ArrayList<>();
+        private final AtomicInteger errors = new AtomicInteger();
+        private volatile boolean running = true;
+
+        static Load start(final URL url) {
+            final Load load = new Load();
+            for (int i = 0; i < CONCURRENCY; i++) {
+                load.latencies.add(load.clients.submit(() -> load.send(url)));
+            }
+            return load;
+        }
+
+        Result stop() throws Exception {
+            running = false;
+            final Result result = new Result();
+            long[] all = new long[0];
+            for (final Future<long[]> client : latencies) {
+                final long[] clientLatencies = client.get();
+                final int offset = all.length;
+                all = Arrays.copyOf(all, offset + clientLatencies.length);
+                System.arraycopy(clientLatencies, 0, all, offset, clientLatencies.length);
+            }
+            clients.shutdown();
+            Arrays.sort(all);
+            result.latenciesNanos = all;
+            result.errors = errors.get();
+            return result;
+        }
+
+        private long[] send(final URL url) {
+            long[] latenciesNanos = new long[1024];
+            int count = 0;
+            final byte[] buffer = new byte[8192];
+            while (running) {
+                final long start = System.nanoTime();
+                try {
+                    final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                    if (connection.getResponseCode() != 200) {
+                        errors.incrementAndGet();
+                    }
+                    try (InputStream body = connection.getInputStream()) {
+                        while (body.read(buffer) >= 0) {
+                            // drain, so the connection can be reused
+                        }
+                    }
+                } catch (final IOException e) {
+                    errors.incrementAndGet();
+                    continue;
+                }
+                if (count == latenciesNanos.length) {
+                    latenciesNanos = Arrays.copyOf(latenciesNanos, count * 2);
+                }
+                latenciesNanos[count++] = System.nanoTime() - start;
+                if (THINK_MILLIS > 0) {
+                    LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(TimeUnit.MILLISECONDS.toNanos(2 * THINK_MILLIS)));
+                }
+            }
+            return Arrays.copyOf(latenciesNanos, count);
+        }
+    }
+
+    private static final class Result {
+        private String name;
+        private long[] latenciesNanos;
+        private int errors;
+        private int peakWorkerThreads;
+        private long upstreamCalls;
+
+        long percentile(final double percentile) {
+            if (latenciesNanos.length == 0) {
+                return 0;
+            }
+            final int index = (int) Math.ceil(percentile * latenciesNanos.length) - 1;
+            return latenciesNanos[Math.max(0, index)];
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.HTMLBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to turn the movies into response bytes: {@code string} builds the page with
+ * {@link HTMLBuilder#getMoviesHtml(Movie[])} and encodes it, {@code streaming} writes it with
+ * {@link HTMLBuilder#writeMoviesHtml(Movie[], OutputStream)} to a stream that discards the bytes, and {@code catalog}
+ * writes it the same way from a {@link MovieCatalog}.
+ *
+ * <p>The {@link MovieFragments} benchmarks start from movies already rendered: {@code fragments} writes them to the
+ * same stream, {@code assembled} copies them into the page array that a pre-rendered {@link MoviesPage} keeps, and
+ * {@code rerender} builds that array for a new version where one movie was renamed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HTMLBuilderBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int movieCount;
+
+    private Movie[] movies;
+    private MovieCatalog catalog;
+    private HTMLBuilder htmlBuilder;
+    private MovieFragments fragments;
+    private MovieCatalog renamedCatalog;
+
+    @Setup
+    public void setUp() {
+        movies = new Movie[movieCount];
+        for (int i = 0; i < movieCount; i++) {
+            movies[i] = new Movie((long) i + 1, "Movie number " + (i + 1));
+        }
+        catalog = MovieCatalog.of(movies);
+        htmlBuilder = new HTMLBuilder();
+        fragments = MovieFragments.render(catalog);
+        final Movie[] renamed = movies.clone();
+        renamed[movieCount / 2] = new Movie(renamed[movieCount / 2].getId(), "Renamed movie");
+        renamedCatalog = MovieCatalog.of(renamed);
+    }
+
+    @Benchmark
+    public byte[] string() {
+        return htmlBuilder.getMoviesHtml(movies).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long streaming() throws IOException {
+        final CountingOutputStream out = new CountingOutputStream();
+        htmlBuilder.writeMoviesHtml(movies, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long catalog() throws IOException {
+        final CountingOutputStream out = new CountingOutputStream();
+        htmlBuilder.writeMoviesHtml(catalog, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long fragments() throws IOException {
+        final CountingOutputStream out = new CountingOutputStream();
+        fragments.writeHtml(out);
+        return out.count;
+    }
+
+    @Benchmark
+    public byte[] assembled() {
+        return fragments.toHtml();
+    }
+
+    @Benchmark
+    public byte[] rerender() {
+        return fragments.update(renamedCatalog).toHtml();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+}
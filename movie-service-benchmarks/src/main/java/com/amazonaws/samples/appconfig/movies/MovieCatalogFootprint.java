@@ -0,0 +1,72 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.MovieJsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * Heap retained by the movies of one configuration as {@link Movie} objects and as a {@link MovieCatalog}. Each
+ * representation is decoded {@code footprint.copies} times from the same document, as if that many versions were
+ * cached, and the growth of the heap after a full collection is divided by the number of movies.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.amazonaws.samples.appconfig.movies.MovieCatalogFootprint
+ * </pre>
+ *
+ * <ul>
+ *     <li>{@code footprint.movieCount}: movies in the configuration (default 100000).</li>
+ *     <li>{@code footprint.copies}: copies kept alive (default 10).</li>
+ * </ul>
+ */
+public final class MovieCatalogFootprint {
+
+    private static final int MOVIE_COUNT = Integer.getInteger("footprint.movieCount", 100_000);
+    private static final int COPIES = Integer.getInteger("footprint.copies", 10);
+
+    private MovieCatalogFootprint() {
+    }
+
+    public static void main(final String[] args) {
+        final byte[] json = StubAppConfigClient.moviesJson(MOVIE_COUNT).getBytes(StandardCharsets.UTF_8);
+        final MovieJsonParser parser = new MovieJsonParser();
+
+        final double movies = bytesPerMovie(json, content -> parser.getMovies(new ByteArrayInputStream(content)));
+        final double catalog = bytesPerMovie(json,
+                content -> parser.getMovieCatalog(new ByteArrayInputStream(content)));
+        final MovieCatalog sample = parser.getMovieCatalog(new ByteArrayInputStream(json));
+
+        System.out.printf("%d movies, %d copies, JVM %s%n", MOVIE_COUNT, COPIES, System.getProperty("java.version"));
+        System.out.printf("%-12s %15s %15s%n", "", "bytes/movie", "MB/version");
+        System.out.printf("%-12s %15.1f %15.2f%n", "Movie[]", movies, movies * MOVIE_COUNT / 1e6);
+        System.out.printf("%-12s %15.1f %15.2f%n", "MovieCatalog", catalog, catalog * MOVIE_COUNT / 1e6);
+        System.out.printf("MovieCatalog arrays alone: %.1f bytes/movie%n", sample.getDataSize() / (double) MOVIE_COUNT);
+    }
+
+    private static double bytesPerMovie(final byte[] json, final Function<byte[], Object> decode) {
+        final Object[] retained = new Object[COPIES];
+        final long before = usedHeapAfterGc();
+        for (int i = 0; i < COPIES; i++) {
+            retained[i] = decode.apply(json);
+        }
+        final long after = usedHeapAfterGc();
+        if (retained[COPIES - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / (double) COPIES / MOVIE_COUNT;
+    }
+
+    private static long usedHeapAfterGc() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // a few rounds, since one System.gc() may not collect everything
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
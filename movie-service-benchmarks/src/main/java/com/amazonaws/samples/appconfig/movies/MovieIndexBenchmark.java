@@ -0,0 +1,83 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link MovieIndex} queries behind the /movies endpoints: looking up one movie by id, reading a page of
+ * 100 movies and a page of 100 movies by name prefix, and building the index once per configuration version, from
+ * scratch or from the index of a previous version that differs by one renamed movie.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MovieIndexBenchmark {
+
+    @Param({"1000", "100000"})
+    public int movieCount;
+
+    private MovieCatalog movies;
+    private MovieIndex index;
+    private MovieCatalog renamedMovies;
+
+    @Setup
+    public void setUp() {
+        final MovieCatalog.Builder builder = new MovieCatalog.Builder(movieCount);
+        for (int i = 0; i < movieCount; i++) {
+            builder.add((long) i + 1, "Movie number " + (i + 1));
+        }
+        movies = builder.build();
+        index = new MovieIndex(movies);
+        final MovieCatalog.Builder renamed = new MovieCatalog.Builder(movieCount);
+        for (int i = 0; i < movieCount; i++) {
+            if (i == movieCount / 2) {
+                renamed.add(movies.getId(i), "Renamed movie");
+            } else {
+                renamed.add(movies, i);
+            }
+        }
+        renamedMovies = renamed.build();
+    }
+
+    @Benchmark
+    public Movie findById() {
+        return index.findById(ThreadLocalRandom.current().nextInt(movieCount) + 1);
+    }
+
+    @Benchmark
+    public MovieCatalog page() {
+        return index.page(ThreadLocalRandom.current().nextInt(movieCount / 100), 100);
+    }
+
+    @Benchmark
+    public MovieCatalog findByNamePrefix() {
+        return index.findByNamePrefix("Movie number " + (ThreadLocalRandom.current().nextInt(9) + 1), 0, 100);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public MovieIndex build() {
+        return new MovieIndex(movies);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public MovieIndex update() {
+        return MovieIndex.update(index, renamedMovies);
+    }
+}
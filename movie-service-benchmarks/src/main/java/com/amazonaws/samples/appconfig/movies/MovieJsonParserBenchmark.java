@@ -0,0 +1,74 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.MovieJsonParser;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.core.SdkBytes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to decode the movies configuration into {@link Movie} objects.
+ *
+ * <p>{@code jsonObject} is the previous controller code (UTF-8 string, {@code JSONObject} tree, {@code JSONArray},
+ * list, array); {@code streaming} is {@link MovieJsonParser} reading straight from the {@link SdkBytes} stream;
+ * {@code catalog} is the same parser filling a {@link MovieCatalog} instead.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar MovieJsonParserBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MovieJsonParserBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int movieCount;
+
+    private SdkBytes content;
+    private MovieJsonParser parser;
+
+    @Setup
+    public void setUp() {
+        content = SdkBytes.fromUtf8String(StubAppConfigClient.moviesJson(movieCount));
+        parser = new MovieJsonParser();
+    }
+
+    @Benchmark
+    public Movie[] jsonObject() {
+        final JSONArray moviesArray = new JSONObject(content.asUtf8String()).getJSONArray("movies");
+        final List<Movie> movieList = new ArrayList<>();
+        for (int i = 0; i < moviesArray.length(); i++) {
+            final JSONObject movieObj = moviesArray.getJSONObject(i);
+            movieList.add(new Movie(movieObj.getLong("id"), movieObj.getString("movieName")));
+        }
+        return movieList.toArray(new Movie[0]);
+    }
+
+    @Benchmark
+    public Movie[] streaming() {
+        return parser.getMovies(content.asInputStream());
+    }
+
+    @Benchmark
+    public MovieCatalog catalog() {
+        return parser.getMovieCatalog(content.asInputStream());
+    }
+}
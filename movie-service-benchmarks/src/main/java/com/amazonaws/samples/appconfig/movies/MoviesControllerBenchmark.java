@@ -0,0 +1,97 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second of {@code /movies/getMovies} against {@link StubAppConfigClient}.
+ *
+ * <p>{@code perRequestUtility} reproduces the old controller behaviour (a new {@link AppConfigUtility}, an empty
+ * {@link ConfigurationCache} and a random client id for every request, so every request goes upstream);
+ * {@code sharedUtility} uses the singleton wiring from {@link MoviesConfiguration}. The old code also built a new
+ * {@code AppConfigClient} per request, which the stub does not model, so the "before" numbers are optimistic.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar MoviesControllerBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class MoviesControllerBenchmark {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("MyContainerApplication",
+            "MyContainerApplicationProductionEnvironment", "MyContainerApplicationConfigurationProfile");
+    private static final Duration TTL = Duration.ofSeconds(30);
+
+    @State(Scope.Benchmark)
+    public static class Upstream {
+        @Param({"5"})
+        public long latencyMillis;
+
+        @Param({"10"})
+        public int movieCount;
+
+        StubAppConfigClient client;
+        AppConfigUtility sharedUtility;
+
+        @Setup
+        public void setUp() {
+            client = new StubAppConfigClient(latencyMillis, movieCount);
+            sharedUtility = new AppConfigUtility(client, new ConfigurationCache(), TTL, UUID.randomUUID().toString());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Controller {
+        MoviesController controller;
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+        @Setup
+        public void setUp() {
+            controller = new MoviesController();
+            controller.moviesConfigurationKey = KEY;
+        }
+
+        int respond() throws IOException {
+            response.reset();
+            controller.movie(null).getBody().writeHtml(response);
+            return response.size();
+        }
+    }
+
+    @Benchmark
+    public int perRequestUtility(final Upstream upstream, final Controller state) throws IOException {
+        state.controller.appConfigUtility = new AppConfigUtility(upstream.client, new ConfigurationCache(), TTL,
+                UUID.randomUUID().toString());
+        return state.respond();
+    }
+
+    @Benchmark
+    public int sharedUtility(final Upstream upstream, final Controller state) throws IOException {
+        state.controller.appConfigUtility = upstream.sharedUtility;
+        return state.respond();
+    }
+}
@@ -0,0 +1,60 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.AppConfigAsyncClient;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationRequest;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous counterpart of {@link StubAppConfigClient}. Calls return at once and complete after the latency on a
+ * single timer thread, the way a non-blocking HTTP client completes responses on its event loop, so no thread is held
+ * for the duration of the round trip.
+ */
+public class StubAppConfigAsyncClient implements AppConfigAsyncClient {
+
+    private final long latencyMillis;
+    private final GetConfigurationResponse response;
+    private final AtomicLong calls = new AtomicLong();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "stub-appconfig-async");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StubAppConfigAsyncClient(final long latencyMillis, final int movieCount) {
+        this.latencyMillis = latencyMillis;
+        this.response = GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String(StubAppConfigClient.moviesJson(movieCount)))
+                .configurationVersion("1")
+                .contentType("application/json")
+                .build();
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public CompletableFuture<GetConfigurationResponse> getConfiguration(final GetConfigurationRequest request) {
+        calls.incrementAndGet();
+        final CompletableFuture<GetConfigurationResponse> future = new CompletableFuture<>();
+        timer.schedule(() -> future.complete(response), latencyMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
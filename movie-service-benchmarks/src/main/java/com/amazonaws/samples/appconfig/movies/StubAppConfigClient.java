@@ -0,0 +1,66 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.AppConfigClient;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationRequest;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Local stand-in for the AppConfig endpoint. Every call parks the calling thread for a fixed latency to simulate the
+ * network round trip and then returns a catalogue of the requested size.
+ */
+public class StubAppConfigClient implements AppConfigClient {
+
+    private final long latencyNanos;
+    private final GetConfigurationResponse response;
+    private final AtomicLong calls = new AtomicLong();
+
+    public StubAppConfigClient(final long latencyMillis, final int movieCount) {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        this.response = GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String(moviesJson(movieCount)))
+                .configurationVersion("1")
+                .contentType("application/json")
+                .build();
+    }
+
+    /**
+     * Builds a configuration document in the same shape as the one described in the README.
+     */
+    public static String moviesJson(final int movieCount) {
+        final StringBuilder json = new StringBuilder("{\"movies\":[");
+        for (int i = 1; i <= movieCount; i++) {
+            if (i > 1) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i).append(",\"movieName\":\"Movie number ").append(i).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public GetConfigurationResponse getConfiguration(final GetConfigurationRequest request) {
+        calls.incrementAndGet();
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+        return response;
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
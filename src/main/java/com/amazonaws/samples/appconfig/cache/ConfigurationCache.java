@@ -1,26 +1,468 @@
 package com.amazonaws.samples.appconfig.cache;
 
 import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
+/**
+ * Cache of configurations keyed by application, environment and configuration profile.
+ *
+ * <p>The cache is bounded by the number of entries and by the total size of the cached configuration payloads. When a
+ * put exceeds either bound, the least recently read entries are evicted. Entries that have not been read for
+ * {@code maxIdle}, and negative entries (a cached exception without a value) older than {@code negativeEntryTtl}, are
+ * expired on read and on every {@link #cleanUp()}.
+ *
+ * <p>Code that derives something from a configuration can {@link #addChangeListener subscribe} to its key and rebuild
+ * when the cached version changes, instead of comparing versions on every read.
+ */
 public class ConfigurationCache {
-    private final ConcurrentHashMap<ConfigurationKey, ConfigurationCacheItem<GetConfigurationResponse>> cache
+    private static final Logger logger = LogManager.getLogger(ConfigurationCache.class);
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final ConcurrentHashMap<ConfigurationKey, Entry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ConfigurationKey, CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>>> loads
             = new ConcurrentHashMap<>();
 
+    private final long maxEntries;
+    private final long maxWeightInBytes;
+    private final long negativeEntryTtlMillis;
+    private final long maxIdleMillis;
+    private final Clock clock;
+    private final AtomicLong weightInBytes = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private volatile ConfigurationSnapshotStore snapshotStore;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    /**
+     * Creates an unbounded cache whose entries never expire.
+     */
+    public ConfigurationCache() {
+        this(UNBOUNDED, UNBOUNDED, null, null, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructor for ConfigurationCache.
+     *
+     * @param maxEntries       maximum number of cached configurations.
+     * @param maxWeightInBytes maximum total size of the cached configuration contents.
+     * @param negativeEntryTtl how long a cached exception is kept, or null to keep it until it is replaced.
+     * @param maxIdle          how long an entry is kept without being read, or null to keep it until it is evicted.
+     */
+    public ConfigurationCache(final long maxEntries,
+                              final long maxWeightInBytes,
+                              final Duration negativeEntryTtl,
+                              final Duration maxIdle) {
+        this(maxEntries, maxWeightInBytes, negativeEntryTtl, maxIdle, Clock.systemDefaultZone());
+    }
+
+    public ConfigurationCache(final long maxEntries,
+                              final long maxWeightInBytes,
+                              final Duration negativeEntryTtl,
+                              final Duration maxIdle,
+                              final Clock clock) {
+        if (maxEntries < 1 || maxWeightInBytes < 0) {
+            throw new IllegalArgumentException("maxEntries must be positive and maxWeightInBytes must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeightInBytes = maxWeightInBytes;
+        this.negativeEntryTtlMillis = negativeEntryTtl == null ? UNBOUNDED : negativeEntryTtl.toMillis();
+        this.maxIdleMillis = maxIdle == null ? UNBOUNDED : maxIdle.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached item for the given key and records the read as a hit or a miss. Expired entries are removed
+     * and reported as a miss.
+     */
     public ConfigurationCacheItem<GetConfigurationResponse> get(final ConfigurationKey key) {
-        return cache.get(key);
+        final Entry entry = cache.get(key);
+        final long now = clock.millis();
+        if (entry == null || expireIfNeeded(key, entry, now)) {
+            missCount.increment();
+            return null;
+        }
+        entry.lastAccessMillis = now;
+        hitCount.increment();
+        return entry.item;
+    }
+
+    /**
+     * Returns the cached item for the given key without recording a read, so that loads and background refreshes
+     * neither skew the hit rate nor keep unused entries alive.
+     */
+    public ConfigurationCacheItem<GetConfigurationResponse> peek(final ConfigurationKey key) {
+        final Entry entry = cache.get(key);
+        return entry == null ? null : entry.item;
     }
 
     public void put(final ConfigurationKey key, final ConfigurationCacheItem<GetConfigurationResponse> value) {
-        cache.put(key, value);
+        final long now = clock.millis();
+        final Entry[] replaced = new Entry[1];
+        final Entry entry = cache.compute(key, (k, previous) -> {
+            replaced[0] = previous;
+            return new Entry(value, weigh(value), previous, now);
+        });
+        weightInBytes.addAndGet(entry.weight - (replaced[0] == null ? 0 : replaced[0].weight));
+        evictIfNeeded(key);
+        if (value.getValue() != null && isChange(replaced[0] == null ? null : replaced[0].item.getValue(), value.getValue())) {
+            for (final Subscription subscription : subscriptions) {
+                if (subscription.key.equals(key)) {
+                    subscription.schedule();
+                }
+            }
+        }
+        final ConfigurationSnapshotStore store = snapshotStore;
+        if (store != null && value.getValue() != null) {
+            store.saveAsync(key, value.getValue());
+        }
+    }
+
+    /**
+     * Fills the cache with the configurations saved in the store and saves every configuration put from now on. The
+     * loaded items are due for refresh immediately: they are served as they are while a background refresh, or the
+     * first request if background refresh is disabled, fetches the current version. If that fetch fails the saved
+     * configuration keeps being served.
+     *
+     * @param store snapshots of the configurations received before the last shutdown.
+     * @param ttl   TTL of the loaded items.
+     * @return number of configurations loaded.
+     */
+    public int warmUp(final ConfigurationSnapshotStore store, final Duration ttl) {
+        int loaded = 0;
+        for (final Map.Entry<ConfigurationKey, GetConfigurationResponse> snapshot : store.loadAll().entrySet()) {
+            if (cache.containsKey(snapshot.getKey())) {
+                continue;
+            }
+            final ConfigurationCacheItem<GetConfigurationResponse> item = new ConfigurationCacheItem<>(ttl, clock);
+            item.setValue(snapshot.getValue());
+            item.setRefreshTime(clock.millis());
+            put(snapshot.getKey(), item);
+            loaded++;
+        }
+        snapshotStore = store;
+        return loaded;
+    }
+
+    /**
+     * Calls the listener on the executor whenever a configuration with a new version is put for the key, and right away
+     * if one is cached already. Calls for one registration never overlap and are coalesced: if the version changes
+     * several times before the listener gets to run, it receives only the latest configuration. The thread that puts the
+     * configuration does not wait for the listener.
+     *
+     * @param key      key of the configuration to follow.
+     * @param listener receives the configurations. Exceptions it throws are logged.
+     * @param executor runs the listener, e.g. a single thread dedicated to configuration changes.
+     */
+    public void addChangeListener(final ConfigurationKey key,
+                                  final ConfigurationChangeListener listener,
+                                  final Executor executor) {
+        final Subscription subscription = new Subscription(key, listener, executor);
+        subscriptions.add(subscription);
+        if (peek(key) != null) {
+            subscription.schedule();
+        }
     }
 
+    public void removeChangeListener(final ConfigurationKey key, final ConfigurationChangeListener listener) {
+        subscriptions.removeIf(subscription -> subscription.key.equals(key) && subscription.listener == listener);
+    }
+
+    /**
+     * @return a snapshot of the cached items. Reading it does not count as a read of the items.
+     */
     public Set<Map.Entry<ConfigurationKey, ConfigurationCacheItem<GetConfigurationResponse>>> entrySet() {
-        return cache.entrySet();
+        final Set<Map.Entry<ConfigurationKey, ConfigurationCacheItem<GetConfigurationResponse>>> entries = new HashSet<>();
+        for (final Map.Entry<ConfigurationKey, Entry> entry : cache.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().item));
+        }
+        return entries;
+    }
+
+    /**
+     * Removes the expired entries and evicts entries until the cache is within its bounds again.
+     */
+    public void cleanUp() {
+        final long now = clock.millis();
+        for (final Map.Entry<ConfigurationKey, Entry> entry : cache.entrySet()) {
+            expireIfNeeded(entry.getKey(), entry.getValue(), now);
+        }
+        evictIfNeeded(null);
+    }
+
+    /**
+     * Runs the loader for the given key unless a load for that key is already in flight, in which case the caller waits
+     * for and shares the result of the running load (single-flight). The loader runs on the calling thread and outside
+     * of any map lock, so a slow load only blocks callers asking for the same key.
+     *
+     * @param key    key to load.
+     * @param loader fetches the item and applies it to this cache.
+     * @return the item returned by the loader, or the exception it threw.
+     */
+    public ConfigurationCacheItem<GetConfigurationResponse> load(
+            final ConfigurationKey key,
+            final Function<ConfigurationKey, ConfigurationCacheItem<GetConfigurationResponse>> loader) {
+        final CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>> load = new CompletableFuture<>();
+        final CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>> runningLoad = loads.putIfAbsent(key, load);
+        if (runningLoad != null) {
+            return await(runningLoad);
+        }
+        try {
+            final ConfigurationCacheItem<GetConfigurationResponse> item = loader.apply(key);
+            load.complete(item);
+            return item;
+        } catch (final RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #load}: starts the loader for the given key unless a load for that key, synchronous
+     * or not, is already in flight, in which case the future of the running load is returned. No thread waits for the
+     * loader; a synchronous {@link #load} of the same key waits for it like for any other running load.
+     *
+     * @param key    key to load.
+     * @param loader starts fetching the item and applies it to this cache when the fetch completes.
+     * @return a future of the item, completed exceptionally if the loader fails.
+     */
+    public CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>> loadAsync(
+            final ConfigurationKey key,
+            final Function<ConfigurationKey, ? extends CompletionStage<ConfigurationCacheItem<GetConfigurationResponse>>> loader) {
+        final CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>> load = new CompletableFuture<>();
+        final CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>> runningLoad = loads.putIfAbsent(key, load);
+        if (runningLoad != null) {
+            return runningLoad;
+        }
+        CompletionStage<ConfigurationCacheItem<GetConfigurationResponse>> stage;
+        try {
+            stage = loader.apply(key);
+        } catch (final RuntimeException | Error e) {
+            final CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            stage = failed;
+        }
+        stage.whenComplete((item, exception) -> {
+            loads.remove(key, load);
+            if (exception == null) {
+                load.complete(item);
+            } else {
+                load.completeExceptionally(exception instanceof CompletionException && exception.getCause() != null
+                        ? exception.getCause() : exception);
+            }
+        });
+        return load;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return total size in bytes of the cached configuration contents.
+     */
+    public long getWeightInBytes() {
+        return weightInBytes.get();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return number of entries removed to keep the cache within its entry count or size bound.
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * @return number of idle or negative entries removed because they expired.
+     */
+    public long getExpirationCount() {
+        return expirationCount.sum();
+    }
+
+    private boolean expireIfNeeded(final ConfigurationKey key, final Entry entry, final long now) {
+        final boolean expired = now - entry.lastAccessMillis >= maxIdleMillis
+                || (entry.negativeSinceMillis >= 0 && now - entry.negativeSinceMillis >= negativeEntryTtlMillis);
+        if (expired && remove(key, entry)) {
+            expirationCount.increment();
+        }
+        return expired;
+    }
+
+    /**
+     * Evicts the least recently read entries, other than the one just written, until both bounds are met. Only one
+     * thread evicts at a time; the others rely on it, or on the next put or clean-up, to restore the bounds.
+     */
+    private void evictIfNeeded(final ConfigurationKey writtenKey) {
+        if (withinBounds() || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            final List<Map.Entry<ConfigurationKey, Entry>> candidates = new ArrayList<>(cache.entrySet());
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastAccessMillis));
+            for (final Map.Entry<ConfigurationKey, Entry> candidate : candidates) {
+                if (withinBounds()) {
+                    break;
+                }
+                if (!candidate.getKey().equals(writtenKey) && remove(candidate.getKey(), candidate.getValue())) {
+                    evictionCount.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean withinBounds() {
+        return cache.size() <= maxEntries && weightInBytes.get() <= maxWeightInBytes;
+    }
+
+    private boolean remove(final ConfigurationKey key, final Entry entry) {
+        if (cache.remove(key, entry)) {
+            weightInBytes.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Configurations without a version are compared by identity, so only a fetched configuration counts as a change.
+     */
+    private static boolean isChange(final GetConfigurationResponse previous, final GetConfigurationResponse current) {
+        if (previous == null) {
+            return true;
+        }
+        final String version = current.configurationVersion();
+        return version == null || previous.configurationVersion() == null
+                ? previous != current : !version.equals(previous.configurationVersion());
+    }
+
+    private static long weigh(final ConfigurationCacheItem<GetConfigurationResponse> item) {
+        final GetConfigurationResponse value = item.getValue();
+        return value == null || value.content() == null ? 0 : value.content().asByteBuffer().remaining();
+    }
+
+    private static ConfigurationCacheItem<GetConfigurationResponse> await(
+            final CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>> load) {
+        try {
+            return load.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A listener with its executor. {@link #pending} counts the changes not yet handled: the first one submits
+     * {@link #deliver()}, which runs until it has caught up with all of them, and each pass reads the cached
+     * configuration at that time rather than the one that triggered it.
+     */
+    private final class Subscription {
+        private final ConfigurationKey key;
+        private final ConfigurationChangeListener listener;
+        private final Executor executor;
+        private final AtomicInteger pending = new AtomicInteger();
+        /**
+         * Last configuration passed to the listener. Only read and written by {@link #deliver()}.
+         */
+        private GetConfigurationResponse delivered;
+
+        private Subscription(final ConfigurationKey key, final ConfigurationChangeListener listener, final Executor executor) {
+            this.key = key;
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::deliver);
+                } catch (final RejectedExecutionException e) {
+                    pending.set(0);
+                    logger.warn("Could not notify the listener of {}", key, e);
+                }
+            }
+        }
+
+        private void deliver() {
+            int handled;
+            do {
+                handled = pending.get();
+                final ConfigurationCacheItem<GetConfigurationResponse> item = peek(key);
+                final GetConfigurationResponse current = item == null ? null : item.getValue();
+                if (current != null && isChange(delivered, current)) {
+                    delivered = current;
+                    try {
+                        listener.onChange(key, current);
+                    } catch (final RuntimeException e) {
+                        logger.warn("Configuration change listener of {} failed", key, e);
+                    }
+                }
+            } while (pending.addAndGet(-handled) != 0);
+        }
+    }
+
+    /**
+     * A cached item with its weight and access bookkeeping. The last read time and, for negative entries, the time the
+     * failure was first cached carry over when the item for a key is replaced, so background refreshes neither keep
+     * unread entries alive nor reset the age of a failure.
+     */
+    private static final class Entry {
+        private final ConfigurationCacheItem<GetConfigurationResponse> item;
+        private final long weight;
+        private final long negativeSinceMillis;
+        private volatile long lastAccessMillis;
+
+        private Entry(final ConfigurationCacheItem<GetConfigurationResponse> item,
+                      final long weight,
+                      final Entry previous,
+                      final long now) {
+            this.item = item;
+            this.weight = weight;
+            if (item.getValue() != null || item.getException() == null) {
+                this.negativeSinceMillis = -1;
+            } else {
+                this.negativeSinceMillis = previous != null && previous.negativeSinceMillis >= 0 ? previous.negativeSinceMillis : now;
+            }
+            this.lastAccessMillis = previous != null ? previous.lastAccessMillis : now;
+        }
     }
 }
@@ -15,16 +15,26 @@ public class ConfigurationCacheItem<T> {
     private final Clock systemClock;
     private T value;
     private RuntimeException exception;
-    private long refreshTime;
+    private volatile long refreshTime;
 
     public ConfigurationCacheItem(final Duration ttl) {
+        this(ttl, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param ttl   time until the item needs a refresh.
+     * @param clock clock the refresh time is measured with, e.g. the one of the {@link RefreshPolicy}.
+     */
+    public ConfigurationCacheItem(final Duration ttl, final Clock clock) {
         this.ttl = ttl;
-        this.systemClock = Clock.systemDefaultZone();
+        this.systemClock = clock;
         this.refreshTime = this.systemClock.millis() + ttl.toMillis();
     }
 
     public static boolean isCacheableExceptionType(final Throwable ex) {
-        return (ex instanceof ResourceNotFoundException || ex instanceof BadRequestException);
+        return (ex instanceof ResourceNotFoundException || ex instanceof BadRequestException
+                || ex instanceof software.amazon.awssdk.services.appconfigdata.model.ResourceNotFoundException
+                || ex instanceof software.amazon.awssdk.services.appconfigdata.model.BadRequestException);
     }
 
     public Duration getTtl() {
@@ -59,12 +69,18 @@ public class ConfigurationCacheItem<T> {
         return systemClock.millis() >= refreshTime;
     }
 
+    /**
+     * Sets the refresh time to the TTL from now.
+     */
     public void calculateAndSetRefreshTime() {
-        if (this.exception != null && !isCacheableExceptionType(exception)) {
-            this.setRefreshTime(this.systemClock.millis());
-        } else {
-            this.setRefreshTime(this.systemClock.millis() + this.ttl.toMillis());
-        }
+        setRefreshDelay(this.ttl);
+    }
+
+    /**
+     * Sets the refresh time to the given delay from now, e.g. the TTL or backoff decided by a {@link RefreshPolicy}.
+     */
+    public void setRefreshDelay(final Duration delay) {
+        this.setRefreshTime(this.systemClock.millis() + delay.toMillis());
     }
 
     @Override
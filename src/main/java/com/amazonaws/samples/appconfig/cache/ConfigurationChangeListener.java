@@ -0,0 +1,18 @@
+package com.amazonaws.samples.appconfig.cache;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+/**
+ * Receives the configurations of a key as their version changes. Registered with
+ * {@link ConfigurationCache#addChangeListener}.
+ */
+@FunctionalInterface
+public interface ConfigurationChangeListener {
+
+    /**
+     * @param key           key of the configuration.
+     * @param configuration the new configuration, as it is cached.
+     */
+    void onChange(ConfigurationKey key, GetConfigurationResponse configuration);
+}
@@ -0,0 +1,211 @@
+package com.amazonaws.samples.appconfig.cache;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the last configuration received for every key in a local directory, one file per key, so that a restarted
+ * service can answer from the cache before it reaches AppConfig.
+ *
+ * <p>A snapshot file holds the key, the configuration version, the content type and the content, followed by a CRC32
+ * of the content. Files are written to a temporary file and moved into place, so a crash never leaves a partial
+ * snapshot; unreadable or corrupt files are skipped when loading. Saves run on the given executor and are coalesced
+ * per key, and a version that is already on disk is not written again.
+ */
+public class ConfigurationSnapshotStore implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ConfigurationSnapshotStore.class);
+
+    private static final int MAGIC = 0x41435348;
+    private static final byte FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".snapshot";
+
+    private final Path directory;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<ConfigurationKey, GetConfigurationResponse> pendingSaves = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ConfigurationKey, String> savedVersions = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory directory holding the snapshots. It is created if it does not exist.
+     * @param executor  runs the saves. Owned by the store and shut down on close.
+     */
+    public ConfigurationSnapshotStore(final Path directory, final ExecutorService executor) {
+        this.directory = directory;
+        this.executor = executor;
+    }
+
+    /**
+     * Reads every readable snapshot in the directory.
+     *
+     * @return the saved configurations by key, empty if the directory does not exist.
+     */
+    public Map<ConfigurationKey, GetConfigurationResponse> loadAll() {
+        final Map<ConfigurationKey, GetConfigurationResponse> snapshots = new HashMap<>();
+        if (!Files.isDirectory(directory)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (final Path file : files) {
+                try {
+                    read(file, snapshots);
+                } catch (final IOException | RuntimeException e) {
+                    logger.warn("Ignoring unreadable configuration snapshot " + file, e);
+                }
+            }
+        } catch (final IOException e) {
+            logger.warn("Error listing configuration snapshots in " + directory, e);
+        }
+        return snapshots;
+    }
+
+    /**
+     * Schedules the configuration to be written unless that version is already on disk. If several versions of a key
+     * are saved before the write runs, only the latest is written.
+     */
+    public void saveAsync(final ConfigurationKey key, final GetConfigurationResponse response) {
+        if (response.content() == null || response.configurationVersion() == null
+                || response.configurationVersion().equals(savedVersions.get(key))) {
+            return;
+        }
+        if (pendingSaves.put(key, response) == null) {
+            try {
+                executor.execute(() -> flush(key));
+            } catch (final RejectedExecutionException e) {
+                pendingSaves.remove(key, response);
+            }
+        }
+    }
+
+    /**
+     * Writes the configuration and waits for the write to complete.
+     */
+    public void save(final ConfigurationKey key, final GetConfigurationResponse response) throws IOException {
+        Files.createDirectories(directory);
+        final Path file = directory.resolve(fileName(key));
+        final Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporaryFile)) {
+                write(key, response, out);
+            }
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            savedVersions.put(key, response.configurationVersion());
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Finishes the pending saves, waiting up to five seconds.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(final ConfigurationKey key) {
+        final GetConfigurationResponse response = pendingSaves.remove(key);
+        if (response == null) {
+            return;
+        }
+        try {
+            save(key, response);
+        } catch (final IOException | RuntimeException e) {
+            logger.warn("Error saving configuration snapshot for " + key, e);
+        }
+    }
+
+    private static void write(final ConfigurationKey key, final GetConfigurationResponse response, final OutputStream out)
+            throws IOException {
+        final ByteBuffer content = response.content().asByteBuffer();
+        final byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(FORMAT_VERSION);
+        data.writeUTF(key.getApplication());
+        data.writeUTF(key.getEnvironment());
+        data.writeUTF(key.getConfiguration());
+        data.writeUTF(response.configurationVersion());
+        data.writeUTF(response.contentType() == null ? "" : response.contentType());
+        data.writeInt(bytes.length);
+        data.write(bytes);
+        data.writeLong(crc.getValue());
+        data.flush();
+    }
+
+    private void read(final Path file, final Map<ConfigurationKey, GetConfigurationResponse> snapshots) throws IOException {
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (data.readInt() != MAGIC || data.readByte() != FORMAT_VERSION) {
+                throw new IOException("Not a configuration snapshot");
+            }
+            final ConfigurationKey key = new ConfigurationKey(data.readUTF(), data.readUTF(), data.readUTF());
+            final String version = data.readUTF();
+            final String contentType = data.readUTF();
+            final byte[] bytes = new byte[data.readInt()];
+            data.readFully(bytes);
+            final CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if (data.readLong() != crc.getValue()) {
+                throw new IOException("Checksum mismatch");
+            }
+            snapshots.put(key, GetConfigurationResponse.builder()
+                    .content(SdkBytes.fromByteArrayUnsafe(bytes))
+                    .configurationVersion(version)
+                    .contentType(contentType.isEmpty() ? null : contentType)
+                    .build());
+            savedVersions.put(key, version);
+        }
+    }
+
+    private static String fileName(final ConfigurationKey key) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = digest.digest(String.join("\n", key.getApplication(), key.getEnvironment(),
+                    key.getConfiguration()).getBytes(StandardCharsets.UTF_8));
+            final StringBuilder name = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                name.append(String.format("%02x", hash[i]));
+            }
+            return name.append(SUFFIX).toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.amazonaws.samples.appconfig.cache;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Memoizes a value derived from a configuration (parsed objects, rendered output, ...) per {@link ConfigurationKey}.
+ * The derived value is recomputed only when the configuration version returned by the {@link ConfigurationCache} changes,
+ * so repeated reads of the same version cost a single map lookup. An {@link #incremental} cache hands the value of the
+ * previous version to the function, which can then update it rather than compute it from scratch.
+ *
+ * @param <T> type of the derived value
+ */
+public class DerivedConfigurationCache<T> {
+    private final ConcurrentHashMap<ConfigurationKey, VersionedValue<T>> cache = new ConcurrentHashMap<>();
+    private final BiFunction<T, GetConfigurationResponse, T> deriveFunction;
+
+    /**
+     * @param deriveFunction computes the derived value from a configuration. It may throw, in which case nothing is cached.
+     */
+    public DerivedConfigurationCache(final Function<GetConfigurationResponse, T> deriveFunction) {
+        this.deriveFunction = (previous, response) -> deriveFunction.apply(response);
+    }
+
+    private DerivedConfigurationCache(final BiFunction<T, GetConfigurationResponse, T> deriveFunction) {
+        this.deriveFunction = deriveFunction;
+    }
+
+    /**
+     * @param deriveFunction computes the derived value from the value of the previous version, null for the first one,
+     *                       and the new configuration. The previous value is still in use and must not be modified. It
+     *                       may throw, in which case nothing is cached.
+     */
+    public static <T> DerivedConfigurationCache<T> incremental(final BiFunction<T, GetConfigurationResponse, T> deriveFunction) {
+        return new DerivedConfigurationCache<>(deriveFunction);
+    }
+
+    /**
+     * Returns the value derived from the given configuration, computing it only if the cached value belongs to a
+     * different configuration version. Configurations without a version are never memoized.
+     *
+     * <p>The derived value only replaces the cached value it was derived from. When another thread stored a value
+     * while this one was deriving, e.g. a quicker derivation of a newer version, that value is kept and the one
+     * derived here is only returned to the caller.
+     *
+     * @param key      key the configuration was retrieved with.
+     * @param response configuration returned by {@link com.amazonaws.samples.appconfig.utils.AppConfigUtility}.
+     * @return the derived value.
+     */
+    public T get(final ConfigurationKey key, final GetConfigurationResponse response) {
+        final String version = response.configurationVersion();
+        final VersionedValue<T> current = cache.get(key);
+        if (current != null && version != null && version.equals(current.version)) {
+            return current.value;
+        }
+        final T value = deriveFunction.apply(current == null ? null : current.value, response);
+        if (version != null) {
+            final VersionedValue<T> derived = new VersionedValue<>(version, value);
+            if (current == null ? cache.putIfAbsent(key, derived) != null : !cache.replace(key, current, derived)) {
+                final VersionedValue<T> stored = cache.get(key);
+                if (stored != null && version.equals(stored.version)) {
+                    // another thread derived the same version meanwhile: share its value
+                    return stored.value;
+                }
+            }
+        }
+        return value;
+    }
+
+    public void invalidate(final ConfigurationKey key) {
+        cache.remove(key);
+    }
+
+    private static final class VersionedValue<T> {
+        private final String version;
+        private final T value;
+
+        private VersionedValue(final String version, final T value) {
+            this.version = Objects.requireNonNull(version);
+            this.value = value;
+        }
+    }
+}
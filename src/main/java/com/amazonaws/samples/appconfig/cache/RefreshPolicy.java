@@ -0,0 +1,248 @@
+package com.amazonaws.samples.appconfig.cache;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides when each configuration is fetched again, from the outcome of its previous fetches.
+ *
+ * <ul>
+ *     <li>After a failed fetch, the next one waits for an exponential backoff, from {@code initialBackoff} doubling up
+ *     to {@code maxBackoff}. Half of each delay is random, so that replicas that failed together do not retry
+ *     together.</li>
+ *     <li>After {@code failureThreshold} failures in a row the circuit of the key opens: it is not fetched for
+ *     {@code openDuration} plus up to a quarter of it at random, then a single fetch is let through (half-open), as
+ *     after each backoff. Success closes the circuit, failure opens it again.</li>
+ *     <li>After a successful fetch, the TTL of a configuration that did not change doubles, up to {@code maxTtl}, and
+ *     drops back to the configured TTL when it changes. Configurations that rarely change are polled less often.</li>
+ * </ul>
+ *
+ * <p>Meanwhile the cache keeps serving the last good configuration of the key, if it has one (stale-while-error). A
+ * fetch that is not allowed costs a map lookup, so requests and refreshes cannot turn an outage into a retry storm.
+ */
+public class RefreshPolicy {
+    private static final Logger logger = LogManager.getLogger(RefreshPolicy.class);
+
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int failureThreshold;
+    private final long openDurationMillis;
+    private final long maxTtlMillis;
+    private final Clock clock;
+    private final ConcurrentHashMap<ConfigurationKey, State> states = new ConcurrentHashMap<>();
+    private final LongAdder skippedFetchCount = new LongAdder();
+
+    /**
+     * Backs off from 1 second to 1 minute, opens the circuit of a key for 1 minute after 5 failures in a row, and keeps
+     * TTLs as configured.
+     */
+    public RefreshPolicy() {
+        this(Duration.ofSeconds(1), Duration.ofMinutes(1), 5, Duration.ofMinutes(1), null, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param initialBackoff   delay after the first failure.
+     * @param maxBackoff       longest delay between two failing fetches while the circuit is closed.
+     * @param failureThreshold failures in a row that open the circuit.
+     * @param openDuration     how long an open circuit lets no fetch through.
+     * @param maxTtl           longest TTL of a configuration that does not change, or null to keep TTLs as configured.
+     * @param clock            clock of the refresh times. Also used by the cache items.
+     */
+    public RefreshPolicy(final Duration initialBackoff,
+                         final Duration maxBackoff,
+                         final int failureThreshold,
+                         final Duration openDuration,
+                         final Duration maxTtl,
+                         final Clock clock) {
+        if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0 || failureThreshold < 1) {
+            throw new IllegalArgumentException(
+                    "initialBackoff must not be negative nor exceed maxBackoff, and failureThreshold must be positive");
+        }
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDuration.toMillis();
+        this.maxTtlMillis = maxTtl == null ? 0 : maxTtl.toMillis();
+        this.clock = clock;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Claims the fetch of the key. Once a backoff or open duration has elapsed, a single caller is let through, and the
+     * others are refused until its outcome is recorded by {@link #onSuccess} or {@link #onFailure}, or until
+     * {@code openDuration} has passed if it never is.
+     *
+     * @return whether the key may be fetched now: false while it backs off, its circuit is open or another caller
+     * fetches it after a failure. A refusal is counted as a skipped fetch.
+     */
+    public boolean isFetchAllowed(final ConfigurationKey key) {
+        while (true) {
+            final State state = states.get(key);
+            if (state == null || state.failures == 0) {
+                return true;
+            }
+            final long now = clock.millis();
+            if (now < state.retryAtMillis) {
+                skippedFetchCount.increment();
+                return false;
+            }
+            if (states.replace(key, state, new State(state.failures, now + openDurationMillis, state.ttlMillis))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #isFetchAllowed} without claiming the fetch, for callers that only decide whether to schedule
+     * one.
+     */
+    public boolean isFetchDue(final ConfigurationKey key) {
+        final State state = states.get(key);
+        if (state == null || state.failures == 0 || clock.millis() >= state.retryAtMillis) {
+            return true;
+        }
+        skippedFetchCount.increment();
+        return false;
+    }
+
+    /**
+     * @return whether the circuit of the key is open, whether or not its open duration has elapsed.
+     */
+    public boolean isOpen(final ConfigurationKey key) {
+        final State state = states.get(key);
+        return state != null && state.failures >= failureThreshold;
+    }
+
+    /**
+     * Records a successful fetch, which closes the circuit of the key. Keys whose TTL does not adapt are then
+     * forgotten, so only failing and adapting keys are tracked.
+     *
+     * @param key     key of the configuration.
+     * @param ttl     configured TTL of the configuration.
+     * @param changed whether the fetch returned a new version.
+     * @return the TTL until the next fetch.
+     */
+    public Duration onSuccess(final ConfigurationKey key, final Duration ttl, final boolean changed) {
+        final long ttlMillis = ttl.toMillis();
+        final State[] replaced = new State[1];
+        final State state = states.compute(key, (k, previous) -> {
+            replaced[0] = previous;
+            if (maxTtlMillis <= ttlMillis) {
+                return null;
+            }
+            if (changed || previous == null) {
+                return new State(0, 0, ttlMillis);
+            }
+            return new State(0, 0, Math.max(ttlMillis, Math.min(maxTtlMillis, previous.ttlMillis * 2)));
+        });
+        if (replaced[0] != null && replaced[0].failures >= failureThreshold) {
+            logger.info("Closing the circuit of {}", key);
+        }
+        return state == null ? ttl : Duration.ofMillis(state.ttlMillis);
+    }
+
+    /**
+     * Records a fetch answered with an error that is cached like a configuration, e.g. an unknown key or an invalid
+     * request. AppConfig answered, so the circuit of the key closes, but nothing was learned about how often its
+     * configuration changes: the adaptive TTL is left as it was, and the error is kept for the configured TTL.
+     */
+    public void onRejected(final ConfigurationKey key) {
+        final State[] replaced = new State[1];
+        states.computeIfPresent(key, (k, previous) -> {
+            replaced[0] = previous;
+            return previous.ttlMillis == 0 ? null : new State(0, 0, previous.ttlMillis);
+        });
+        if (replaced[0] != null && replaced[0].failures >= failureThreshold) {
+            logger.info("Closing the circuit of {}", key);
+        }
+    }
+
+    /**
+     * Records a failed fetch, e.g. throttling, a timeout or an unreachable endpoint.
+     *
+     * @return the delay until the key may be fetched again.
+     */
+    public Duration onFailure(final ConfigurationKey key) {
+        final long now = clock.millis();
+        final State state = states.compute(key, (k, previous) -> {
+            final int failures = previous == null ? 1 : previous.failures + 1;
+            final long delayMillis;
+            if (failures >= failureThreshold) {
+                delayMillis = openDurationMillis + ThreadLocalRandom.current().nextLong(openDurationMillis / 4 + 1);
+            } else {
+                // capped before shifting, so that a long series of failures cannot overflow
+                final int doublings = Math.min(failures - 1, 30);
+                delayMillis = jitter(Math.min(maxBackoffMillis, initialBackoffMillis << doublings));
+            }
+            return new State(failures, now + delayMillis, previous == null ? 0 : previous.ttlMillis);
+        });
+        if (state.failures == failureThreshold) {
+            logger.warn("Opening the circuit of {} after {} failed fetches", key, state.failures);
+        }
+        return Duration.ofMillis(state.retryAtMillis - now);
+    }
+
+    /**
+     * @return consecutive failed fetches of the key.
+     */
+    public int getFailureCount(final ConfigurationKey key) {
+        final State state = states.get(key);
+        return state == null ? 0 : state.failures;
+    }
+
+    /**
+     * @return time until the key may be fetched again, zero if it may be fetched now.
+     */
+    public Duration getRetryDelay(final ConfigurationKey key) {
+        final State state = states.get(key);
+        return state == null || state.failures == 0
+                ? Duration.ZERO : Duration.ofMillis(Math.max(0, state.retryAtMillis - clock.millis()));
+    }
+
+    /**
+     * @return number of fetches refused by {@link #isFetchAllowed} and {@link #isFetchDue}.
+     */
+    public long getSkippedFetchCount() {
+        return skippedFetchCount.sum();
+    }
+
+    /**
+     * Forgets the outcomes of the key, e.g. when it is no longer cached.
+     */
+    public void reset(final ConfigurationKey key) {
+        states.remove(key);
+    }
+
+    /**
+     * @return a delay between half and all of {@code delayMillis}.
+     */
+    private static long jitter(final long delayMillis) {
+        final long half = delayMillis / 2;
+        return delayMillis - half + (half == 0 ? 0 : ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    private static final class State {
+        private final int failures;
+        private final long retryAtMillis;
+        /**
+         * TTL given after the last successful fetch, the base of the next adaptive TTL.
+         */
+        private final long ttlMillis;
+
+        private State(final int failures, final long retryAtMillis, final long ttlMillis) {
+            this.failures = failures;
+            this.retryAtMillis = retryAtMillis;
+            this.ttlMillis = ttlMillis;
+        }
+    }
+}
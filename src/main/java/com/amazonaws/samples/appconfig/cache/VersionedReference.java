@@ -0,0 +1,128 @@
+package com.amazonaws.samples.appconfig.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Holds the value derived from the latest version of one configuration, e.g. typed feature flags, for code that reads
+ * it far more often than the configuration changes. The value is derived once per version and published through an
+ * {@link AtomicReference}, so {@link #get()} is a single volatile read that neither locks nor allocates.
+ *
+ * <p>Unlike {@link DerivedConfigurationCache}, readers do not need the configuration at hand: whoever retrieves it
+ * passes it to {@link #update}, and every other thread sees the new value from then on.
+ *
+ * @param <T> type of the derived value. Instances are shared between threads and must be immutable.
+ */
+public class VersionedReference<T> {
+    private static final Logger logger = LogManager.getLogger(VersionedReference.class);
+
+    private final AtomicReference<Versioned<T>> current;
+    private final Function<GetConfigurationResponse, T> deriveFunction;
+    private final List<Consumer<? super T>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param initialValue   value until the first configuration is received.
+     * @param deriveFunction computes the value from a configuration. It may throw, in which case the current value is
+     *                       kept and the version is not derived again.
+     */
+    public VersionedReference(final T initialValue, final Function<GetConfigurationResponse, T> deriveFunction) {
+        this.current = new AtomicReference<>(new Versioned<>(null, initialValue, null));
+        this.deriveFunction = deriveFunction;
+    }
+
+    public T get() {
+        return current.get().value;
+    }
+
+    /**
+     * @return version of the configuration the value was derived from, or null for the initial value.
+     */
+    public String getVersion() {
+        return current.get().version;
+    }
+
+    /**
+     * Derives and publishes the value of the configuration unless its version is the current one, then notifies the
+     * listeners on the calling thread. A configuration without a version is ignored. Reading the same version again
+     * costs a string comparison.
+     *
+     * <p>When the value of a version cannot be derived, the exception is thrown to the caller that tried, and the
+     * version is recorded next to the current value: later calls with that version return false without deriving it
+     * again, so an invalid version is reported once rather than on every read.
+     *
+     * @param response configuration returned by {@link com.amazonaws.samples.appconfig.utils.AppConfigUtility}.
+     * @return whether the value changed.
+     */
+    public boolean update(final GetConfigurationResponse response) {
+        final String version = response.configurationVersion();
+        if (version == null || current.get().isKnown(version)) {
+            return false;
+        }
+        final Versioned<T> next;
+        try {
+            next = new Versioned<>(version, deriveFunction.apply(response), null);
+        } catch (final RuntimeException e) {
+            Versioned<T> previous;
+            do {
+                previous = current.get();
+                if (previous.isKnown(version)) {
+                    return false;
+                }
+            } while (!current.compareAndSet(previous, new Versioned<>(previous.version, previous.value, version)));
+            throw e;
+        }
+        Versioned<T> previous;
+        do {
+            previous = current.get();
+            if (version.equals(previous.version)) {
+                // another thread published this version meanwhile
+                return false;
+            }
+        } while (!current.compareAndSet(previous, next));
+        for (final Consumer<? super T> listener : listeners) {
+            try {
+                listener.accept(next.value);
+            } catch (final RuntimeException e) {
+                logger.warn("Listener failed on configuration version {}", version, e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param listener called with the new value after each change, on the thread that made it.
+     */
+    public void addListener(final Consumer<? super T> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final Consumer<? super T> listener) {
+        listeners.remove(listener);
+    }
+
+    private static final class Versioned<T> {
+        private final String version;
+        private final T value;
+        /**
+         * Latest version whose value could not be derived, or null.
+         */
+        private final String failedVersion;
+
+        private Versioned(final String version, final T value, final String failedVersion) {
+            this.version = version;
+            this.value = value;
+            this.failedVersion = failedVersion;
+        }
+
+        private boolean isKnown(final String otherVersion) {
+            return otherVersion.equals(version) || otherVersion.equals(failedVersion);
+        }
+    }
+}
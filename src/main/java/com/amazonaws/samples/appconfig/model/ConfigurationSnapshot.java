@@ -0,0 +1,59 @@
+package com.amazonaws.samples.appconfig.model;
+
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configurations retrieved together by {@code AppConfigUtility.getConfigurations}, keyed by {@link ConfigurationKey} in
+ * the order they were asked for. A key whose configuration could not be retrieved, and had none cached, maps to the
+ * exception instead, so one failing profile does not hide the others.
+ */
+public final class ConfigurationSnapshot {
+    private final Map<ConfigurationKey, GetConfigurationResponse> configurations;
+    private final Map<ConfigurationKey, RuntimeException> failures;
+
+    /**
+     * @param configurations configurations by key. Copied.
+     * @param failures       exceptions by key, for the keys without a configuration. Copied.
+     */
+    public ConfigurationSnapshot(final Map<ConfigurationKey, GetConfigurationResponse> configurations,
+                                 final Map<ConfigurationKey, RuntimeException> failures) {
+        this.configurations = Collections.unmodifiableMap(new LinkedHashMap<>(configurations));
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    /**
+     * @return the configuration of the key, like {@code AppConfigUtility.getConfiguration} would have returned it.
+     * @throws RuntimeException         the exception the retrieval failed with, if it did.
+     * @throws IllegalArgumentException if the key was not part of the batch.
+     */
+    public GetConfigurationResponse get(final ConfigurationKey configurationKey) {
+        final RuntimeException failure = failures.get(configurationKey);
+        if (failure != null) {
+            throw failure;
+        }
+        final GetConfigurationResponse configuration = configurations.get(configurationKey);
+        if (configuration == null && !configurations.containsKey(configurationKey)) {
+            throw new IllegalArgumentException(configurationKey + " is not part of the snapshot");
+        }
+        return configuration;
+    }
+
+    public Map<ConfigurationKey, GetConfigurationResponse> getConfigurations() {
+        return configurations;
+    }
+
+    public Map<ConfigurationKey, RuntimeException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return whether every key has a configuration.
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+}
@@ -0,0 +1,75 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.utils.ConfigurationRefresher;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the counters kept by {@link ConfigurationCache} and, when background refresh is enabled, by
+ * {@link ConfigurationRefresher}. The meters read the counters when they are scraped, so the request path is unchanged.
+ */
+public class AppConfigMetrics implements MeterBinder {
+
+    private final ConfigurationCache cache;
+    private final ConfigurationRefresher refresher;
+
+    /**
+     * @param cache     cache to report on.
+     * @param refresher background refresher to report on, or null if background refresh is disabled.
+     */
+    public AppConfigMetrics(final ConfigurationCache cache, final ConfigurationRefresher refresher) {
+        this.cache = cache;
+        this.refresher = refresher;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("appconfig.cache.gets", cache, ConfigurationCache::getHitCount)
+                .tag("result", "hit")
+                .description("Cache reads, by whether an entry was found")
+                .register(registry);
+        FunctionCounter.builder("appconfig.cache.gets", cache, ConfigurationCache::getMissCount)
+                .tag("result", "miss")
+                .description("Cache reads, by whether an entry was found")
+                .register(registry);
+        FunctionCounter.builder("appconfig.cache.evictions", cache, ConfigurationCache::getEvictionCount)
+                .description("Entries evicted to keep the cache within its bounds")
+                .register(registry);
+        FunctionCounter.builder("appconfig.cache.expirations", cache, ConfigurationCache::getExpirationCount)
+                .description("Idle and negative entries that expired")
+                .register(registry);
+        Gauge.builder("appconfig.cache.size", cache, ConfigurationCache::size)
+                .description("Number of cached configurations")
+                .register(registry);
+        Gauge.builder("appconfig.cache.payload", cache, ConfigurationCache::getWeightInBytes)
+                .baseUnit("bytes")
+                .description("Total size of the cached configurations")
+                .register(registry);
+
+        if (refresher == null) {
+            return;
+        }
+        FunctionCounter.builder("appconfig.cache.stale.reads", refresher, ConfigurationRefresher::getStaleReadCount)
+                .description("Requests answered with an expired configuration while it was refreshed")
+                .register(registry);
+        Gauge.builder("appconfig.cache.staleness.max", refresher, ConfigurationRefresher::getMaxStalenessMillis)
+                .baseUnit("milliseconds")
+                .description("Longest time a configuration has been served past its refresh time")
+                .register(registry);
+        FunctionTimer.builder("appconfig.refresh", refresher,
+                ConfigurationRefresher::getRefreshCount,
+                ConfigurationRefresher::getRefreshLatencyTotalNanos,
+                TimeUnit.NANOSECONDS)
+                .description("Background refreshes")
+                .register(registry);
+        FunctionCounter.builder("appconfig.refresh.failures", refresher, ConfigurationRefresher::getRefreshFailureCount)
+                .description("Background refreshes that failed")
+                .register(registry);
+    }
+}
@@ -0,0 +1,96 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Feature flags of the movies configuration, read from the top-level fields of the same JSON document as the movies:
+ * {"boolEnableFeature":true,"intItemLimit":100,"movies":[...]}. A field that is absent keeps its default.
+ * Instances are immutable; {@link MoviesController} publishes the flags of the current version through a
+ * {@link com.amazonaws.samples.appconfig.cache.VersionedReference}.
+ */
+public final class FeatureFlags {
+    static final String ENABLE_FEATURE = "boolEnableFeature";
+    static final String ITEM_LIMIT = "intItemLimit";
+
+    /**
+     * Flags until a configuration is received: the feature is off and pages are limited only by
+     * {@link MoviesController#MAX_PAGE_SIZE}.
+     */
+    public static final FeatureFlags DEFAULTS = new FeatureFlags(false, MoviesController.MAX_PAGE_SIZE);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final boolean enableFeature;
+    private final int itemLimit;
+
+    public FeatureFlags(final boolean enableFeature, final int itemLimit) {
+        if (itemLimit < 1) {
+            throw new IllegalArgumentException(ITEM_LIMIT + " must be at least 1");
+        }
+        this.enableFeature = enableFeature;
+        this.itemLimit = itemLimit;
+    }
+
+    /**
+     * Reads the flags with a streaming parser, skipping the movies without decoding them.
+     *
+     * @throws IllegalArgumentException if a flag has the wrong type or an invalid value.
+     * @throws UncheckedIOException     if the content is not a JSON object.
+     */
+    public static FeatureFlags fromConfiguration(final GetConfigurationResponse response) {
+        return parse(response.content().asInputStream());
+    }
+
+    static FeatureFlags parse(final InputStream json) {
+        boolean enableFeature = DEFAULTS.enableFeature;
+        int itemLimit = DEFAULTS.itemLimit;
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("The configuration is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if (ENABLE_FEATURE.equals(field)) {
+                    if (value != JsonToken.VALUE_TRUE && value != JsonToken.VALUE_FALSE) {
+                        throw new IllegalArgumentException(ENABLE_FEATURE + " must be a boolean");
+                    }
+                    enableFeature = value == JsonToken.VALUE_TRUE;
+                } else if (ITEM_LIMIT.equals(field)) {
+                    if (value != JsonToken.VALUE_NUMBER_INT) {
+                        throw new IllegalArgumentException(ITEM_LIMIT + " must be an integer");
+                    }
+                    itemLimit = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error reading the feature flags", e);
+        }
+        return new FeatureFlags(enableFeature, itemLimit);
+    }
+
+    public boolean isEnableFeature() {
+        return enableFeature;
+    }
+
+    /**
+     * @return maximum number of movies a page of /movies returns.
+     */
+    public int getItemLimit() {
+        return itemLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureFlags{" + ENABLE_FEATURE + "=" + enableFeature + ", " + ITEM_LIMIT + "=" + itemLimit + "}";
+    }
+}
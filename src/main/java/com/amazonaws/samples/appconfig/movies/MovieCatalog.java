@@ -0,0 +1,242 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.Encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Immutable, column-oriented list of movies: the ids in a {@code long[]} and the names encoded as UTF-8 one after the
+ * other in a single {@code byte[]}, delimited by an {@code int[]} of offsets. Whatever the number of movies, a catalogue
+ * is three arrays, instead of a {@link Movie} and a {@code String} with its own array per movie, and the names can be
+ * copied to a response without being encoded again.
+ *
+ * <p>Movies are addressed by their position, from 0. {@link #getMovie} and {@link #getMovieName} create objects and are
+ * meant for the few movies of a lookup, not for walking the whole catalogue.
+ */
+public final class MovieCatalog {
+    private static final MovieCatalog EMPTY = new MovieCatalog(new long[0], new byte[0], new int[1]);
+
+    private final long[] ids;
+    private final byte[] names;
+    /**
+     * Name i spans {@code names[nameOffsets[i]]} to {@code names[nameOffsets[i + 1]]}, excluded.
+     */
+    private final int[] nameOffsets;
+
+    private MovieCatalog(final long[] ids, final byte[] names, final int[] nameOffsets) {
+        this.ids = ids;
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+    }
+
+    public static MovieCatalog empty() {
+        return EMPTY;
+    }
+
+    public static MovieCatalog of(final Movie... movies) {
+        final Builder builder = new Builder(movies.length);
+        for (final Movie movie : movies) {
+            builder.add(movie.getId(), String.valueOf(movie.getMovieName()));
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long getId(final int position) {
+        return ids[position];
+    }
+
+    public String getMovieName(final int position) {
+        return new String(names, nameOffsets[position], getNameLength(position), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return length of the UTF-8 encoded name in bytes.
+     */
+    public int getNameLength(final int position) {
+        return nameOffsets[position + 1] - nameOffsets[position];
+    }
+
+    /**
+     * Writes the UTF-8 encoded name, as stored.
+     */
+    public void writeName(final int position, final OutputStream out) throws IOException {
+        out.write(names, nameOffsets[position], getNameLength(position));
+    }
+
+    /**
+     * Copies the UTF-8 encoded name, as stored, to {@code target} from {@code offset}.
+     */
+    public void copyName(final int position, final byte[] target, final int offset) {
+        System.arraycopy(names, nameOffsets[position], target, offset, getNameLength(position));
+    }
+
+    /**
+     * @return whether the movie at {@code position} has the same name as the movie of the other catalogue at
+     * {@code otherPosition}, comparing the encoded names.
+     */
+    public boolean nameEquals(final int position, final MovieCatalog other, final int otherPosition) {
+        final int length = getNameLength(position);
+        if (length != other.getNameLength(otherPosition)) {
+            return false;
+        }
+        final int offset = nameOffsets[position];
+        final int otherOffset = other.nameOffsets[otherPosition];
+        for (int i = 0; i < length; i++) {
+            if (names[offset + i] != other.names[otherOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the other catalogue has the same ids in the same order, whatever the names.
+     */
+    public boolean idsEqual(final MovieCatalog other) {
+        return this == other || Arrays.equals(ids, other.ids);
+    }
+
+    /**
+     * @return whether the other catalogue has the same movies in the same order.
+     */
+    public boolean contentEquals(final MovieCatalog other) {
+        return this == other || (Arrays.equals(ids, other.ids)
+                && Arrays.equals(nameOffsets, other.nameOffsets)
+                && Arrays.equals(names, other.names));
+    }
+
+    public Movie getMovie(final int position) {
+        return new Movie(ids[position], getMovieName(position));
+    }
+
+    /**
+     * @return the movies as objects, e.g. for code that still works on arrays of {@link Movie}.
+     */
+    public Movie[] toMovies() {
+        final Movie[] movies = new Movie[size()];
+        for (int i = 0; i < movies.length; i++) {
+            movies[i] = getMovie(i);
+        }
+        return movies;
+    }
+
+    /**
+     * @return the movies from {@code from}, included, to {@code to}, excluded.
+     */
+    public MovieCatalog range(final int from, final int to) {
+        if (from == 0 && to == size()) {
+            return this;
+        }
+        final int[] offsets = new int[to - from + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = nameOffsets[from + i] - nameOffsets[from];
+        }
+        return new MovieCatalog(Arrays.copyOfRange(ids, from, to),
+                Arrays.copyOfRange(names, nameOffsets[from], nameOffsets[to]),
+                offsets);
+    }
+
+    /**
+     * @param positions positions of the movies to keep, in the order to keep them.
+     * @param from      first entry of {@code positions} to use.
+     * @param to        entry of {@code positions} to stop at, excluded.
+     * @return the selected movies.
+     */
+    public MovieCatalog select(final int[] positions, final int from, final int to) {
+        final Builder builder = new Builder(to - from);
+        for (int i = from; i < to; i++) {
+            builder.add(this, positions[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return bytes of heap held by the arrays of the catalogue, without the object headers.
+     */
+    public long getDataSize() {
+        return 8L * ids.length + names.length + 4L * nameOffsets.length;
+    }
+
+    /**
+     * Collects movies into a {@link MovieCatalog}. The arrays grow as movies are added and are trimmed by
+     * {@link #build()}. Not thread-safe.
+     */
+    public static final class Builder {
+        private long[] ids;
+        private byte[] names;
+        private int[] nameOffsets;
+        private int size;
+        private int namesLength;
+
+        public Builder() {
+            this(16);
+        }
+
+        /**
+         * @param expectedSize number of movies to allocate room for.
+         */
+        public Builder(final int expectedSize) {
+            final int capacity = Math.max(1, expectedSize);
+            ids = new long[capacity];
+            names = new byte[capacity * 16];
+            nameOffsets = new int[capacity + 1];
+        }
+
+        public Builder add(final long id, final String movieName) {
+            return add(id, movieName, 0, movieName.length());
+        }
+
+        /**
+         * Adds a movie whose name is {@code length} chars of {@code movieName} from {@code offset}, encoded to UTF-8 as
+         * {@link String#getBytes} does, without creating a string.
+         */
+        public Builder add(final long id, final CharSequence movieName, final int offset, final int length) {
+            ensureNameCapacity(namesLength + 3 * length);
+            final int position = Encoder.encodeUtf8(movieName, offset, offset + length, names, namesLength);
+            return append(id, position);
+        }
+
+        /**
+         * Adds a copy of the movie at the given position of another catalogue.
+         */
+        public Builder add(final MovieCatalog catalog, final int position) {
+            final int length = catalog.getNameLength(position);
+            ensureNameCapacity(namesLength + length);
+            System.arraycopy(catalog.names, catalog.nameOffsets[position], names, namesLength, length);
+            return append(catalog.ids[position], namesLength + length);
+        }
+
+        public MovieCatalog build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new MovieCatalog(Arrays.copyOf(ids, size),
+                    Arrays.copyOf(names, namesLength),
+                    Arrays.copyOf(nameOffsets, size + 1));
+        }
+
+        private Builder append(final long id, final int newNamesLength) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                nameOffsets = Arrays.copyOf(nameOffsets, size * 2 + 1);
+            }
+            ids[size] = id;
+            namesLength = newNamesLength;
+            nameOffsets[++size] = newNamesLength;
+            return this;
+        }
+
+        private void ensureNameCapacity(final int capacity) {
+            if (capacity > names.length) {
+                names = Arrays.copyOf(names, Math.max(capacity, names.length * 2));
+            }
+        }
+    }
+}
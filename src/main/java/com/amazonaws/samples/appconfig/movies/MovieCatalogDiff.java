@@ -0,0 +1,160 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import java.util.Arrays;
+
+/**
+ * Change set between the movies of two configuration versions, matched by id: the movies added, removed and renamed,
+ * and for every movie that did not change its position in both catalogues. Structures derived from the previous
+ * catalogue can then be updated for the changed movies only, as {@link MovieIndex#update} does.
+ *
+ * <p>Computing it reads every id once and compares the encoded names of the movies found in both catalogues; no name
+ * is decoded. A movie at the same position in both catalogues is matched without looking its id up. Otherwise, when an
+ * id appears more than once, the first movie of the previous catalogue is matched with the first movie of the new one
+ * and the others count as removed and added.
+ */
+public final class MovieCatalogDiff {
+    private final int[] previousPositions;
+    private final int[] nextPositions;
+    private final int[] changedPositions;
+    private final long[] removedIds;
+    private final int addedCount;
+    private final boolean reordered;
+
+    private MovieCatalogDiff(final int[] previousPositions,
+                             final int[] nextPositions,
+                             final int[] changedPositions,
+                             final long[] removedIds,
+                             final int addedCount,
+                             final boolean reordered) {
+        this.previousPositions = previousPositions;
+        this.nextPositions = nextPositions;
+        this.changedPositions = changedPositions;
+        this.removedIds = removedIds;
+        this.addedCount = addedCount;
+        this.reordered = reordered;
+    }
+
+    /**
+     * @param previous index of the previous catalogue, whose id table is used to match the movies.
+     * @param next     movies of the new version.
+     */
+    public static MovieCatalogDiff between(final MovieIndex previous, final MovieCatalog next) {
+        final MovieCatalog previousCatalog = previous.getCatalog();
+        final int[] previousPositions = new int[next.size()];
+        final int[] nextPositions = new int[previousCatalog.size()];
+        Arrays.fill(nextPositions, -1);
+        final boolean[] matched = new boolean[previousCatalog.size()];
+        int[] changedPositions = new int[16];
+        int changedCount = 0;
+        int addedCount = 0;
+        for (int position = 0; position < next.size(); position++) {
+            final long id = next.getId(position);
+            // most movies keep their position, which spares the random access to the id table
+            final int previousPosition = position < previousCatalog.size() && previousCatalog.getId(position) == id
+                    && !matched[position] ? position : previous.indexOf(id);
+            if (previousPosition >= 0 && !matched[previousPosition]) {
+                matched[previousPosition] = true;
+                if (next.nameEquals(position, previousCatalog, previousPosition)) {
+                    previousPositions[position] = previousPosition;
+                    nextPositions[previousPosition] = position;
+                    continue;
+                }
+            } else {
+                addedCount++;
+            }
+            previousPositions[position] = -1;
+            if (changedCount == changedPositions.length) {
+                changedPositions = Arrays.copyOf(changedPositions, changedCount * 2);
+            }
+            changedPositions[changedCount++] = position;
+        }
+
+        long[] removedIds = new long[0];
+        int removedCount = 0;
+        boolean reordered = false;
+        int lastNextPosition = -1;
+        for (int previousPosition = 0; previousPosition < matched.length; previousPosition++) {
+            if (!matched[previousPosition]) {
+                if (removedCount == removedIds.length) {
+                    removedIds = Arrays.copyOf(removedIds, Math.max(16, removedCount * 2));
+                }
+                removedIds[removedCount++] = previousCatalog.getId(previousPosition);
+            } else if (nextPositions[previousPosition] >= 0) {
+                reordered |= nextPositions[previousPosition] < lastNextPosition;
+                lastNextPosition = nextPositions[previousPosition];
+            }
+        }
+        return new MovieCatalogDiff(previousPositions, nextPositions, Arrays.copyOf(changedPositions, changedCount),
+                Arrays.copyOf(removedIds, removedCount), addedCount, reordered);
+    }
+
+    /**
+     * @return whether both versions have the same movies in the same order.
+     */
+    public boolean isEmpty() {
+        return changedPositions.length == 0 && removedIds.length == 0 && !reordered;
+    }
+
+    /**
+     * @return positions in the new catalogue of the movies added or renamed, in ascending order.
+     */
+    public int[] getChangedPositions() {
+        return changedPositions.clone();
+    }
+
+    int getChangedCount() {
+        return changedPositions.length;
+    }
+
+    int getChangedPosition(final int i) {
+        return changedPositions[i];
+    }
+
+    public int getAddedCount() {
+        return addedCount;
+    }
+
+    public int getModifiedCount() {
+        return changedPositions.length - addedCount;
+    }
+
+    public int getRemovedCount() {
+        return removedIds.length;
+    }
+
+    /**
+     * @return ids of the movies of the previous catalogue that are no longer in the new one.
+     */
+    public long[] getRemovedIds() {
+        return removedIds.clone();
+    }
+
+    /**
+     * @return whether some unchanged movies are in a different order relative to each other.
+     */
+    public boolean isReordered() {
+        return reordered;
+    }
+
+    /**
+     * @return position in the previous catalogue of the unchanged movie at the given position of the new one, or -1
+     * if it was added or renamed.
+     */
+    public int getPreviousPosition(final int nextPosition) {
+        return previousPositions[nextPosition];
+    }
+
+    /**
+     * @return position in the new catalogue of the movie at the given position of the previous one, or -1 if it was
+     * removed or renamed.
+     */
+    public int getNextPosition(final int previousPosition) {
+        return nextPositions[previousPosition];
+    }
+
+    @Override
+    public String toString() {
+        return "MovieCatalogDiff{added=" + addedCount + ", modified=" + getModifiedCount()
+                + ", removed=" + removedIds.length + ", reordered=" + reordered + "}";
+    }
+}
@@ -0,0 +1,92 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.HTMLBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The {@code movie-item} block of every movie of a {@link MovieCatalog}, rendered once and kept encoded, so that the
+ * page is assembled by copying bytes instead of formatting ids and names again.
+ *
+ * <p>{@link #update} renders the next version of the movies from these fragments: a movie with the same id and the
+ * same name as before keeps its fragment, and only the added and renamed movies are rendered. Instances are immutable
+ * and share the fragments they have in common.
+ */
+public final class MovieFragments {
+    private static final HTMLBuilder HTML_BUILDER = new HTMLBuilder();
+
+    private final MovieIdTable ids;
+    private final byte[][] items;
+    private final int reusedCount;
+
+    private MovieFragments(final MovieIdTable ids, final byte[][] items, final int reusedCount) {
+        this.ids = ids;
+        this.items = items;
+        this.reusedCount = reusedCount;
+    }
+
+    public static MovieFragments render(final MovieCatalog catalog) {
+        final byte[][] items = new byte[catalog.size()][];
+        for (int position = 0; position < items.length; position++) {
+            items[position] = HTML_BUILDER.getMovieItemHtml(catalog, position);
+        }
+        return new MovieFragments(MovieIdTable.of(catalog), items, 0);
+    }
+
+    /**
+     * @param next movies of the new version.
+     * @return the fragments of the new version, reusing those of the movies whose id and name did not change.
+     */
+    public MovieFragments update(final MovieCatalog next) {
+        final MovieCatalog catalog = ids.getCatalog();
+        if (next == catalog) {
+            return this;
+        }
+        final byte[][] nextItems = new byte[next.size()][];
+        int reused = 0;
+        for (int position = 0; position < nextItems.length; position++) {
+            final long id = next.getId(position);
+            // most movies keep their position, which spares the random access to the id table
+            final int previous = position < catalog.size() && catalog.getId(position) == id
+                    ? position : ids.indexOf(id);
+            if (previous >= 0 && next.nameEquals(position, catalog, previous)) {
+                nextItems[position] = items[previous];
+                reused++;
+            } else {
+                nextItems[position] = HTML_BUILDER.getMovieItemHtml(next, position);
+            }
+        }
+        return new MovieFragments(ids.forCatalog(next), nextItems, reused);
+    }
+
+    public MovieCatalog getCatalog() {
+        return ids.getCatalog();
+    }
+
+    /**
+     * @return number of fragments taken from the previous version by {@link #update}, 0 after {@link #render}.
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    byte[] getItem(final int position) {
+        return items[position];
+    }
+
+    /**
+     * @return the page of the movies, the same bytes as {@link HTMLBuilder#writeMoviesHtml(MovieCatalog, OutputStream)}
+     * writes.
+     */
+    public byte[] toHtml() {
+        return HTML_BUILDER.getMoviesHtml(items);
+    }
+
+    /**
+     * Writes the page of the movies by copying the fragments to the stream in chunks.
+     */
+    public void writeHtml(final OutputStream out) throws IOException {
+        HTML_BUILDER.writeMoviesHtml(items, out);
+    }
+}
@@ -0,0 +1,68 @@
+package com.amazonaws.samples.appconfig.movies;
+
+/**
+ * Open-addressing hash table from the ids of a {@link MovieCatalog} to their positions, without boxing. When an id
+ * appears more than once, the first movie wins. Shared by {@link MovieIndex} and {@link MovieFragments}.
+ */
+final class MovieIdTable {
+    private final MovieCatalog catalog;
+    /**
+     * Position + 1 of the movie whose id hashes to the slot, or 0 for an empty slot.
+     */
+    private final int[] slots;
+
+    private MovieIdTable(final MovieCatalog catalog, final int[] slots) {
+        this.catalog = catalog;
+        this.slots = slots;
+    }
+
+    static MovieIdTable of(final MovieCatalog catalog) {
+        // at most half full, so that probe sequences stay short
+        final int[] slots = new int[Integer.highestOneBit(Math.max(1, catalog.size()) * 2 - 1) << 1];
+        final int mask = slots.length - 1;
+        for (int position = 0; position < catalog.size(); position++) {
+            final long id = catalog.getId(position);
+            int slot = hash(id) & mask;
+            while (slots[slot] != 0 && catalog.getId(slots[slot] - 1) != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (slots[slot] == 0) {
+                slots[slot] = position + 1;
+            }
+        }
+        return new MovieIdTable(catalog, slots);
+    }
+
+    /**
+     * @return a table of the catalogue, reusing this one if the catalogue has the same ids in the same order.
+     */
+    MovieIdTable forCatalog(final MovieCatalog next) {
+        if (next == catalog) {
+            return this;
+        }
+        return next.idsEqual(catalog) ? new MovieIdTable(next, slots) : of(next);
+    }
+
+    MovieCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return position of the movie with the given id, or -1 if there is none.
+     */
+    int indexOf(final long id) {
+        final int mask = slots.length - 1;
+        for (int slot = hash(id) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final int position = slots[slot] - 1;
+            if (catalog.getId(position) == id) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(final long id) {
+        final long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,209 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Read-only index over the {@link MovieCatalog} of one configuration version, for the /movies endpoints that return
+ * part of the list. It is built once per version, so a request reads only the movies it returns instead of rendering
+ * them all.
+ *
+ * <ul>
+ *     <li>Ids are kept in an open-addressing hash table of positions, a {@code MovieIdTable}, so {@link #findById} needs
+ *     no boxing and takes constant time. When an id appears more than once, the first movie wins.</li>
+ *     <li>Names are kept as positions sorted case-insensitively, so the movies starting with a prefix are found with a
+ *     binary search and form one run.</li>
+ *     <li>Pages follow the order of the configuration.</li>
+ * </ul>
+ *
+ * <p>When a new version changes a few movies of a large catalogue, {@link #update} derives its index from the
+ * previous one and sorts only the changed names.
+ */
+public class MovieIndex {
+    /**
+     * Share of changed movies above which {@link #update} sorts all names again.
+     */
+    private static final int FULL_REBUILD_DIVISOR = 4;
+
+    private final MovieCatalog catalog;
+    private final MovieIdTable ids;
+    private final int[] byName;
+
+    /**
+     * @param catalog movies in configuration order.
+     */
+    public MovieIndex(final MovieCatalog catalog) {
+        this(MovieIdTable.of(catalog), sortByName(catalog));
+    }
+
+    private MovieIndex(final MovieIdTable ids, final int[] byName) {
+        this.catalog = ids.getCatalog();
+        this.ids = ids;
+        this.byName = byName;
+    }
+
+    /**
+     * Indexes the movies of a new version, reusing the name order of the previous index for the movies that did not
+     * change. Only the added and renamed movies are sorted, and each is placed with a binary search, so the names
+     * decoded are proportional to the change. The ids are hashed again unless they are the same as before.
+     *
+     * <p>Falls back to a full build when many movies changed or the unchanged ones were reordered.
+     *
+     * @param previous index of the previous version.
+     * @param catalog  movies of the new version.
+     * @return an index equal to {@code new MovieIndex(catalog)}, or {@code previous} if it already indexes the catalogue.
+     */
+    public static MovieIndex update(final MovieIndex previous, final MovieCatalog catalog) {
+        if (previous.catalog == catalog) {
+            return previous;
+        }
+        final MovieCatalogDiff diff = MovieCatalogDiff.between(previous, catalog);
+        if (diff.isReordered() || diff.getChangedCount() > catalog.size() / FULL_REBUILD_DIVISOR) {
+            return new MovieIndex(catalog);
+        }
+        // unchanged movies, in the previous name order, at their new positions
+        final int[] kept = new int[catalog.size() - diff.getChangedCount()];
+        int keptCount = 0;
+        for (final int previousPosition : previous.byName) {
+            final int position = diff.getNextPosition(previousPosition);
+            if (position >= 0) {
+                kept[keptCount++] = position;
+            }
+        }
+        final int[] changed = sortByName(catalog, diff.getChangedCount(), diff::getChangedPosition);
+        final int[] byName = new int[catalog.size()];
+        int from = 0;
+        int to = 0;
+        for (final int position : changed) {
+            final int insertAt = insertionPoint(catalog, kept, from, position);
+            System.arraycopy(kept, from, byName, to, insertAt - from);
+            to += insertAt - from;
+            byName[to++] = position;
+            from = insertAt;
+        }
+        System.arraycopy(kept, from, byName, to, kept.length - from);
+        return new MovieIndex(previous.ids.forCatalog(catalog), byName);
+    }
+
+    public int size() {
+        return catalog.size();
+    }
+
+    MovieCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return the movie with the given id, or null if there is none.
+     */
+    public Movie findById(final long id) {
+        final int position = indexOf(id);
+        return position < 0 ? null : catalog.getMovie(position);
+    }
+
+    /**
+     * @return position of the movie with the given id, or -1 if there is none.
+     */
+    int indexOf(final long id) {
+        return ids.indexOf(id);
+    }
+
+    /**
+     * @param page  number of the page, from 0.
+     * @param limit number of movies per page.
+     * @return the movies of the page in configuration order, empty past the last page.
+     */
+    public MovieCatalog page(final int page, final int limit) {
+        final int from = offset(page, limit, catalog.size());
+        return catalog.range(from, from + Math.min(limit, catalog.size() - from));
+    }
+
+    /**
+     * @param prefix start of the names to find, compared case-insensitively.
+     * @param page   number of the page of matches, from 0.
+     * @param limit  number of movies per page.
+     * @return the matching movies ordered by name, empty past the last page.
+     */
+    public MovieCatalog findByNamePrefix(final String prefix, final int page, final int limit) {
+        final int first = lowerBound(prefix);
+        final int from = first + offset(page, limit, byName.length - first);
+        final int end = from + Math.min(limit, byName.length - from);
+        int to = from;
+        while (to < end && catalog.getMovieName(byName[to]).regionMatches(true, 0, prefix, 0, prefix.length())) {
+            to++;
+        }
+        return catalog.select(byName, from, to);
+    }
+
+    /**
+     * @return index in {@link #byName} of the first name not ordered before the prefix.
+     */
+    private int lowerBound(final String prefix) {
+        int low = 0;
+        int high = byName.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(catalog.getMovieName(byName[middle]), prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int offset(final int page, final int limit, final int size) {
+        if (page < 0 || limit < 1) {
+            throw new IllegalArgumentException("page must be at least 0 and limit at least 1");
+        }
+        return (int) Math.min(size, (long) page * limit);
+    }
+
+    private static int[] sortByName(final MovieCatalog catalog) {
+        return sortByName(catalog, catalog.size(), i -> i);
+    }
+
+    /**
+     * Sorts positions by name, and names that are equal ignoring case by position. Decodes every name once for the
+     * sort; only the sorted positions are kept.
+     *
+     * @param count     number of positions to sort.
+     * @param positions the positions, in ascending order.
+     */
+    private static int[] sortByName(final MovieCatalog catalog, final int count, final IntUnaryOperator positions) {
+        final String[] names = new String[count];
+        final Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            names[i] = catalog.getMovieName(positions.applyAsInt(i));
+        }
+        // stable, so equal names keep the ascending order of their positions
+        Arrays.sort(order, Comparator.comparing(i -> names[i], String.CASE_INSENSITIVE_ORDER));
+        final int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = positions.applyAsInt(order[i]);
+        }
+        return sorted;
+    }
+
+    /**
+     * @return index in {@code sorted}, from {@code from}, before which the movie at {@code position} belongs in the
+     * order of {@link #sortByName}.
+     */
+    private static int insertionPoint(final MovieCatalog catalog, final int[] sorted, final int from, final int position) {
+        final String name = catalog.getMovieName(position);
+        int low = from;
+        int high = sorted.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = String.CASE_INSENSITIVE_ORDER.compare(catalog.getMovieName(sorted[middle]), name);
+            if (comparison < 0 || (comparison == 0 && sorted[middle] < position)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,522 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.cache.ConfigurationCacheItem;
+import com.amazonaws.samples.appconfig.cache.ConfigurationChangeListener;
+import com.amazonaws.samples.appconfig.cache.RefreshPolicy;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.provider.Futures;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import com.amazonaws.samples.appconfig.utils.MovieJsonParser;
+import com.amazonaws.samples.appconfig.utils.MovieJsonWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind pipeline for movie edits. An edit is acknowledged once the local view of the movies configuration, the
+ * one requests read from the {@link ConfigurationCache}, shows it. It is published upstream later, together with the
+ * other edits of the same window, as a single new hosted configuration version:
+ *
+ * <ul>
+ *     <li>Edits of the same movie id coalesce: only the last name is kept.</li>
+ *     <li>A batch is published {@code window} after its first edit, or as soon as it holds {@code maxBatchSize}
+ *     movies. One version is published at a time; edits made meanwhile wait for the next batch.</li>
+ *     <li>A batch that fails to publish is retried with the next one, after at least {@code window} and the backoff of
+ *     {@code retryPolicy}. A batch that AppConfig refuses, e.g. for an unknown configuration profile or an invalid
+ *     document, is not retried: its edits are dropped from the local view.</li>
+ *     <li>Published edits stay applied over the configurations fetched from AppConfig until one of them shows them,
+ *     i.e. once an operator deploys the new version, or for at most {@link #CONFIRMATION_TIMEOUT}. The pipeline does
+ *     not deploy what it publishes: until then the edits are only seen by this service.</li>
+ * </ul>
+ *
+ * <p>The local view is a configuration with a version of its own, {@code <deployed version>+local.<n>}, so the page,
+ * the index and the entity tag derived from it change with every applied edit, and only then. Edits that arrive
+ * together are applied with a single rewrite of the document. The edits are also applied to each fetched configuration
+ * before it is cached (see {@link AppConfigUtility#setOverlay}), so that a fetch of the same deployed version keeps the
+ * local view as it is.
+ *
+ * <p>The state of the pipeline is confined to the thread of {@code scheduler}, which must be single-threaded. Publishing
+ * calls AppConfig on {@code publishExecutor}, so that it does not hold up the acknowledgement of new edits.
+ */
+public class MovieUpdatePipeline implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(MovieUpdatePipeline.class);
+
+    /**
+     * Longest time a published edit is applied over deployed configurations that do not show it, e.g. when its
+     * version is never deployed.
+     */
+    static final Duration CONFIRMATION_TIMEOUT = Duration.ofMinutes(10);
+    static final String LOCAL_VERSION_SEPARATOR = "+local.";
+    private static final String CONTENT_TYPE = "application/json";
+
+    private final AppConfigUtility appConfigUtility;
+    private final ConfigurationCache configurationCache;
+    private final ConfigurationKey key;
+    private final String applicationId;
+    private final String configurationProfileId;
+    private final ScheduledExecutorService scheduler;
+    private final Executor publishExecutor;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final RefreshPolicy retryPolicy;
+    private final MovieJsonWriter movieJsonWriter = new MovieJsonWriter();
+    private final ConfigurationChangeListener changeListener
+            = (changedKey, configuration) -> onConfigurationChange(configuration);
+    /**
+     * Last deployed configuration fetched, the base of the local view. Written by {@link #overlay} on fetching threads.
+     */
+    private volatile GetConfigurationResponse deployed;
+    /**
+     * Edits applied to the fetched configurations, or null if there are none.
+     */
+    private volatile LocalEdits localEdits;
+
+    private final Queue<Edit> submitted = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder publishedVersionCount = new LongAdder();
+    private final LongAdder failedPublishCount = new LongAdder();
+
+    // confined to the scheduler thread
+    private final Map<Long, String> pending = new LinkedHashMap<>();
+    /**
+     * Batch being published, still applied to the local view until its outcome is known.
+     */
+    private final Map<Long, String> inFlight = new LinkedHashMap<>();
+    private final Map<Long, Published> unconfirmed = new LinkedHashMap<>();
+    private final List<CompletableFuture<Void>> flushWaiters = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean publishing;
+    private String localVersion;
+    private long localSequence;
+
+    /**
+     * @param appConfigUtility       reads the movies configuration and publishes its new versions.
+     * @param configurationCache     cache holding the local view, watched for newly deployed versions.
+     * @param key                    key the movies configuration is read and cached with.
+     * @param applicationId          id of the application of the movies configuration, to which versions are
+     *                               published.
+     * @param configurationProfileId id of its hosted configuration profile.
+     * @param scheduler              single-threaded executor running the pipeline.
+     * @param publishExecutor        executor of the calls to AppConfig.
+     * @param window                 longest time an edit waits for others before its batch is published.
+     * @param maxBatchSize           number of edited movies that publishes a batch right away.
+     * @param retryPolicy            backoff between failed publications, kept apart from the one of the fetches.
+     */
+    public MovieUpdatePipeline(final AppConfigUtility appConfigUtility,
+                               final ConfigurationCache configurationCache,
+                               final ConfigurationKey key,
+                               final String applicationId,
+                               final String configurationProfileId,
+                               final ScheduledExecutorService scheduler,
+                               final Executor publishExecutor,
+                               final Duration window,
+                               final int maxBatchSize,
+                               final RefreshPolicy retryPolicy) {
+        if (window.isNegative() || maxBatchSize < 1) {
+            throw new IllegalArgumentException("window must not be negative and maxBatchSize must be positive");
+        }
+        this.appConfigUtility = appConfigUtility;
+        this.configurationCache = configurationCache;
+        this.key = key;
+        this.applicationId = Objects.requireNonNull(applicationId, "applicationId");
+        this.configurationProfileId = Objects.requireNonNull(configurationProfileId, "configurationProfileId");
+        this.scheduler = scheduler;
+        this.publishExecutor = publishExecutor;
+        this.windowMillis = window.toMillis();
+        this.maxBatchSize = maxBatchSize;
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Starts following the deployed versions of the configuration.
+     */
+    public void start() {
+        appConfigUtility.setOverlay(key, this::overlay);
+        configurationCache.addChangeListener(key, changeListener, scheduler);
+    }
+
+    /**
+     * Queues the edit of a movie: renames it, or adds it if no movie has its id.
+     *
+     * @return a future completed once the local view shows the edit, or completed exceptionally, and the edit dropped,
+     * if the configuration could not be read.
+     */
+    public CompletableFuture<Void> submit(final Movie movie) {
+        final Edit edit = new Edit(movie.getId(), Objects.requireNonNull(movie.getMovieName(), "movieName"));
+        submitted.add(edit);
+        submittedCount.increment();
+        if (drainScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::drain);
+        }
+        return edit.applied;
+    }
+
+    /**
+     * Publishes the edits submitted so far without waiting for the end of the window, nor for the backoff after a
+     * failed publication.
+     *
+     * @return a future completed once they are published, or completed exceptionally if publishing failed.
+     */
+    public CompletableFuture<Void> flush() {
+        final CompletableFuture<Void> flushed = new CompletableFuture<>();
+        scheduler.execute(() -> {
+            drain();
+            if (pending.isEmpty() && !publishing) {
+                flushed.complete(null);
+                return;
+            }
+            flushWaiters.add(flushed);
+            if (!publishing) {
+                publish();
+            }
+        });
+        return flushed;
+    }
+
+    /**
+     * Stops following the configuration and publishes the remaining edits, waiting up to 10 seconds. Edits that could
+     * not be published are logged and lost.
+     */
+    @Override
+    public void close() {
+        configurationCache.removeChangeListener(key, changeListener);
+        appConfigUtility.removeOverlay(key);
+        try {
+            flush().get(10, TimeUnit.SECONDS);
+        } catch (final ExecutionException | TimeoutException e) {
+            logger.warn("Could not publish the last movie edits of {}", key, e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    /**
+     * @return number of configuration versions published, each with one or more edits.
+     */
+    public long getPublishedVersionCount() {
+        return publishedVersionCount.sum();
+    }
+
+    public long getFailedPublishCount() {
+        return failedPublishCount.sum();
+    }
+
+    /**
+     * Moves the submitted edits to the pending batch and applies them to the local view with a single rewrite.
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        final List<Edit> edits = new ArrayList<>();
+        for (Edit edit; (edit = submitted.poll()) != null; ) {
+            edits.add(edit);
+        }
+        if (edits.isEmpty()) {
+            return;
+        }
+        final Map<Long, String> previous = new LinkedHashMap<>(pending);
+        for (final Edit edit : edits) {
+            pending.put(edit.id, edit.movieName);
+        }
+        try {
+            applyLocally();
+        } catch (final RuntimeException e) {
+            logger.warn("Could not apply {} movie edits to {}", edits.size(), key, e);
+            pending.clear();
+            pending.putAll(previous);
+            for (final Edit edit : edits) {
+                edit.applied.completeExceptionally(e);
+            }
+            return;
+        }
+        for (final Edit edit : edits) {
+            edit.applied.complete(null);
+        }
+        schedulePublish(pending.size() >= maxBatchSize ? 0 : windowMillis);
+    }
+
+    /**
+     * Caches the deployed configuration with the unconfirmed, in-flight and pending edits applied, as a new local
+     * version, or as it is if no edit is left.
+     */
+    private void applyLocally() {
+        final GetConfigurationResponse current = appConfigUtility.getConfiguration(key);
+        GetConfigurationResponse base = deployed;
+        if (base == null) {
+            // cached before the overlay was set, so it is a deployed configuration
+            base = current;
+            deployed = base;
+        }
+        final Map<Long, String> edits = edits();
+        if (edits.isEmpty()) {
+            localEdits = null;
+            localVersion = null;
+            appConfigUtility.putLocalConfiguration(key, base);
+            return;
+        }
+        final LocalEdits next = new LocalEdits(edits, ++localSequence);
+        final GetConfigurationResponse local = withEdits(base, next);
+        localEdits = next;
+        localVersion = local.configurationVersion();
+        appConfigUtility.putLocalConfiguration(key, local);
+    }
+
+    /**
+     * Applies the edits again if the cached configuration is not the local view of the last deployed configuration
+     * with the current edits, e.g. after edits were confirmed or a fetch cached a configuration concurrently.
+     */
+    private void refreshLocalView() {
+        final LocalEdits current = localEdits;
+        final GetConfigurationResponse base = deployed;
+        final ConfigurationCacheItem<GetConfigurationResponse> item = configurationCache.peek(key);
+        final String cachedVersion = item == null || item.getValue() == null
+                ? null : item.getValue().configurationVersion();
+        final Map<Long, String> edits = edits();
+        if (base != null && cachedVersion != null && (current == null
+                ? edits.isEmpty() && cachedVersion.equals(base.configurationVersion())
+                : current.movieNames.equals(edits) && cachedVersion.equals(current.versionOf(base)))) {
+            localVersion = current == null ? null : cachedVersion;
+            return;
+        }
+        try {
+            applyLocally();
+        } catch (final RuntimeException e) {
+            logger.warn("Could not apply movie edits to {}", key, e);
+        }
+    }
+
+    /**
+     * Called on the fetching threads with each deployed configuration fetched, before it is cached.
+     *
+     * @return the configuration with the local edits applied.
+     */
+    private GetConfigurationResponse overlay(final GetConfigurationResponse configuration) {
+        if (configuration.content().asByteBuffer().remaining() == 0) {
+            // not modified since the version the fetch was made with
+            return configuration;
+        }
+        deployed = configuration;
+        final LocalEdits edits = localEdits;
+        if (edits == null) {
+            return configuration;
+        }
+        try {
+            return withEdits(configuration, edits);
+        } catch (final RuntimeException e) {
+            logger.warn("Could not apply movie edits to version {} of {}", configuration.configurationVersion(), key, e);
+            return configuration;
+        }
+    }
+
+    private GetConfigurationResponse withEdits(final GetConfigurationResponse configuration, final LocalEdits edits) {
+        final byte[] content = movieJsonWriter.applyEdits(configuration.content().asInputStream(), edits.movieNames);
+        return configuration.toBuilder()
+                .content(SdkBytes.fromByteArray(content))
+                .configurationVersion(edits.versionOf(configuration))
+                .build();
+    }
+
+    /**
+     * @return the unconfirmed edits overridden by the in-flight ones, themselves overridden by the pending ones.
+     */
+    private Map<Long, String> edits() {
+        final Map<Long, String> edits = new LinkedHashMap<>();
+        for (final Map.Entry<Long, Published> edit : unconfirmed.entrySet()) {
+            edits.put(edit.getKey(), edit.getValue().movieName);
+        }
+        edits.putAll(inFlight);
+        edits.putAll(pending);
+        return edits;
+    }
+
+    /**
+     * Schedules the publication of the pending edits after the delay, or after the backoff of a failed publication if
+     * that is longer.
+     */
+    private void schedulePublish(final long windowDelayMillis) {
+        if (pending.isEmpty() || publishing) {
+            return;
+        }
+        final long delayMillis = Long.max(windowDelayMillis, retryPolicy.getRetryDelay(key).toMillis());
+        if (scheduledFlush != null) {
+            if (scheduledFlush.getDelay(TimeUnit.MILLISECONDS) <= delayMillis) {
+                return;
+            }
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = scheduler.schedule(this::publish, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publishes the pending edits, over the current local view, as one new version.
+     */
+    private void publish() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty() || publishing) {
+            return;
+        }
+        final Map<Long, String> batch = new LinkedHashMap<>(pending);
+        final Map<Long, String> edits = edits();
+        inFlight.putAll(batch);
+        pending.clear();
+        publishing = true;
+        CompletableFuture.supplyAsync(() -> {
+            // applying the edits again is harmless, and covers a deployed version fetched since the last local one
+            final byte[] content = movieJsonWriter.applyEdits(
+                    appConfigUtility.getConfiguration(key).content().asInputStream(), edits);
+            return appConfigUtility.publishConfiguration(applicationId, configurationProfileId, content, CONTENT_TYPE);
+        }, publishExecutor).whenComplete((versionNumber, e) -> scheduler.execute(() -> onPublished(batch, versionNumber, e)));
+    }
+
+    private void onPublished(final Map<Long, String> batch, final Integer versionNumber, final Throwable failure) {
+        publishing = false;
+        inFlight.clear();
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>(flushWaiters);
+        flushWaiters.clear();
+        if (failure != null) {
+            failedPublishCount.increment();
+            if (ConfigurationCacheItem.isCacheableExceptionType(Futures.unwrap(failure))) {
+                // the same batch would be refused again
+                logger.error("AppConfig refused {} movie edits of {}, dropping them", batch.size(), key, failure);
+                retryPolicy.reset(key);
+                refreshLocalView();
+            } else {
+                final Duration backoff = retryPolicy.onFailure(key);
+                logger.warn("Could not publish {} movie edits of {}, retrying in {} ms", batch.size(), key,
+                        backoff.toMillis(), failure);
+                // edits made since take precedence over the batch
+                final Map<Long, String> newer = new LinkedHashMap<>(pending);
+                pending.clear();
+                pending.putAll(batch);
+                pending.putAll(newer);
+            }
+            for (final CompletableFuture<Void> waiter : waiters) {
+                waiter.completeExceptionally(failure);
+            }
+            schedulePublish(Long.max(windowMillis, 1));
+            return;
+        }
+        retryPolicy.reset(key);
+        publishedVersionCount.increment();
+        logger.info("Published {} movie edits of {} as version {}", batch.size(), key, versionNumber);
+        final long publishedAt = System.nanoTime();
+        for (final Map.Entry<Long, String> edit : batch.entrySet()) {
+            unconfirmed.put(edit.getKey(), new Published(edit.getValue(), publishedAt));
+        }
+        scheduler.schedule(this::expireUnconfirmed, CONFIRMATION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        refreshLocalView();
+        if (!waiters.isEmpty() && !pending.isEmpty()) {
+            // edits submitted during the publication are part of the flush
+            flushWaiters.addAll(waiters);
+            publish();
+            return;
+        }
+        for (final CompletableFuture<Void> waiter : waiters) {
+            waiter.complete(null);
+        }
+        schedulePublish(pending.size() >= maxBatchSize ? 0 : windowMillis);
+    }
+
+    /**
+     * Called with every new version cached for the key, including the local ones, which are ignored. A deployed
+     * version confirms the unconfirmed edits it shows, which are then no longer applied over it.
+     */
+    private void onConfigurationChange(final GetConfigurationResponse configuration) {
+        if (configuration == null || Objects.equals(configuration.configurationVersion(), localVersion)) {
+            return;
+        }
+        final GetConfigurationResponse base = deployed;
+        if (!unconfirmed.isEmpty() && base != null) {
+            final MovieCatalog catalog = new MovieJsonParser().getMovieCatalog(base.content().asInputStream());
+            final MovieIdTable ids = MovieIdTable.of(catalog);
+            unconfirmed.entrySet().removeIf(edit -> {
+                final int position = ids.indexOf(edit.getKey());
+                return position >= 0 && catalog.getMovieName(position).equals(edit.getValue().movieName);
+            });
+        }
+        refreshLocalView();
+    }
+
+    /**
+     * Stops applying the published edits that no deployed configuration has shown within
+     * {@link #CONFIRMATION_TIMEOUT}.
+     */
+    private void expireUnconfirmed() {
+        final long now = System.nanoTime();
+        final int before = unconfirmed.size();
+        unconfirmed.entrySet().removeIf(
+                edit -> now - edit.getValue().publishedAtNanos >= CONFIRMATION_TIMEOUT.toNanos());
+        final int expired = before - unconfirmed.size();
+        if (expired > 0) {
+            logger.warn("Dropping {} published movie edits of {}: no deployed version showed them within {}. Deploy "
+                    + "the hosted version they were published in to keep them", expired, key, CONFIRMATION_TIMEOUT);
+            refreshLocalView();
+        }
+    }
+
+    private static final class Edit {
+        private final long id;
+        private final String movieName;
+        private final CompletableFuture<Void> applied = new CompletableFuture<>();
+
+        private Edit(final long id, final String movieName) {
+            this.id = id;
+            this.movieName = movieName;
+        }
+    }
+
+    /**
+     * Edits applied to the fetched configurations. The version of the local view only depends on the deployed version
+     * and on {@code sequence}, so fetching the same deployed version again does not change it.
+     */
+    private static final class LocalEdits {
+        private final Map<Long, String> movieNames;
+        private final long sequence;
+
+        private LocalEdits(final Map<Long, String> movieNames, final long sequence) {
+            this.movieNames = movieNames;
+            this.sequence = sequence;
+        }
+
+        private String versionOf(final GetConfigurationResponse deployed) {
+            return deployed.configurationVersion() + LOCAL_VERSION_SEPARATOR + sequence;
+        }
+    }
+
+    private static final class Published {
+        private final String movieName;
+        private final long publishedAtNanos;
+
+        private Published(final String movieName, final long publishedAtNanos) {
+            this.movieName = movieName;
+            this.publishedAtNanos = publishedAtNanos;
+        }
+    }
+}
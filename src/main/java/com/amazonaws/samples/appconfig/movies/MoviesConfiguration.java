@@ -0,0 +1,406 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.cache.ConfigurationSnapshotStore;
+import com.amazonaws.samples.appconfig.cache.RefreshPolicy;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.provider.AppConfigAgentProvider;
+import com.amazonaws.samples.appconfig.provider.AppConfigApiProvider;
+import com.amazonaws.samples.appconfig.provider.AppConfigDataProvider;
+import com.amazonaws.samples.appconfig.provider.ConfigurationCluster;
+import com.amazonaws.samples.appconfig.provider.ConfigurationProvider;
+import com.amazonaws.samples.appconfig.provider.ConfigurationProviderChain;
+import com.amazonaws.samples.appconfig.provider.FileConfigurationProvider;
+import com.amazonaws.samples.appconfig.provider.MeteredConfigurationProvider;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import com.amazonaws.samples.appconfig.utils.ConfigurationRefresher;
+import com.amazonaws.samples.appconfig.utils.VirtualThreads;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import software.amazon.awssdk.services.appconfig.AppConfigAsyncClient;
+import software.amazon.awssdk.services.appconfig.AppConfigClient;
+import software.amazon.awssdk.services.appconfigdata.AppConfigDataAsyncClient;
+import software.amazon.awssdk.services.appconfigdata.AppConfigDataClient;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Wires the AppConfig clients, the configuration provider, the configuration cache and the {@link AppConfigUtility} as
+ * application-wide singletons so that every request shares one HTTP connection pool, one cache and one polling session.
+ */
+@Configuration
+public class MoviesConfiguration {
+    private static final Logger logger = LogManager.getLogger(MoviesConfiguration.class);
+
+    /**
+     * The client is created lazily so the application can start (and serve the static movie list) even when no AWS
+     * region or credentials are available yet. It is closed when the application context shuts down.
+     */
+    @Bean(destroyMethod = "close")
+    @Lazy
+    public AppConfigClient appConfigClient() {
+        return AppConfigClient.create();
+    }
+
+    @Bean(destroyMethod = "close")
+    @Lazy
+    public AppConfigDataClient appConfigDataClient() {
+        return AppConfigDataClient.create();
+    }
+
+    /**
+     * Asynchronous clients for the {@code /movies/getMoviesAsync} endpoint. Being lazy, they are only created, along with
+     * their event loop threads, once that endpoint is called.
+     */
+    @Bean(destroyMethod = "close")
+    @Lazy
+    public AppConfigAsyncClient appConfigAsyncClient() {
+        return AppConfigAsyncClient.create();
+    }
+
+    @Bean(destroyMethod = "close")
+    @Lazy
+    public AppConfigDataAsyncClient appConfigDataAsyncClient() {
+        return AppConfigDataAsyncClient.create();
+    }
+
+    /**
+     * Polls configurations through AppConfigData sessions, which return an empty body while the configuration is
+     * unchanged. This is the default.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "appconfig.retrieval", havingValue = "session", matchIfMissing = true)
+    public ConfigurationProvider appConfigDataProvider(@Lazy final AppConfigDataClient appConfigDataClient,
+                                                       @Lazy final AppConfigDataAsyncClient appConfigDataAsyncClient,
+                                                       final MeterRegistry meterRegistry,
+                                                       @Value("${appconfig.minimumPollIntervalInSeconds:15}") final long minimumPollIntervalInSeconds) {
+        return new MeteredConfigurationProvider(
+                new AppConfigDataProvider(appConfigDataClient, appConfigDataAsyncClient,
+                        Duration.ofSeconds(minimumPollIntervalInSeconds)),
+                meterRegistry);
+    }
+
+    /**
+     * Polls configurations with the legacy GetConfiguration API.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "appconfig.retrieval", havingValue = "legacy")
+    public ConfigurationProvider appConfigApiProvider(@Lazy final AppConfigClient appConfigClient,
+                                                      @Lazy final AppConfigAsyncClient appConfigAsyncClient,
+                                                      final MeterRegistry meterRegistry,
+                                                      @Value("${appconfig.clientId:}") final String clientId) {
+        return new MeteredConfigurationProvider(
+                new AppConfigApiProvider(appConfigClient, appConfigAsyncClient,
+                        clientId.isEmpty() ? UUID.randomUUID().toString() : clientId),
+                meterRegistry);
+    }
+
+    /**
+     * Reads configurations from the providers listed in {@code appconfig.providerChain}, in order: {@code agent} for the
+     * AppConfig Agent sidecar on localhost, {@code file} for files under {@code appconfig.configurationDirectory},
+     * {@code session} for AppConfigData sessions and {@code legacy} for the GetConfiguration API.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "appconfig.retrieval", havingValue = "chain")
+    public ConfigurationProviderChain configurationProviderChain(@Lazy final AppConfigDataClient appConfigDataClient,
+                                                                 @Lazy final AppConfigDataAsyncClient appConfigDataAsyncClient,
+                                                                 @Lazy final AppConfigClient appConfigClient,
+                                                                 @Lazy final AppConfigAsyncClient appConfigAsyncClient,
+                                                                 @Value("${appconfig.providerChain:agent,session}") final String[] providerChain,
+                                                                 @Value("${appconfig.agentEndpoint:http://localhost:2772}") final String agentEndpoint,
+                                                                 @Value("${appconfig.agentTimeoutInMillis:1000}") final long agentTimeoutInMillis,
+                                                                 @Value("${appconfig.configurationDirectory:}") final String configurationDirectory,
+                                                                 @Value("${appconfig.providerCoolDownInSeconds:30}") final long providerCoolDownInSeconds,
+                                                                 @Value("${appconfig.minimumPollIntervalInSeconds:15}") final long minimumPollIntervalInSeconds,
+                                                                 @Value("${appconfig.clientId:}") final String clientId) {
+        final List<ConfigurationProvider> providers = new ArrayList<>();
+        for (final String provider : providerChain) {
+            switch (provider.trim()) {
+                case "agent":
+                    providers.add(new AppConfigAgentProvider(URI.create(agentEndpoint),
+                            Duration.ofMillis(agentTimeoutInMillis)));
+                    break;
+                case "file":
+                    if (configurationDirectory.isEmpty()) {
+                        throw new IllegalArgumentException("appconfig.configurationDirectory is required by the file provider");
+                    }
+                    final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("appconfig-file-watch-");
+                    threadFactory.setDaemon(true);
+                    providers.add(new FileConfigurationProvider(Paths.get(configurationDirectory),
+                            Executors.newSingleThreadExecutor(threadFactory)));
+                    break;
+                case "session":
+                    providers.add(new AppConfigDataProvider(appConfigDataClient, appConfigDataAsyncClient,
+                            Duration.ofSeconds(minimumPollIntervalInSeconds)));
+                    break;
+                case "legacy":
+                    providers.add(new AppConfigApiProvider(appConfigClient, appConfigAsyncClient,
+                            clientId.isEmpty() ? UUID.randomUUID().toString() : clientId));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown configuration provider " + provider);
+            }
+        }
+        logger.info("Reading configurations from {}", String.join(", ", providerChain));
+        return new ConfigurationProviderChain(providers, Duration.ofSeconds(providerCoolDownInSeconds));
+    }
+
+    /**
+     * The chain as a whole is metered, so that {@code appconfig.fetch} records what the request path waited for.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "appconfig.retrieval", havingValue = "chain")
+    public ConfigurationProvider meteredConfigurationProviderChain(final ConfigurationProviderChain configurationProviderChain,
+                                                                   final MeterRegistry meterRegistry) {
+        return new MeteredConfigurationProvider(configurationProviderChain, meterRegistry);
+    }
+
+    /**
+     * Bounds the cache by entry count and total payload size, and expires entries that are no longer read as well as
+     * cached exceptions, so that configurations of tenants that went away do not stay in memory. When a snapshot
+     * directory is configured the cache starts with the configurations saved before the last shutdown.
+     */
+    @Bean
+    public ConfigurationCache configurationCache(@Value("${appconfig.cacheMaxEntries:1000}") final long cacheMaxEntries,
+                                                 @Value("${appconfig.cacheMaxSizeInBytes:67108864}") final long cacheMaxSizeInBytes,
+                                                 @Value("${appconfig.cacheNegativeTtlInSeconds:300}") final long cacheNegativeTtlInSeconds,
+                                                 @Value("${appconfig.cacheMaxIdleInSeconds:3600}") final long cacheMaxIdleInSeconds,
+                                                 @Value("${appconfig.cacheTtlInSeconds:30}") final long cacheTtlInSeconds,
+                                                 final ObjectProvider<ConfigurationSnapshotStore> configurationSnapshotStore) {
+        final ConfigurationCache cache = new ConfigurationCache(cacheMaxEntries,
+                cacheMaxSizeInBytes,
+                Duration.ofSeconds(cacheNegativeTtlInSeconds),
+                Duration.ofSeconds(cacheMaxIdleInSeconds));
+        final ConfigurationSnapshotStore snapshotStore = configurationSnapshotStore.getIfAvailable();
+        if (snapshotStore != null) {
+            logger.info("Loaded {} configuration snapshots", cache.warmUp(snapshotStore, Duration.ofSeconds(cacheTtlInSeconds)));
+        }
+        return cache;
+    }
+
+    /**
+     * Saves the last configuration received for every key to local disk, so that the service can answer with it right
+     * after a restart, even while AppConfig is unreachable.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression("!'${appconfig.snapshotDirectory:}'.isEmpty()")
+    public ConfigurationSnapshotStore configurationSnapshotStore(@Value("${appconfig.snapshotDirectory}") final String snapshotDirectory) {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("appconfig-snapshot-");
+        threadFactory.setDaemon(true);
+        return new ConfigurationSnapshotStore(Paths.get(snapshotDirectory), Executors.newSingleThreadExecutor(threadFactory));
+    }
+
+    /**
+     * Runs the configuration change listeners of the cache, such as the rebuild of the movies page, one at a time and
+     * off the threads that fetch configurations.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService configurationChangeExecutor() {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("appconfig-change-");
+        threadFactory.setDaemon(true);
+        return Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * Backs off, then stops fetching a configuration for a while, when AppConfig keeps failing, and polls configurations
+     * that do not change less often, up to {@code appconfig.cacheMaxTtlInSeconds}.
+     */
+    @Bean
+    public RefreshPolicy refreshPolicy(@Value("${appconfig.retryInitialBackoffInMillis:1000}") final long retryInitialBackoffInMillis,
+                                       @Value("${appconfig.retryMaxBackoffInSeconds:60}") final long retryMaxBackoffInSeconds,
+                                       @Value("${appconfig.circuitBreakerFailureThreshold:5}") final int circuitBreakerFailureThreshold,
+                                       @Value("${appconfig.circuitBreakerOpenInSeconds:60}") final long circuitBreakerOpenInSeconds,
+                                       @Value("${appconfig.cacheMaxTtlInSeconds:30}") final long cacheMaxTtlInSeconds) {
+        return new RefreshPolicy(Duration.ofMillis(retryInitialBackoffInMillis),
+                Duration.ofSeconds(retryMaxBackoffInSeconds),
+                circuitBreakerFailureThreshold,
+                Duration.ofSeconds(circuitBreakerOpenInSeconds),
+                Duration.ofSeconds(cacheMaxTtlInSeconds),
+                Clock.systemDefaultZone());
+    }
+
+    /**
+     * Lets one instance poll each configuration and push new versions to the others, listed in
+     * {@code appconfig.clusterPeers}, over the cluster endpoint on {@code appconfig.clusterPort}. The configuration
+     * provider above is only called for the keys this instance leads, or when their leader has gone silent. Messages
+     * are signed with {@code appconfig.clusterSecret} when it is set.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "appconfig.cluster", havingValue = "true")
+    public ConfigurationCluster configurationCluster(final ConfigurationProvider configurationProvider,
+                                                     @Value("${appconfig.clusterPort:7070}") final int clusterPort,
+                                                     @Value("${appconfig.clusterAdvertisedUrl:}") final String clusterAdvertisedUrl,
+                                                     @Value("${appconfig.clusterPeers:}") final String[] clusterPeers,
+                                                     @Value("${appconfig.clusterHeartbeatIntervalInMillis:2000}") final long clusterHeartbeatIntervalInMillis,
+                                                     @Value("${appconfig.clusterSilenceTimeoutInMillis:10000}") final long clusterSilenceTimeoutInMillis,
+                                                     @Value("${appconfig.clusterSecret:}") final String clusterSecret,
+                                                     @Value("${appconfig.cacheTtlInSeconds:30}") final long cacheTtlInSeconds) {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("appconfig-cluster-");
+        threadFactory.setDaemon(true);
+        final ConfigurationCluster cluster = new ConfigurationCluster(configurationProvider,
+                new InetSocketAddress(clusterPort),
+                clusterAdvertisedUrl.isEmpty() ? null : URI.create(clusterAdvertisedUrl),
+                Duration.ofSeconds(cacheTtlInSeconds),
+                Duration.ofMillis(clusterHeartbeatIntervalInMillis),
+                Duration.ofMillis(clusterSilenceTimeoutInMillis),
+                clusterSecret,
+                Executors.newScheduledThreadPool(4, threadFactory),
+                Clock.systemDefaultZone());
+        final List<URI> peers = new ArrayList<>();
+        for (final String peer : clusterPeers) {
+            if (!peer.trim().isEmpty()) {
+                peers.add(URI.create(peer.trim()));
+            }
+        }
+        cluster.setPeers(peers);
+        cluster.start();
+        return cluster;
+    }
+
+    @Bean
+    public AppConfigUtility appConfigUtility(@Lazy final AppConfigClient appConfigClient,
+                                             final ConfigurationProvider configurationProvider,
+                                             final ObjectProvider<ConfigurationCluster> configurationCluster,
+                                             final ConfigurationCache configurationCache,
+                                             final RefreshPolicy refreshPolicy,
+                                             @Value("${appconfig.cacheTtlInSeconds:30}") final long cacheTtlInSeconds) {
+        final ConfigurationCluster cluster = configurationCluster.getIfAvailable();
+        final AppConfigUtility appConfigUtility = new AppConfigUtility(appConfigClient,
+                cluster == null ? configurationProvider : cluster.getProvider(),
+                configurationCache,
+                Duration.ofSeconds(cacheTtlInSeconds),
+                refreshPolicy);
+        if (cluster != null) {
+            // versions pushed by the leader are served right away rather than at the next refresh
+            cluster.setUpdateListener(appConfigUtility::refreshConfiguration);
+        }
+        return appConfigUtility;
+    }
+
+    /**
+     * Refreshes cached configurations ahead of their TTL so that requests are served from the cache, stale if need be,
+     * instead of waiting for the AppConfig API.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "appconfig.backgroundRefresh", havingValue = "true", matchIfMissing = true)
+    public ConfigurationRefresher configurationRefresher(final AppConfigUtility appConfigUtility,
+                                                         final ConfigurationCache configurationCache,
+                                                         @Value("${appconfig.refreshAheadInSeconds:5}") final long refreshAheadInSeconds,
+                                                         @Value("${appconfig.refreshJitterInSeconds:2}") final long refreshJitterInSeconds,
+                                                         @Value("${appconfig.refreshIntervalInMillis:1000}") final long refreshIntervalInMillis,
+                                                         @Value("${appconfig.refreshThreads:2}") final int refreshThreads,
+                                                         @Value("${appconfig.virtualThreads:false}") final boolean virtualThreads) {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("appconfig-refresh-");
+        threadFactory.setDaemon(true);
+        final ScheduledExecutorService executor = Executors.newScheduledThreadPool(refreshThreads, threadFactory);
+        final ConfigurationRefresher refresher = new ConfigurationRefresher(appConfigUtility,
+                configurationCache,
+                Duration.ofSeconds(refreshAheadInSeconds),
+                Duration.ofSeconds(refreshJitterInSeconds),
+                executor,
+                virtualThreads && VirtualThreads.isSupported()
+                        ? VirtualThreads.newThreadPerTaskExecutor("appconfig-refresh-virtual-") : executor);
+        refresher.start(Duration.ofMillis(refreshIntervalInMillis));
+        return refresher;
+    }
+
+    /**
+     * Runs request handling, and with it the configuration fetches made on the request path, on virtual threads.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "appconfig.virtualThreads", havingValue = "true")
+    public VirtualThreadTomcatCustomizer virtualThreadTomcatCustomizer() {
+        return new VirtualThreadTomcatCustomizer();
+    }
+
+    /**
+     * Picked up by Spring Boot and added to the MVC message converters, so controllers can return a {@link MoviesPage}.
+     */
+    @Bean
+    public MoviesPageHttpMessageConverter moviesPageHttpMessageConverter() {
+        return new MoviesPageHttpMessageConverter();
+    }
+
+    /**
+     * Publishes the cache and background refresh counters on the Actuator metrics endpoint. The binder is applied here
+     * rather than left to Spring Boot, because the registry is created before the cache while the providers are wired.
+     */
+    @Bean
+    public AppConfigMetrics appConfigMetrics(final ConfigurationCache configurationCache,
+                                             final ObjectProvider<ConfigurationRefresher> configurationRefresher,
+                                             final MeterRegistry meterRegistry) {
+        final AppConfigMetrics metrics = new AppConfigMetrics(configurationCache, configurationRefresher.getIfAvailable());
+        metrics.bindTo(meterRegistry);
+        return metrics;
+    }
+
+    /**
+     * Applies movie edits to the cached movies configuration as they are submitted, and publishes them in batches as new
+     * hosted versions of it, at most one every {@code appconfig.movieUpdateWindowInMillis}. Publishing requires the ids
+     * of the application and of the configuration profile, which the names in {@code appconfig.application} and
+     * {@code appconfig.config} cannot stand for: without them, edits are refused.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression("!'${appconfig.applicationId:}'.isEmpty() && !'${appconfig.configurationProfileId:}'.isEmpty()")
+    public MovieUpdatePipeline movieUpdatePipeline(final AppConfigUtility appConfigUtility,
+                                                   final ConfigurationCache configurationCache,
+                                                   final ConfigurationKey moviesConfigurationKey,
+                                                   @Value("${appconfig.applicationId}") final String applicationId,
+                                                   @Value("${appconfig.configurationProfileId}") final String configurationProfileId,
+                                                   @Value("${appconfig.movieUpdateWindowInMillis:500}") final long movieUpdateWindowInMillis,
+                                                   @Value("${appconfig.movieUpdateMaxBatchSize:100}") final int movieUpdateMaxBatchSize,
+                                                   @Value("${appconfig.retryInitialBackoffInMillis:1000}") final long retryInitialBackoffInMillis,
+                                                   @Value("${appconfig.retryMaxBackoffInSeconds:60}") final long retryMaxBackoffInSeconds,
+                                                   @Value("${appconfig.circuitBreakerFailureThreshold:5}") final int circuitBreakerFailureThreshold,
+                                                   @Value("${appconfig.circuitBreakerOpenInSeconds:60}") final long circuitBreakerOpenInSeconds) {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("movie-updates-");
+        threadFactory.setDaemon(true);
+        final CustomizableThreadFactory publishThreadFactory = new CustomizableThreadFactory("movie-publish-");
+        publishThreadFactory.setDaemon(true);
+        final MovieUpdatePipeline pipeline = new MovieUpdatePipeline(appConfigUtility,
+                configurationCache,
+                moviesConfigurationKey,
+                applicationId,
+                configurationProfileId,
+                Executors.newSingleThreadScheduledExecutor(threadFactory),
+                Executors.newSingleThreadExecutor(publishThreadFactory),
+                Duration.ofMillis(movieUpdateWindowInMillis),
+                movieUpdateMaxBatchSize,
+                new RefreshPolicy(Duration.ofMillis(retryInitialBackoffInMillis),
+                        Duration.ofSeconds(retryMaxBackoffInSeconds),
+                        circuitBreakerFailureThreshold,
+                        Duration.ofSeconds(circuitBreakerOpenInSeconds),
+                        null,
+                        Clock.systemDefaultZone()));
+        pipeline.start();
+        return pipeline;
+    }
+
+    @Bean
+    public ConfigurationKey moviesConfigurationKey(@Value("${appconfig.application}") final String application,
+                                                   @Value("${appconfig.environment}") final String environment,
+                                                   @Value("${appconfig.config}") final String config) {
+        return new ConfigurationKey(application, environment, config);
+    }
+}
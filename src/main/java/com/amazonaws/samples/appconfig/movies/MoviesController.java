@@ -2,29 +2,34 @@ package com.amazonaws.samples.appconfig.movies;
 
 import com.amazonaws.samples.appconfig.utils.MovieUtils;
 
-import java.time.Duration;
-import java.util.Optional;
-import java.util.UUID;
-import java.util.function.Supplier;
-import java.util.List;
-import java.util.ArrayList;
-import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.cache.DerivedConfigurationCache;
+import com.amazonaws.samples.appconfig.cache.VersionedReference;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
 import com.amazonaws.samples.appconfig.model.ConfigurationKey;
-import com.amazonaws.samples.appconfig.utils.HTMLBuilder;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.env.Environment;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import software.amazon.awssdk.services.appconfig.AppConfigClient;
 import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import javax.annotation.PostConstruct;
 import javax.validation.Valid;
 
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
@@ -48,136 +53,274 @@ public class MoviesController {
         new Movie(9L, "Static Movie 9"),
         new Movie(10L, "Static Movie 10")
     };
-    public Duration cacheItemTtl = Duration.ofSeconds(30);
-    private Boolean boolEnableFeature;
-    private int intItemLimit;
-    AppConfigClient client;
-    String clientId;
-    ConfigurationCache cache;
+    private static final MoviesPage PAIDMOVIES_PAGE = new MoviesPage(PAIDMOVIES);
+    private static final MovieIndex PAIDMOVIES_INDEX = new MovieIndex(MovieCatalog.of(PAIDMOVIES));
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final MediaType TEXT_HTML_UTF8 = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+
+    /**
+     * Renders the movies on every request instead of keeping the rendered page in memory.
+     */
+    @Value("${appconfig.streamingHtml:false}")
+    boolean streamingHtml;
+
+    /**
+     * Decoded movies and rendered HTML, recomputed only when the configuration version changes, and reused when the
+     * new version has the same movies.
+     */
+    final DerivedConfigurationCache<MoviesPage> moviesPages = DerivedConfigurationCache.incremental(
+            (previous, response) -> MoviesPage.fromConfiguration(previous, response, !streamingHtml));
+
+    /**
+     * Index of the decoded movies for the /movies endpoints, updated with the changed movies only when the
+     * configuration version changes.
+     */
+    final DerivedConfigurationCache<MovieIndex> movieIndexes = DerivedConfigurationCache.incremental(
+            (previous, response) -> {
+                final MovieCatalog catalog = moviesPages.get(this.moviesConfigurationKey, response).getCatalog();
+                return previous == null ? new MovieIndex(catalog) : MovieIndex.update(previous, catalog);
+            });
+
+    /**
+     * Flags of the last configuration version the controller has seen. Updated with every configuration it retrieves,
+     * which costs a version comparison unless the version changed, and read without locking.
+     */
+    final VersionedReference<FeatureFlags> featureFlags
+            = new VersionedReference<>(FeatureFlags.DEFAULTS, FeatureFlags::fromConfiguration);
+
+    @Autowired
+    AppConfigUtility appConfigUtility;
+
+    @Autowired
+    ConfigurationKey moviesConfigurationKey;
 
     @Autowired
-    Environment env;
+    ConfigurationCache configurationCache;
+
+    /**
+     * Null if edits are disabled, see {@link MoviesConfiguration#movieUpdatePipeline}.
+     */
+    @Autowired(required = false)
+    MovieUpdatePipeline movieUpdatePipeline;
+
+    @Autowired
+    @Qualifier("configurationChangeExecutor")
+    Executor configurationChangeExecutor;
+
+    /**
+     * Rebuilds the page, the index and the feature flags on the change executor as soon as a new version of the movies
+     * configuration is cached, typically by the background refresher. Requests then find them built and only compare
+     * the version, instead of the first request after a change paying for the rebuild.
+     */
+    @PostConstruct
+    void subscribeToConfigurationChanges() {
+        configurationCache.addChangeListener(moviesConfigurationKey, (key, configuration) -> {
+            movieIndexes.get(key, configuration);
+            updateFeatureFlags(configuration);
+        }, configurationChangeExecutor);
+    }
 
     /**
      * REST API method to get all the Movies based on AWS App Config parameter.
      *
-     * @return List of Movies
+     * <p>The response carries an ETag derived from the configuration version, and a request whose
+     * {@code If-None-Match} matches it is answered with 304 Not Modified. Clients that accept gzip get the page's
+     * pre-compressed HTML.
+     *
+     * @param acceptEncoding Accept-Encoding header of the request, or null.
+     * @return HTML list of Movies
      */
     @GetMapping("/movies/getMovies")
-    public String movie() {
-        logger.info("Fetching movies from AWS App Config");
+    public ResponseEntity<MoviesPage> movie(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding) {
+        logger.debug("Fetching movies from AWS App Config");
         try {
-
-
-        cacheItemTtl = Duration.ofSeconds(Long.parseLong(env.getProperty("appconfig.cacheTtlInSeconds")));
-
-        final AppConfigUtility appConfigUtility = new AppConfigUtility(getOrDefault(this::getClient, this::getDefaultClient),
-                getOrDefault(this::getConfigurationCache, ConfigurationCache::new),
-                getOrDefault(this::getCacheItemTtl, () -> cacheItemTtl),
-                getOrDefault(this::getClientId, this::getDefaultClientId));
-
-            final String application = env.getProperty("appconfig.application");
-            final String environment = env.getProperty("appconfig.environment");
-            final String config = env.getProperty("appconfig.config");
-        final GetConfigurationResponse response = appConfigUtility.getConfiguration(new ConfigurationKey(application, environment, config));
-        final String appConfigResponse = response.content().asUtf8String();
-
-        final JSONObject jsonResponseObject = new JSONObject(appConfigResponse);
-        System.out.println("json is "+jsonResponseObject);
-
-        JSONArray moviesArray = jsonResponseObject.getJSONArray("movies");
-        System.out.println("movies array is "+moviesArray);
-        List<Movie> movieList = new ArrayList<>();
-        for (int i = 0; i < moviesArray.length(); i++) {
-            JSONObject movieObj = moviesArray.getJSONObject(i);
-            long id = movieObj.getLong("id");
-            String movieName = movieObj.getString("movieName");
-            // Extract other fields as needed
-            Movie movie = new Movie(id, movieName);
-            movieList.add(movie);
-        }
-        Movie[] movies = movieList.toArray(new Movie[movieList.size()]);
-        HTMLBuilder htmlBuilder = new HTMLBuilder();
-        String moviesHtml = htmlBuilder.getMoviesHtml(movies);
-
-        return moviesHtml;
+            final GetConfigurationResponse response = appConfigUtility.getConfiguration(moviesConfigurationKey);
+            final MoviesPage moviesPage = moviesPages.get(moviesConfigurationKey, response);
+            updateFeatureFlags(response);
+            return htmlResponse(moviesPage, acceptEncoding);
         } catch (Exception e) {
             logger.error("Error fetching movies from AWS App Config", e);
-            HTMLBuilder htmlBuilder = new HTMLBuilder();
-            String moviesHtml = htmlBuilder.getMoviesHtml(PAIDMOVIES);
-            return moviesHtml;
+            return htmlResponse(PAIDMOVIES_PAGE, acceptEncoding);
         }
     }
 
-    @RequestMapping(value = "/movies/{movie}/edit", method = POST)
-    public String processUpdateMovie(@Valid Movie movie, BindingResult result, @PathVariable("movieId") int movieId) {
-        if (!MovieUtils.isValidMovieName(movie.getMovieName())) {
-            result.rejectValue("name", "error.name", "Invalid movie name");
-            return "editMovieForm";
-        }
-        final AppConfigUtility appConfigUtility = new AppConfigUtility(getOrDefault(this::getClient, this::getDefaultClient),
-                getOrDefault(this::getConfigurationCache, ConfigurationCache::new),
-                getOrDefault(this::getCacheItemTtl, () -> cacheItemTtl),
-                getOrDefault(this::getClientId, this::getDefaultClientId));
-
-
-        final String application = env.getProperty("appconfig.application");
-        final String environment = env.getProperty("appconfig.environment");
-        final String config = env.getProperty("appconfig.config");
-
-        final GetConfigurationResponse response = appConfigUtility.updateConfiguration(new ConfigurationKey(application, environment, config),movie.toString());
-        final String appConfigResponse = response.content().asUtf8String();
-
-        final JSONObject jsonResponseObject = new JSONObject(appConfigResponse);
-        System.out.println("json is "+jsonResponseObject);
-
-        JSONArray moviesArray = jsonResponseObject.getJSONArray("movies");
-        System.out.println("movies array is "+moviesArray);
-        List<Movie> movieList = new ArrayList<>();
-        for (int i = 0; i < moviesArray.length(); i++) {
-            JSONObject movieObj = moviesArray.getJSONObject(i);
-            long id = movieObj.getLong("id");
-            String movieName = movieObj.getString("movieName");
-            // Extract other fields as needed
-            movieList.add(movie);
-        }
-        Movie[] movies = movieList.toArray(new Movie[movieList.size()]);
-        HTMLBuilder htmlBuilder = new HTMLBuilder();
-        String moviesHtml = htmlBuilder.getMoviesHtml(movies);
-
-        return moviesHtml;
-
+    /**
+     * Non-blocking variant of {@link #movie(String)}. The request thread is released while the configuration is
+     * fetched, so a slow or refreshing AppConfig ties up no servlet threads; a cached configuration completes right
+     * away.
+     *
+     * @param acceptEncoding Accept-Encoding header of the request, or null.
+     * @return HTML list of Movies
+     */
+    @GetMapping("/movies/getMoviesAsync")
+    public CompletableFuture<ResponseEntity<MoviesPage>> movieAsync(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding) {
+        logger.debug("Fetching movies from AWS App Config asynchronously");
+        return appConfigUtility.getConfigurationAsync(moviesConfigurationKey)
+                .thenApply(response -> {
+                    final MoviesPage moviesPage = moviesPages.get(moviesConfigurationKey, response);
+                    updateFeatureFlags(response);
+                    return htmlResponse(moviesPage, acceptEncoding);
+                })
+                .exceptionally(e -> {
+                    logger.error("Error fetching movies from AWS App Config", e);
+                    return htmlResponse(PAIDMOVIES_PAGE, acceptEncoding);
+                });
     }
 
-    private <T> T getOrDefault(final Supplier<T> optionalGetter, final Supplier<T> defaultGetter) {
-        return Optional.ofNullable(optionalGetter.get()).orElseGet(defaultGetter);
+    /**
+     * One page of the movies, in configuration order or, with a prefix, the movies whose names start with it ordered
+     * by name. Read from the {@link MovieIndex} of the configuration version; an empty page is past the end.
+     *
+     * @param page   number of the page, from 0.
+     * @param limit  number of movies per page, up to {@link #MAX_PAGE_SIZE}. Pages are cut to the
+     *               {@link FeatureFlags#getItemLimit() item limit} of the configuration.
+     * @param prefix start of the movie names to list, compared case-insensitively, or null for all movies.
+     * @return HTML list of Movies, or 400 Bad Request for an invalid page or limit
+     */
+    @GetMapping("/movies")
+    public ResponseEntity<MoviesPage> movies(@RequestParam(value = "page", defaultValue = "0") final int page,
+                                             @RequestParam(value = "limit", defaultValue = "100") final int limit,
+                                             @RequestParam(value = "prefix", required = false) final String prefix) {
+        if (page < 0 || limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return indexedResponse(index -> {
+            final int pageSize = Math.min(limit, featureFlags.get().getItemLimit());
+            return prefix == null ? index.page(page, pageSize) : index.findByNamePrefix(prefix, page, pageSize);
+        });
     }
 
-    String getDefaultClientId() {
-        return UUID.randomUUID().toString();
+    /**
+     * @param movieId id of the movie.
+     * @return HTML of the movie, or 404 Not Found if the configuration has no movie with that id
+     */
+    @GetMapping("/movies/{movieId}")
+    public ResponseEntity<MoviesPage> movieById(@PathVariable("movieId") final long movieId) {
+        return indexedResponse(index -> {
+            final Movie movie = index.findById(movieId);
+            return movie == null ? null : MovieCatalog.of(movie);
+        });
     }
 
-    protected AppConfigClient getDefaultClient() {
-        return AppConfigClient.create();
+    /**
+     * Renames a movie, or adds it if no movie has the id. The edit is acknowledged with 202 Accepted as soon as this
+     * service serves it, and published to AppConfig by the {@link MovieUpdatePipeline} with the other edits of the same
+     * window, instead of one configuration version per edit.
+     *
+     * @param movie   the edited movie, whose name is read from the request.
+     * @param movieId id of the movie.
+     * @return HTML of the edited movie, 400 Bad Request for an invalid name, 501 Not Implemented if edits are disabled,
+     * or 503 Service Unavailable if the movies configuration could not be read
+     */
+    @RequestMapping(value = "/movies/{movieId}/edit", method = POST)
+    public ResponseEntity<MoviesPage> processUpdateMovie(@Valid Movie movie, BindingResult result, @PathVariable("movieId") long movieId) {
+        if (!MovieUtils.isValidMovieName(movie.getMovieName())) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (movieUpdatePipeline == null) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        final Movie edited = new Movie(movieId, movie.getMovieName());
+        try {
+            movieUpdatePipeline.submit(edited).join();
+        } catch (final CompletionException e) {
+            logger.error("Error applying the edit of movie {}", movieId, e);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.accepted()
+                .contentType(TEXT_HTML_UTF8)
+                .body(new MoviesPage(MovieCatalog.of(edited), null, false));
     }
 
-    public ConfigurationCache getConfigurationCache() {
-        return cache;
+    /**
+     * Runs the query against the index of the current configuration, or of the static movies if it cannot be
+     * retrieved, and renders the movies it returns while they are written.
+     *
+     * @param query returns the movies to render, or null if the resource does not exist.
+     */
+    private ResponseEntity<MoviesPage> indexedResponse(final Function<MovieIndex, MovieCatalog> query) {
+        MovieIndex index;
+        String version;
+        try {
+            final GetConfigurationResponse response = appConfigUtility.getConfiguration(moviesConfigurationKey);
+            index = movieIndexes.get(moviesConfigurationKey, response);
+            version = response.configurationVersion();
+            updateFeatureFlags(response);
+        } catch (Exception e) {
+            logger.error("Error fetching movies from AWS App Config", e);
+            index = PAIDMOVIES_INDEX;
+            version = null;
+        }
+        final MovieCatalog movies = query.apply(index);
+        if (movies == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return htmlResponse(new MoviesPage(movies, version, false), null);
     }
 
-
-    public AppConfigClient getClient() {
-        return client;
+    /**
+     * Publishes the flags of a new configuration version. Flags that cannot be read are logged and the previous ones
+     * kept, so they do not turn a valid movie list into the static one.
+     */
+    private void updateFeatureFlags(final GetConfigurationResponse response) {
+        try {
+            if (featureFlags.update(response)) {
+                logger.info("Feature flags of version {}: {}", response.configurationVersion(), featureFlags.get());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error reading feature flags of version {}", response.configurationVersion(), e);
+        }
     }
 
-
-    public Duration getCacheItemTtl() {
-        return cacheItemTtl;
+    /**
+     * Spring MVC answers a GET whose If-None-Match matches the ETag set here with 304 and no body.
+     */
+    private static ResponseEntity<MoviesPage> htmlResponse(final MoviesPage moviesPage, final String acceptEncoding) {
+        final ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(TEXT_HTML_UTF8)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (moviesPage.getETag() != null) {
+            response.eTag(moviesPage.getETag());
+        }
+        if (moviesPage.hasGzipHtml() && acceptsGzip(acceptEncoding)) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(moviesPage);
     }
 
-    public String getClientId() {
-        return clientId;
+    /**
+     * @return whether the Accept-Encoding header lists gzip, or {@code *}, without {@code q=0}.
+     */
+    static boolean acceptsGzip(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (final String coding : acceptEncoding.split(",")) {
+            final String[] parameters = coding.split(";");
+            final String name = parameters[0].trim();
+            final boolean gzip = name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip");
+            if (gzip || name.equals("*")) {
+                boolean acceptable = true;
+                for (int i = 1; i < parameters.length; i++) {
+                    final String parameter = parameters[i].trim();
+                    if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                        try {
+                            acceptable = Double.parseDouble(parameter.substring(2)) > 0;
+                        } catch (final NumberFormatException e) {
+                            acceptable = false;
+                        }
+                    }
+                }
+                if (gzip) {
+                    return acceptable;
+                }
+                wildcard = acceptable;
+            }
+        }
+        return wildcard;
     }
 
-
 }
\ No newline at end of file
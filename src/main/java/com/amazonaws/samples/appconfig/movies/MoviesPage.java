@@ -0,0 +1,171 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.HTMLBuilder;
+import com.amazonaws.samples.appconfig.utils.MovieJsonParser;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Decoded movies and the /movies/getMovies body for one configuration version.
+ * Instances are shared between requests and must not be modified.
+ *
+ * <p>The movies are kept in a {@link MovieCatalog}. A pre-rendered page also keeps the encoded HTML, and a
+ * gzip-compressed copy of it, and writes them as is. It keeps the {@link MovieFragments} the HTML was assembled from
+ * too, about as large as the HTML, so that the page of the next version renders only the movies that changed. A
+ * streaming page renders the catalogue on every request in fixed-size chunks, trading CPU for memory on very large
+ * catalogues.
+ *
+ * <p>Pages built from a configuration carry an entity tag derived from its version, so clients can revalidate their
+ * copy with {@code If-None-Match} instead of downloading the page again.
+ */
+public class MoviesPage {
+    private final MovieCatalog catalog;
+    private final String eTag;
+    private final MovieFragments fragments;
+    private final byte[] html;
+    private final byte[] gzipHtml;
+
+    public MoviesPage(final Movie[] movies) {
+        this(movies, true);
+    }
+
+    public MoviesPage(final Movie[] movies, final boolean prerender) {
+        this(MovieCatalog.of(movies), null, prerender);
+    }
+
+    /**
+     * @param catalog   movies on the page.
+     * @param version   configuration version the movies were read from, or null if the page has no entity tag.
+     * @param prerender whether to render the HTML once, instead of on every request.
+     */
+    public MoviesPage(final MovieCatalog catalog, final String version, final boolean prerender) {
+        this(catalog, version, prerender ? MovieFragments.render(catalog) : null);
+    }
+
+    private MoviesPage(final MovieCatalog catalog, final String version, final MovieFragments fragments) {
+        this(catalog, version, fragments, fragments == null ? null : fragments.toHtml());
+    }
+
+    private MoviesPage(final MovieCatalog catalog,
+                       final String version,
+                       final MovieFragments fragments,
+                       final byte[] html) {
+        this(catalog, version, fragments, html, html == null ? null : gzip(html));
+    }
+
+    private MoviesPage(final MovieCatalog catalog,
+                       final String version,
+                       final MovieFragments fragments,
+                       final byte[] html,
+                       final byte[] gzipHtml) {
+        this.catalog = catalog;
+        // weak, since the same tag is sent for the plain and the compressed HTML
+        this.eTag = version == null ? null : "W/\"" + version.replace("\"", "") + "\"";
+        this.fragments = fragments;
+        this.html = html;
+        this.gzipHtml = gzipHtml;
+    }
+
+    public static MoviesPage fromConfiguration(final GetConfigurationResponse response) {
+        return fromConfiguration(response, true);
+    }
+
+    public static MoviesPage fromConfiguration(final GetConfigurationResponse response, final boolean prerender) {
+        return fromConfiguration(null, response, prerender);
+    }
+
+    /**
+     * Builds the page of a new configuration version. When its movies are the same as on the previous page, e.g. when
+     * only feature flags changed, the previous catalogue, HTML and compressed HTML are reused and only the entity tag is
+     * new. Otherwise a pre-rendered page reuses the fragments of the movies whose id and name did not change, and
+     * compresses the whole HTML again.
+     *
+     * @param previous page of the previous version, or null.
+     */
+    public static MoviesPage fromConfiguration(final MoviesPage previous,
+                                               final GetConfigurationResponse response,
+                                               final boolean prerender) {
+        final MovieCatalog catalog = new MovieJsonParser().getMovieCatalog(response.content().asInputStream());
+        if (previous != null && (previous.html != null) == prerender && previous.catalog.contentEquals(catalog)) {
+            return new MoviesPage(previous.catalog, response.configurationVersion(), previous.fragments, previous.html,
+                    previous.gzipHtml);
+        }
+        if (prerender && previous != null && previous.fragments != null) {
+            return new MoviesPage(catalog, response.configurationVersion(), previous.fragments.update(catalog));
+        }
+        return new MoviesPage(catalog, response.configurationVersion(), prerender);
+    }
+
+    public MovieCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return the entity tag of the page, or null if it has none.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return size of the HTML in bytes, or -1 if the page is rendered while it is written.
+     */
+    public long getHtmlLength() {
+        return html == null ? -1 : html.length;
+    }
+
+    /**
+     * @return whether a gzip-compressed copy of the HTML can be written with {@link #writeGzipHtml}.
+     */
+    public boolean hasGzipHtml() {
+        return gzipHtml != null;
+    }
+
+    /**
+     * @return size of the gzip-compressed HTML in bytes, or -1 if there is none.
+     */
+    public long getGzipHtmlLength() {
+        return gzipHtml == null ? -1 : gzipHtml.length;
+    }
+
+    public void writeHtml(final OutputStream out) throws IOException {
+        if (html != null) {
+            out.write(html);
+        } else {
+            new HTMLBuilder().writeMoviesHtml(catalog, out);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the page has no compressed copy.
+     */
+    public void writeGzipHtml(final OutputStream out) throws IOException {
+        if (gzipHtml == null) {
+            throw new IllegalStateException("The page is not pre-rendered");
+        }
+        out.write(gzipHtml);
+    }
+
+    /**
+     * Compresses once per version, so the best compression is worth its cost.
+     */
+    private static byte[] gzip(final byte[] bytes) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(bytes);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,68 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a {@link MoviesPage} straight to the response stream, so the HTML is never copied into an intermediate
+ * buffer. Pre-rendered pages are sent with a Content-Length; streaming pages are sent chunked.
+ *
+ * <p>When the response has {@code Content-Encoding: gzip}, set by the controller for clients that accept it, the
+ * page's pre-compressed HTML is written instead.
+ */
+public class MoviesPageHttpMessageConverter extends AbstractHttpMessageConverter<MoviesPage> {
+
+    public MoviesPageHttpMessageConverter() {
+        super(StandardCharsets.UTF_8, MediaType.TEXT_HTML);
+    }
+
+    @Override
+    protected boolean supports(final Class<?> clazz) {
+        return MoviesPage.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(final Class<?> clazz, final MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected MoviesPage readInternal(final Class<? extends MoviesPage> clazz, final HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("MoviesPage is write-only");
+    }
+
+    @Override
+    protected void addDefaultHeaders(final HttpHeaders headers, final MoviesPage moviesPage, final MediaType contentType)
+            throws IOException {
+        if (isGzip(headers) && headers.getContentLength() < 0) {
+            headers.setContentLength(moviesPage.getGzipHtmlLength());
+        }
+        super.addDefaultHeaders(headers, moviesPage, contentType);
+    }
+
+    @Override
+    protected Long getContentLength(final MoviesPage moviesPage, final MediaType contentType) {
+        final long length = moviesPage.getHtmlLength();
+        return length < 0 ? null : length;
+    }
+
+    @Override
+    protected void writeInternal(final MoviesPage moviesPage, final HttpOutputMessage outputMessage) throws IOException {
+        if (isGzip(outputMessage.getHeaders())) {
+            moviesPage.writeGzipHtml(outputMessage.getBody());
+        } else {
+            moviesPage.writeHtml(outputMessage.getBody());
+        }
+    }
+
+    private static boolean isGzip(final HttpHeaders headers) {
+        return "gzip".equals(headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+}
@@ -0,0 +1,52 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.VirtualThreads;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Hands every request to a new virtual thread instead of Tomcat's worker pool, so that requests blocked on AppConfig
+ * no longer hold one of {@code server.tomcat.max-threads} platform threads. The number of requests handled at once is
+ * then limited by {@code server.tomcat.max-connections} only.
+ *
+ * <p>Enabled with {@code appconfig.virtualThreads=true}. On a JVM without virtual threads the worker pool is kept and a
+ * warning is logged.
+ */
+public class VirtualThreadTomcatCustomizer implements WebServerFactoryCustomizer<TomcatServletWebServerFactory>, DisposableBean {
+    private static final Logger logger = LogManager.getLogger(VirtualThreadTomcatCustomizer.class);
+
+    private final ExecutorService executor = VirtualThreads.isSupported()
+            ? VirtualThreads.newThreadPerTaskExecutor("http-virtual-") : null;
+
+    @Override
+    public void customize(final TomcatServletWebServerFactory factory) {
+        if (executor == null) {
+            logger.warn("appconfig.virtualThreads is set but this JVM has no virtual threads; keeping the Tomcat worker pool");
+            return;
+        }
+        factory.addConnectorCustomizers(connector -> {
+            final ProtocolHandler protocolHandler = connector.getProtocolHandler();
+            if (protocolHandler instanceof AbstractProtocol) {
+                ((AbstractProtocol<?>) protocolHandler).setExecutor(executor);
+                logger.info("Handling requests on virtual threads");
+            }
+        });
+    }
+
+    /**
+     * Tomcat does not shut down an executor it did not create.
+     */
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
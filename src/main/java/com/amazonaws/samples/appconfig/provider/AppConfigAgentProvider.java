@@ -0,0 +1,109 @@
+package com.amazonaws.samples.appconfig.provider;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.BadRequestException;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+import software.amazon.awssdk.services.appconfig.model.ResourceNotFoundException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.time.Duration;
+
+/**
+ * Retrieves configurations from the AWS AppConfig Agent, a sidecar that polls AppConfig on behalf of the service and
+ * serves the configurations it holds over HTTP on localhost, by default on port 2772:
+ * {@code GET /applications/{application}/environments/{environment}/configurations/{configuration}}.
+ *
+ * <p>The agent answers from memory, so a call costs a loopback round trip and no AppConfig API call. The version of a
+ * configuration is the {@code Configuration-Version} header of the response, or the SHA-256 digest of its content when
+ * the agent does not send one; a {@link ConfigurationProviderChain} reports the digest instead. HTTP 404 and 400 are
+ * reported as {@link ResourceNotFoundException} and {@link BadRequestException}, like the AppConfig API reports them;
+ * an agent that cannot be reached or that fails is reported as an {@link UncheckedIOException}.
+ */
+public class AppConfigAgentProvider implements ConfigurationProvider {
+
+    public static final URI DEFAULT_ENDPOINT = URI.create("http://localhost:2772");
+
+    private final URI endpoint;
+    private final int timeoutMillis;
+
+    /**
+     * @param endpoint base URI of the agent, e.g. {@link #DEFAULT_ENDPOINT}.
+     * @param timeout  connect and read timeout of a call. The agent is local, so it is kept short: a configuration that
+     *                 takes longer is better read from the next provider of a {@link ConfigurationProviderChain}.
+     */
+    public AppConfigAgentProvider(final URI endpoint, final Duration timeout) {
+        this.endpoint = endpoint;
+        this.timeoutMillis = (int) timeout.toMillis();
+    }
+
+    @Override
+    public GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey, final String currentVersion) {
+        final URL url = url(configurationKey);
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            final int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                // the body is read to the end so that the connection goes back to the keep-alive cache
+                final String message = String.format("AppConfig Agent returned HTTP %d for %s: %s", status, url,
+                        new String(readFully(connection.getErrorStream()), "UTF-8"));
+                if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                    throw ResourceNotFoundException.builder().message(message).build();
+                }
+                if (status == HttpURLConnection.HTTP_BAD_REQUEST) {
+                    throw BadRequestException.builder().message(message).build();
+                }
+                throw new IOException(message);
+            }
+            final SdkBytes content = SdkBytes.fromByteArray(readFully(connection.getInputStream()));
+            final String version = connection.getHeaderField("Configuration-Version");
+            return GetConfigurationResponse.builder()
+                    .content(content)
+                    .contentType(connection.getContentType())
+                    .configurationVersion(version == null || version.isEmpty()
+                            ? AppConfigDataProvider.digest(content) : version)
+                    .build();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error retrieving " + url + " from the AppConfig Agent", e);
+        }
+    }
+
+    private URL url(final ConfigurationKey configurationKey) {
+        try {
+            return endpoint.resolve("/applications/" + encode(configurationKey.getApplication())
+                    + "/environments/" + encode(configurationKey.getEnvironment())
+                    + "/configurations/" + encode(configurationKey.getConfiguration())).toURL();
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Invalid AppConfig Agent endpoint " + endpoint, e);
+        }
+    }
+
+    private static String encode(final String segment) throws UnsupportedEncodingException {
+        return URLEncoder.encode(segment, "UTF-8").replace("+", "%20");
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        if (in == null) {
+            return new byte[0];
+        }
+        try (InputStream input = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
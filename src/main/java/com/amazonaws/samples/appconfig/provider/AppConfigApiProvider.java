@@ -0,0 +1,63 @@
+package com.amazonaws.samples.appconfig.provider;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import software.amazon.awssdk.services.appconfig.AppConfigAsyncClient;
+import software.amazon.awssdk.services.appconfig.AppConfigClient;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationRequest;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Retrieves configurations with the legacy AppConfig {@code GetConfiguration} API, which returns the full configuration
+ * unless {@code clientConfigurationVersion} matches the deployed version.
+ */
+public class AppConfigApiProvider implements ConfigurationProvider {
+
+    private final AppConfigClient client;
+    private final AppConfigAsyncClient asyncClient;
+    private final String clientId;
+
+    /**
+     * @param client   client for retrieving configurations from the AppConfig API.
+     * @param clientId unique clientId that is sent to the AppConfig API.
+     */
+    public AppConfigApiProvider(final AppConfigClient client, final String clientId) {
+        this(client, null, clientId);
+    }
+
+    /**
+     * @param client      client for retrieving configurations from the AppConfig API.
+     * @param asyncClient client for {@link #getConfigurationAsync}, or null to retrieve on the calling thread.
+     * @param clientId    unique clientId that is sent to the AppConfig API.
+     */
+    public AppConfigApiProvider(final AppConfigClient client, final AppConfigAsyncClient asyncClient, final String clientId) {
+        this.client = client;
+        this.asyncClient = asyncClient;
+        this.clientId = clientId;
+    }
+
+    @Override
+    public GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey, final String currentVersion) {
+        return client.getConfiguration(request(configurationKey, currentVersion));
+    }
+
+    @Override
+    public CompletableFuture<GetConfigurationResponse> getConfigurationAsync(final ConfigurationKey configurationKey,
+                                                                             final String currentVersion) {
+        if (asyncClient == null) {
+            return ConfigurationProvider.super.getConfigurationAsync(configurationKey, currentVersion);
+        }
+        return Futures.call(() -> asyncClient.getConfiguration(request(configurationKey, currentVersion)));
+    }
+
+    private GetConfigurationRequest request(final ConfigurationKey configurationKey, final String currentVersion) {
+        return GetConfigurationRequest.builder()
+                .application(configurationKey.getApplication())
+                .environment(configurationKey.getEnvironment())
+                .configuration(configurationKey.getConfiguration())
+                .clientId(this.clientId)
+                .clientConfigurationVersion(currentVersion)
+                .build();
+    }
+}
@@ -0,0 +1,266 @@
+package com.amazonaws.samples.appconfig.provider;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+import software.amazon.awssdk.services.appconfigdata.AppConfigDataAsyncClient;
+import software.amazon.awssdk.services.appconfigdata.AppConfigDataClient;
+import software.amazon.awssdk.services.appconfigdata.model.BadRequestException;
+import software.amazon.awssdk.services.appconfigdata.model.GetLatestConfigurationRequest;
+import software.amazon.awssdk.services.appconfigdata.model.GetLatestConfigurationResponse;
+import software.amazon.awssdk.services.appconfigdata.model.StartConfigurationSessionRequest;
+import software.amazon.awssdk.services.appconfigdata.model.StartConfigurationSessionResponse;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Retrieves configurations with the AppConfigData session API. One configuration session is kept per
+ * {@link ConfigurationKey}: {@code StartConfigurationSession} is called once and every poll then exchanges the current
+ * token for the next one with {@code GetLatestConfiguration}, which returns an empty body when the configuration has
+ * not changed since the previous poll.
+ *
+ * <p>The poll interval suggested by the service is honored: calls made before it has elapsed return the last
+ * configuration without contacting the service. Since the session API has no version numbers, the version of a
+ * configuration is the SHA-256 digest of its content.
+ *
+ * <p>With an {@link AppConfigDataAsyncClient}, {@link #getConfigurationAsync} polls without holding a thread: callers
+ * arriving while a poll of the key is in flight share its future, and it holds the session lock only to read and update
+ * the session, never across a call to the service. A blocking call made during an asynchronous poll waits for it.
+ */
+public class AppConfigDataProvider implements ConfigurationProvider {
+
+    private final AppConfigDataClient client;
+    private final AppConfigDataAsyncClient asyncClient;
+    private final Integer requiredMinimumPollIntervalInSeconds;
+    private final Clock clock;
+    private final ConcurrentHashMap<ConfigurationKey, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * @param client                      client for the AppConfigData API.
+     * @param requiredMinimumPollInterval minimum poll interval requested when starting a session, or null for the
+     *                                    service default.
+     */
+    public AppConfigDataProvider(final AppConfigDataClient client, final Duration requiredMinimumPollInterval) {
+        this(client, null, requiredMinimumPollInterval, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param client                      client for the AppConfigData API.
+     * @param asyncClient                 client for {@link #getConfigurationAsync}, or null to poll on the calling thread.
+     * @param requiredMinimumPollInterval minimum poll interval requested when starting a session, or null for the
+     *                                    service default.
+     */
+    public AppConfigDataProvider(final AppConfigDataClient client,
+                                 final AppConfigDataAsyncClient asyncClient,
+                                 final Duration requiredMinimumPollInterval) {
+        this(client, asyncClient, requiredMinimumPollInterval, Clock.systemDefaultZone());
+    }
+
+    public AppConfigDataProvider(final AppConfigDataClient client,
+                                 final Duration requiredMinimumPollInterval,
+                                 final Clock clock) {
+        this(client, null, requiredMinimumPollInterval, clock);
+    }
+
+    public AppConfigDataProvider(final AppConfigDataClient client,
+                                 final AppConfigDataAsyncClient asyncClient,
+                                 final Duration requiredMinimumPollInterval,
+                                 final Clock clock) {
+        this.client = client;
+        this.asyncClient = asyncClient;
+        this.requiredMinimumPollIntervalInSeconds = requiredMinimumPollInterval == null
+                ? null : (int) requiredMinimumPollInterval.getSeconds();
+        this.clock = clock;
+    }
+
+    @Override
+    public GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey, final String currentVersion) {
+        final Session session = sessions.computeIfAbsent(configurationKey, key -> new Session());
+        final CompletableFuture<GetConfigurationResponse> pendingPoll;
+        // a configuration token can only be used once, so polls of the same key must not overlap
+        session.lock.lock();
+        try {
+            if (session.latest != null && clock.millis() < session.nextPollTime) {
+                return session.latest;
+            }
+            pendingPoll = session.pendingPoll;
+            if (pendingPoll == null) {
+                return apply(session, poll(configurationKey, session));
+            }
+        } finally {
+            session.lock.unlock();
+        }
+        // an asynchronous poll holds the token; wait for it rather than poll again
+        try {
+            return pendingPoll.join();
+        } catch (final CompletionException e) {
+            final Throwable cause = Futures.unwrap(e);
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<GetConfigurationResponse> getConfigurationAsync(final ConfigurationKey configurationKey,
+                                                                             final String currentVersion) {
+        if (asyncClient == null) {
+            return ConfigurationProvider.super.getConfigurationAsync(configurationKey, currentVersion);
+        }
+        final Session session = sessions.computeIfAbsent(configurationKey, key -> new Session());
+        final CompletableFuture<GetConfigurationResponse> poll = new CompletableFuture<>();
+        final String token;
+        session.lock.lock();
+        try {
+            if (session.latest != null && clock.millis() < session.nextPollTime) {
+                return CompletableFuture.completedFuture(session.latest);
+            }
+            if (session.pendingPoll != null) {
+                return session.pendingPoll;
+            }
+            session.pendingPoll = poll;
+            token = session.token;
+        } finally {
+            session.lock.unlock();
+        }
+
+        pollAsync(configurationKey, token).whenComplete((response, exception) -> {
+            GetConfigurationResponse latest = null;
+            session.lock.lock();
+            try {
+                session.pendingPoll = null;
+                if (exception == null) {
+                    latest = apply(session, response);
+                }
+            } finally {
+                session.lock.unlock();
+            }
+            if (exception == null) {
+                poll.complete(latest);
+            } else {
+                poll.completeExceptionally(Futures.unwrap(exception));
+            }
+        });
+        return poll;
+    }
+
+    @Override
+    public Duration getPollInterval(final ConfigurationKey configurationKey) {
+        final Session session = sessions.get(configurationKey);
+        return session == null ? Duration.ZERO : Duration.ofMillis(session.pollIntervalMillis);
+    }
+
+    private GetLatestConfigurationResponse poll(final ConfigurationKey configurationKey, final Session session) {
+        if (session.token == null) {
+            session.token = startSession(configurationKey);
+            return getLatestConfiguration(session.token);
+        }
+        try {
+            return getLatestConfiguration(session.token);
+        } catch (final BadRequestException e) {
+            // tokens expire after 24 hours; start a new session and poll once more
+            session.token = startSession(configurationKey);
+            return getLatestConfiguration(session.token);
+        }
+    }
+
+    private GetConfigurationResponse apply(final Session session, final GetLatestConfigurationResponse response) {
+        session.token = response.nextPollConfigurationToken();
+        session.pollIntervalMillis = response.nextPollIntervalInSeconds() == null
+                ? 0 : TimeUnit.SECONDS.toMillis(response.nextPollIntervalInSeconds());
+        session.nextPollTime = clock.millis() + session.pollIntervalMillis;
+        if (session.latest == null || !isEmpty(response.configuration())) {
+            session.latest = GetConfigurationResponse.builder()
+                    .content(response.configuration())
+                    .contentType(response.contentType())
+                    .configurationVersion(digest(response.configuration()))
+                    .build();
+        }
+        return session.latest;
+    }
+
+    private CompletableFuture<GetLatestConfigurationResponse> pollAsync(final ConfigurationKey configurationKey,
+                                                                        final String token) {
+        if (token == null) {
+            return startSessionAsync(configurationKey).thenCompose(this::getLatestConfigurationAsync);
+        }
+        return getLatestConfigurationAsync(token)
+                .handle((response, exception) -> {
+                    if (exception == null) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    if (Futures.unwrap(exception) instanceof BadRequestException) {
+                        // tokens expire after 24 hours; start a new session and poll once more
+                        return startSessionAsync(configurationKey).thenCompose(this::getLatestConfigurationAsync);
+                    }
+                    return Futures.<GetLatestConfigurationResponse>failed(exception);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<GetLatestConfigurationResponse> getLatestConfigurationAsync(final String token) {
+        return Futures.call(() -> asyncClient.getLatestConfiguration(GetLatestConfigurationRequest.builder()
+                .configurationToken(token)
+                .build()));
+    }
+
+    private CompletableFuture<String> startSessionAsync(final ConfigurationKey configurationKey) {
+        return Futures.call(() -> asyncClient.startConfigurationSession(startSessionRequest(configurationKey)))
+                .thenApply(StartConfigurationSessionResponse::initialConfigurationToken);
+    }
+
+    private GetLatestConfigurationResponse getLatestConfiguration(final String token) {
+        return client.getLatestConfiguration(GetLatestConfigurationRequest.builder()
+                .configurationToken(token)
+                .build());
+    }
+
+    private String startSession(final ConfigurationKey configurationKey) {
+        return client.startConfigurationSession(startSessionRequest(configurationKey)).initialConfigurationToken();
+    }
+
+    private StartConfigurationSessionRequest startSessionRequest(final ConfigurationKey configurationKey) {
+        return StartConfigurationSessionRequest.builder()
+                .applicationIdentifier(configurationKey.getApplication())
+                .environmentIdentifier(configurationKey.getEnvironment())
+                .configurationProfileIdentifier(configurationKey.getConfiguration())
+                .requiredMinimumPollIntervalInSeconds(requiredMinimumPollIntervalInSeconds)
+                .build();
+    }
+
+    static boolean isEmpty(final SdkBytes bytes) {
+        return bytes == null || bytes.asByteBuffer().remaining() == 0;
+    }
+
+    static String digest(final SdkBytes bytes) {
+        try {
+            final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            if (bytes != null) {
+                messageDigest.update(bytes.asByteBuffer());
+            }
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : messageDigest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Session {
+        private final ReentrantLock lock = new ReentrantLock();
+        private String token;
+        private long nextPollTime;
+        private volatile long pollIntervalMillis;
+        private GetConfigurationResponse latest;
+        private CompletableFuture<GetConfigurationResponse> pendingPoll;
+    }
+}
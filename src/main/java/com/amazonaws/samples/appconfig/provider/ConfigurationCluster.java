@@ -0,0 +1,685 @@
+package com.amazonaws.samples.appconfig.provider;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Shares the polling of AppConfig between the instances of the service, so that the number of calls does not grow
+ * with the number of instances.
+ *
+ * <p>Every configuration key has one leader among the members that are alive: the one with the highest rendezvous
+ * hash of its URI and the key, which every member computes the same way without an election round. The leader polls
+ * the key with the wrapped provider and pushes every new version to the members that use the key. The members talk
+ * over a small HTTP endpoint, {@value #PATH}, with a binary message in the spirit of the snapshot files:
+ *
+ * <ul>
+ *     <li>every heartbeat interval, each member sends every peer the keys it uses and the versions it holds. A member
+ *     is alive while its heartbeats arrive within the silence timeout;</li>
+ *     <li>the leader of a key lists it too, which confirms the followers holding the same version, and pushes the
+ *     configuration to a follower that reports another version, e.g. one that has just started or lost a push.</li>
+ * </ul>
+ *
+ * <p>{@link #getProvider()} is the view for {@link com.amazonaws.samples.appconfig.utils.AppConfigUtility}: on a
+ * follower it returns the configuration pushed by the leader without calling AppConfig. When the leader of a key goes
+ * silent, its followers poll the key themselves at the poll interval until another leader, chosen among the members
+ * still alive, confirms their version. A member that hears from no peer therefore behaves like a single instance.
+ *
+ * <p>A message is accepted only from a peer. With a shared secret, every message carries an HMAC-SHA256 of its body in
+ * the {@value #SIGNATURE_HEADER} header, and a message without a valid one is refused. Without a secret, the message
+ * must come from an address of the peer it names as sender. The body holds its send time and a sequence number that
+ * grows with every message of the sender, so a message older than the silence timeout, or not newer than the last
+ * one accepted from its sender, is refused: a captured push cannot be replayed to roll a follower back. A message
+ * that arrives out of order is dropped too; the next heartbeats make up for it.
+ */
+public class ConfigurationCluster implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ConfigurationCluster.class);
+
+    public static final String PATH = "/appconfig/cluster";
+    public static final String SIGNATURE_HEADER = "X-AppConfig-Cluster-Signature";
+
+    private static final int MAGIC = 0x41434c55;
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    /**
+     * Largest message accepted, room for a push of the largest hosted configuration AppConfig accepts.
+     */
+    private static final int MAX_MESSAGE_BYTES = 4 * 1024 * 1024;
+
+    private final ConfigurationProvider delegate;
+    private final HttpServer server;
+    private final URI self;
+    private final long pollIntervalMillis;
+    private final long heartbeatIntervalMillis;
+    private final long silenceTimeoutMillis;
+    private final SecretKeySpec secret;
+    /**
+     * Sequence number of the last message sent. Starts from the time of construction, so that the messages of a
+     * restarted member are newer than those of its previous run.
+     */
+    private final AtomicLong sequence;
+    private final ScheduledExecutorService executor;
+    private final Clock clock;
+    private final ConcurrentHashMap<ConfigurationKey, Held> held = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<URI, Member> members = new ConcurrentHashMap<>();
+    private volatile List<URI> peers = Collections.emptyList();
+    private volatile Consumer<ConfigurationKey> updateListener = key -> {
+    };
+
+    /**
+     * @param delegate          provider the leader polls, e.g. {@link AppConfigDataProvider}.
+     * @param bindAddress       address of the cluster endpoint; port 0 picks a free port.
+     * @param advertisedUri     URI the peers use to reach this member, or null for the bound address.
+     * @param pollInterval      time between two polls of a key by its leader.
+     * @param heartbeatInterval time between two heartbeats to every peer.
+     * @param silenceTimeout    time after which a peer that sent nothing is no longer a member, several heartbeats.
+     * @param secret            secret shared by the members to sign their messages, or null to accept the messages
+     *                          sent from the addresses of the peers.
+     * @param executor          runs the heartbeats, the polls of the leader and the cluster endpoint. Owned by the
+     *                          cluster and shut down on close.
+     */
+    public ConfigurationCluster(final ConfigurationProvider delegate,
+                                final InetSocketAddress bindAddress,
+                                final URI advertisedUri,
+                                final Duration pollInterval,
+                                final Duration heartbeatInterval,
+                                final Duration silenceTimeout,
+                                final String secret,
+                                final ScheduledExecutorService executor,
+                                final Clock clock) {
+        this.delegate = delegate;
+        this.pollIntervalMillis = pollInterval.toMillis();
+        this.heartbeatIntervalMillis = heartbeatInterval.toMillis();
+        this.silenceTimeoutMillis = silenceTimeout.toMillis();
+        this.secret = secret == null || secret.isEmpty()
+                ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.executor = executor;
+        this.clock = clock;
+        this.sequence = new AtomicLong(TimeUnit.MILLISECONDS.toMicros(clock.millis()));
+        try {
+            this.server = HttpServer.create(bindAddress, 0);
+            this.self = advertisedUri != null ? advertisedUri : URI.create("http://" + advertisedHost(bindAddress)
+                    + ":" + server.getAddress().getPort());
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error binding the cluster endpoint to " + bindAddress, e);
+        }
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        executor.scheduleWithFixedDelay(this::tick, 0, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Configuration cluster member {} started with peers {}", self, peers);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the URI of this member, as its peers know it.
+     */
+    public URI getUri() {
+        return self;
+    }
+
+    /**
+     * @param peers URIs of the other members, e.g. from configuration or service discovery. The URI of this member
+     *              may be included.
+     */
+    public void setPeers(final Collection<URI> peers) {
+        final List<URI> others = new ArrayList<>();
+        for (final URI peer : peers) {
+            if (!self.equals(peer) && !others.contains(peer)) {
+                others.add(peer);
+            }
+        }
+        this.peers = Collections.unmodifiableList(others);
+        members.keySet().retainAll(others);
+    }
+
+    /**
+     * @param updateListener called, off the calling thread, with a key whose configuration changed without being
+     *                       requested: pushed by its leader, or polled by this member as leader. Typically refreshes
+     *                       the cache so that the new version is served before the TTL expires.
+     */
+    public void setUpdateListener(final Consumer<ConfigurationKey> updateListener) {
+        this.updateListener = updateListener;
+    }
+
+    /**
+     * @return the provider to read configurations through the cluster.
+     */
+    public ConfigurationProvider getProvider() {
+        return this::getConfiguration;
+    }
+
+    /**
+     * @return the member that polls the key: this member or a peer that is alive.
+     */
+    public URI getLeader(final ConfigurationKey configurationKey) {
+        final long now = clock.millis();
+        URI leader = self;
+        long leaderScore = score(self, configurationKey);
+        for (final URI peer : peers) {
+            final Member member = members.get(peer);
+            if (member == null || now - member.lastHeard >= silenceTimeoutMillis) {
+                continue;
+            }
+            final long peerScore = score(peer, configurationKey);
+            if (peerScore > leaderScore || (peerScore == leaderScore && peer.toString().compareTo(leader.toString()) > 0)) {
+                leader = peer;
+                leaderScore = peerScore;
+            }
+        }
+        return leader;
+    }
+
+    private GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey, final String currentVersion) {
+        final Held entry = held.computeIfAbsent(configurationKey, key -> new Held());
+        final long now = clock.millis();
+        entry.lastRequested = now;
+        final URI leader = getLeader(configurationKey);
+        final GetConfigurationResponse response = entry.response;
+        if (response != null) {
+            if (!self.equals(leader) && leader.equals(entry.confirmedBy) && now - entry.confirmedTime < silenceTimeoutMillis) {
+                return response;
+            }
+            if (self.equals(entry.confirmedBy) && now < entry.nextPollTime) {
+                return response;
+            }
+        }
+        return poll(configurationKey, entry, false);
+    }
+
+    /**
+     * Polls the key with the wrapped provider, unless another thread just did, and pushes a new version to the peers
+     * using the key if this member leads it. Concurrent polls of the key share one call to the provider, made without
+     * holding the lock of the entry.
+     */
+    private GetConfigurationResponse poll(final ConfigurationKey configurationKey, final Held entry, final boolean notify) {
+        final CompletableFuture<GetConfigurationResponse> poll;
+        final CompletableFuture<GetConfigurationResponse> pendingPoll;
+        final String currentVersion;
+        entry.lock.lock();
+        try {
+            final GetConfigurationResponse previous = entry.response;
+            if (previous != null && self.equals(entry.confirmedBy) && clock.millis() < entry.nextPollTime) {
+                return previous;
+            }
+            pendingPoll = entry.pendingPoll;
+            poll = pendingPoll == null ? new CompletableFuture<>() : null;
+            if (poll != null) {
+                entry.pendingPoll = poll;
+            }
+            currentVersion = versionOf(previous);
+        } finally {
+            entry.lock.unlock();
+        }
+        if (pendingPoll != null) {
+            try {
+                return pendingPoll.join();
+            } catch (final CompletionException e) {
+                final Throwable cause = Futures.unwrap(e);
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+            }
+        }
+
+        final GetConfigurationResponse polled;
+        try {
+            polled = delegate.getConfiguration(configurationKey, currentVersion);
+        } catch (final RuntimeException e) {
+            entry.lock.lock();
+            try {
+                entry.pendingPoll = null;
+            } finally {
+                entry.lock.unlock();
+            }
+            poll.completeExceptionally(e);
+            throw e;
+        }
+        final GetConfigurationResponse response;
+        final boolean changed;
+        entry.lock.lock();
+        try {
+            // compared with the version held now, which a push may have replaced during the poll
+            final GetConfigurationResponse previous = entry.response;
+            final long now = clock.millis();
+            changed = previous == null
+                    || (polled.content() != null && !Objects.equals(polled.configurationVersion(), previous.configurationVersion()));
+            if (changed) {
+                entry.response = polled;
+            }
+            entry.confirmedBy = self;
+            entry.confirmedTime = now;
+            entry.nextPollTime = now + Long.max(pollIntervalMillis, delegate.getPollInterval(configurationKey).toMillis());
+            entry.pendingPoll = null;
+            response = entry.response;
+        } finally {
+            entry.lock.unlock();
+        }
+        poll.complete(response);
+        if (changed && self.equals(getLeader(configurationKey))) {
+            final byte[] message = encode(false, Collections.singletonMap(configurationKey, response), Collections.emptySet());
+            for (final URI peer : peers) {
+                final Member member = members.get(peer);
+                if (member != null && member.interests.contains(configurationKey)) {
+                    send(peer, message);
+                }
+            }
+        }
+        if (changed && notify) {
+            notifyUpdate(configurationKey);
+        }
+        return response;
+    }
+
+    /**
+     * Polls the keys this member leads when they are due, forgets the keys nobody uses any more and sends the
+     * heartbeat.
+     */
+    private void tick() {
+        try {
+            final long now = clock.millis();
+            final Map<ConfigurationKey, GetConfigurationResponse> listed = new LinkedHashMap<>();
+            final Set<ConfigurationKey> requested = new HashSet<>();
+            for (final Map.Entry<ConfigurationKey, Held> mapping : held.entrySet()) {
+                final ConfigurationKey key = mapping.getKey();
+                final Held entry = mapping.getValue();
+                final boolean used = now - entry.lastRequested < IDLE_TIMEOUT_MILLIS;
+                final boolean usedByPeers = isUsedByPeers(key, now);
+                if (!used && !usedByPeers) {
+                    held.remove(key, entry);
+                    continue;
+                }
+                final boolean leading = self.equals(getLeader(key));
+                if (leading && now >= entry.nextPollTime) {
+                    try {
+                        poll(key, entry, true);
+                    } catch (final RuntimeException e) {
+                        logger.warn("Error polling {} for the cluster", key, e);
+                        entry.nextPollTime = now + pollIntervalMillis;
+                    }
+                }
+                if (used || leading) {
+                    final GetConfigurationResponse response = entry.response;
+                    listed.put(key, response != null ? response : GetConfigurationResponse.builder().build());
+                    if (used) {
+                        requested.add(key);
+                    }
+                }
+            }
+            final byte[] heartbeat = encode(true, listed, requested);
+            for (final URI peer : peers) {
+                send(peer, heartbeat);
+            }
+        } catch (final RuntimeException e) {
+            logger.warn("Error sending the cluster heartbeat", e);
+        }
+    }
+
+    private boolean isUsedByPeers(final ConfigurationKey key, final long now) {
+        for (final Member member : members.values()) {
+            if (now - member.lastHeard < silenceTimeoutMillis && member.interests.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+                return;
+            }
+            final String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLength != null && Long.parseLong(contentLength) > MAX_MESSAGE_BYTES) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, -1);
+                return;
+            }
+            final byte[] body = readFully(exchange.getRequestBody(), MAX_MESSAGE_BYTES);
+            if (secret != null && !isSigned(body, exchange.getRequestHeaders().getFirst(SIGNATURE_HEADER))) {
+                logger.warn("Refused a cluster message from {} without a valid signature", exchange.getRemoteAddress());
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_FORBIDDEN, -1);
+                return;
+            }
+            receive(new ByteArrayInputStream(body), exchange.getRemoteAddress().getAddress());
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NO_CONTENT, -1);
+        } catch (final IOException | RuntimeException e) {
+            logger.debug("Invalid cluster message from {}", exchange.getRemoteAddress(), e);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Message layout: magic, sender URI, send time, sequence number, heartbeat flag, then for every key its application, environment and
+     * configuration, the version the sender holds (empty if none), whether the sender uses the key, and whether the
+     * content follows, with its content type and length.
+     */
+    private void receive(final InputStream body, final InetAddress remoteAddress) throws IOException {
+        final DataInputStream data = new DataInputStream(body);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a cluster message");
+        }
+        final URI sender = URI.create(data.readUTF());
+        final Member member = members.get(sender);
+        if (member == null && !peers.contains(sender)) {
+            throw new IOException("Message from " + sender + ", which is not a peer");
+        }
+        if (secret == null && !isAddressOf(sender, remoteAddress)) {
+            throw new IOException("Message from " + remoteAddress + " claiming to be " + sender);
+        }
+        final long sentTime = data.readLong();
+        final long messageSequence = data.readLong();
+        final long now = clock.millis();
+        if (Math.abs(now - sentTime) >= silenceTimeoutMillis) {
+            throw new IOException("Message from " + sender + " sent at " + sentTime + ", outside the silence timeout");
+        }
+        final Member from = member != null ? member : members.computeIfAbsent(sender, uri -> new Member());
+        if (!from.accept(messageSequence)) {
+            throw new IOException("Message " + messageSequence + " from " + sender + " is not newer than the last one");
+        }
+        from.lastHeard = now;
+        final boolean heartbeat = data.readBoolean();
+        final Set<ConfigurationKey> interests = new HashSet<>();
+        final int count = data.readInt();
+        for (int i = 0; i < count; i++) {
+            final ConfigurationKey key = new ConfigurationKey(data.readUTF(), data.readUTF(), data.readUTF());
+            final String version = data.readUTF();
+            if (data.readBoolean()) {
+                interests.add(key);
+            }
+            GetConfigurationResponse pushed = null;
+            if (data.readBoolean()) {
+                final String contentType = data.readUTF();
+                final byte[] content = new byte[data.readInt()];
+                data.readFully(content);
+                pushed = GetConfigurationResponse.builder()
+                        .content(SdkBytes.fromByteArray(content))
+                        .contentType(contentType.isEmpty() ? null : contentType)
+                        .configurationVersion(version)
+                        .build();
+            }
+            apply(sender, key, version, pushed, interests.contains(key), now);
+        }
+        if (heartbeat) {
+            from.interests = interests;
+        }
+    }
+
+    private void apply(final URI sender,
+                       final ConfigurationKey key,
+                       final String version,
+                       final GetConfigurationResponse pushed,
+                       final boolean used,
+                       final long now) {
+        final URI leader = getLeader(key);
+        if (sender.equals(leader)) {
+            final Held entry = held.get(key);
+            if (entry == null) {
+                return;
+            }
+            boolean changed = false;
+            entry.lock.lock();
+            try {
+                if (pushed != null && (entry.response == null || !version.equals(entry.response.configurationVersion()))) {
+                    entry.response = pushed;
+                    changed = true;
+                }
+                if (entry.response != null && version.equals(entry.response.configurationVersion())) {
+                    entry.confirmedBy = sender;
+                    entry.confirmedTime = now;
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+            if (changed) {
+                notifyUpdate(key);
+            }
+        } else if (used && self.equals(leader)) {
+            final Held entry = held.computeIfAbsent(key, k -> new Held());
+            final GetConfigurationResponse response = entry.response;
+            if (response != null && !version.equals(response.configurationVersion())) {
+                send(sender, encode(false, Collections.singletonMap(key, response), Collections.emptySet()));
+            }
+        }
+    }
+
+    private void notifyUpdate(final ConfigurationKey key) {
+        try {
+            executor.execute(() -> {
+                try {
+                    updateListener.accept(key);
+                } catch (final RuntimeException e) {
+                    logger.warn("Error applying the update of {}", key, e);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            logger.debug("Cluster closed, update of {} dropped", key);
+        }
+    }
+
+    private void send(final URI peer, final byte[] message) {
+        try {
+            executor.execute(() -> post(peer, message));
+        } catch (final RejectedExecutionException e) {
+            logger.debug("Cluster closed, message to {} dropped", peer);
+        }
+    }
+
+    private void post(final URI peer, final byte[] message) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) peer.resolve(PATH).toURL().openConnection();
+            // a peer that takes longer than the silence timeout is as good as gone
+            connection.setConnectTimeout((int) silenceTimeoutMillis);
+            connection.setReadTimeout((int) silenceTimeoutMillis);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(message.length);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            if (secret != null) {
+                connection.setRequestProperty(SIGNATURE_HEADER, sign(message));
+            }
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(message);
+            }
+            final int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_NO_CONTENT) {
+                logger.debug("Peer {} answered HTTP {}", peer, status);
+            }
+        } catch (final IOException e) {
+            // a peer that is down is found out by the silence timeout
+            logger.debug("Error sending a cluster message to {}", peer, e);
+        }
+    }
+
+    /**
+     * @param heartbeat whether the message lists all the keys the sender uses, replacing those of its previous one.
+     * @param listed    keys with the version the sender holds; those with a content are pushed.
+     * @param requested keys the sender uses.
+     */
+    private byte[] encode(final boolean heartbeat,
+                          final Map<ConfigurationKey, GetConfigurationResponse> listed,
+                          final Set<ConfigurationKey> requested) {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeUTF(self.toString());
+            data.writeLong(clock.millis());
+            data.writeLong(sequence.incrementAndGet());
+            data.writeBoolean(heartbeat);
+            data.writeInt(listed.size());
+            for (final Map.Entry<ConfigurationKey, GetConfigurationResponse> entry : listed.entrySet()) {
+                final ConfigurationKey key = entry.getKey();
+                final GetConfigurationResponse response = entry.getValue();
+                data.writeUTF(key.getApplication());
+                data.writeUTF(key.getEnvironment());
+                data.writeUTF(key.getConfiguration());
+                data.writeUTF(response.configurationVersion() == null ? "" : response.configurationVersion());
+                data.writeBoolean(requested.contains(key));
+                final boolean push = !heartbeat && response.content() != null;
+                data.writeBoolean(push);
+                if (push) {
+                    final byte[] content = response.content().asByteArray();
+                    data.writeUTF(response.contentType() == null ? "" : response.contentType());
+                    data.writeInt(content.length);
+                    data.write(content);
+                }
+            }
+            data.flush();
+            return out.toByteArray();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the Base64 HMAC-SHA256 of the message with the shared secret.
+     */
+    private String sign(final byte[] message) {
+        try {
+            final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secret);
+            return Base64.getEncoder().encodeToString(mac.doFinal(message));
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private boolean isSigned(final byte[] message, final String signature) {
+        // compared in constant time, so that the response time does not reveal a valid prefix
+        return signature != null && MessageDigest.isEqual(
+                sign(message).getBytes(StandardCharsets.US_ASCII), signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static boolean isAddressOf(final URI peer, final InetAddress address) {
+        try {
+            for (final InetAddress peerAddress : InetAddress.getAllByName(peer.getHost())) {
+                if (peerAddress.equals(address)) {
+                    return true;
+                }
+            }
+        } catch (final UnknownHostException e) {
+            logger.debug("Cannot resolve peer {}", peer, e);
+        }
+        return false;
+    }
+
+    private static byte[] readFully(final InputStream in, final int maxBytes) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (out.size() + read > maxBytes) {
+                throw new IOException("Message larger than " + maxBytes + " bytes");
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String versionOf(final GetConfigurationResponse response) {
+        return response == null ? null : response.configurationVersion();
+    }
+
+    private static String advertisedHost(final InetSocketAddress bindAddress) throws IOException {
+        return bindAddress.getAddress() == null || bindAddress.getAddress().isAnyLocalAddress()
+                ? InetAddress.getLocalHost().getHostAddress() : bindAddress.getAddress().getHostAddress();
+    }
+
+    /**
+     * Rendezvous hash of a member and a key, mixed so that close URIs, such as the ports of one host, spread the keys
+     * evenly. {@link String#hashCode} is specified, so every member computes the same scores.
+     */
+    private static long score(final URI member, final ConfigurationKey key) {
+        long hash = member.toString().hashCode() * 0x9E3779B97F4A7C15L + key.toString().hashCode();
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static final class Held {
+        /**
+         * Guards the updates of the entry, never held across a call to the provider or a peer.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+        private CompletableFuture<GetConfigurationResponse> pendingPoll;
+        private volatile GetConfigurationResponse response;
+        private volatile URI confirmedBy;
+        private volatile long confirmedTime;
+        private volatile long nextPollTime;
+        private volatile long lastRequested;
+    }
+
+    private static final class Member {
+        private final AtomicLong lastSequence = new AtomicLong(Long.MIN_VALUE);
+        private volatile long lastHeard;
+        private volatile Set<ConfigurationKey> interests = Collections.emptySet();
+
+        /**
+         * @return whether the message is newer than every message accepted from the member, recording it if so.
+         */
+        private boolean accept(final long messageSequence) {
+            long last;
+            do {
+                last = lastSequence.get();
+                if (messageSequence <= last) {
+                    return false;
+                }
+            } while (!lastSequence.compareAndSet(last, messageSequence));
+            return true;
+        }
+    }
+}
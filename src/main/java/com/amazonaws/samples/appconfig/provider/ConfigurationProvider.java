@@ -0,0 +1,50 @@
+package com.amazonaws.samples.appconfig.provider;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Source of configurations for {@link com.amazonaws.samples.appconfig.utils.AppConfigUtility}. Providers only retrieve
+ * configurations; caching, TTLs and coalescing of concurrent requests are left to the caller.
+ */
+public interface ConfigurationProvider {
+
+    /**
+     * Retrieves the latest configuration.
+     *
+     * @param configurationKey configuration to retrieve.
+     * @param currentVersion   version of the configuration the caller already holds, or null.
+     * @return the configuration. When nothing changed since {@code currentVersion} the response may carry no content.
+     */
+    GetConfigurationResponse getConfiguration(ConfigurationKey configurationKey, String currentVersion);
+
+    /**
+     * Retrieves the latest configuration without blocking the calling thread. Providers backed by an asynchronous client
+     * override this; the default runs {@link #getConfiguration} on the calling thread and returns a completed future.
+     *
+     * @param configurationKey configuration to retrieve.
+     * @param currentVersion   version of the configuration the caller already holds, or null.
+     * @return a future of the configuration, completed exceptionally if the retrieval fails.
+     */
+    default CompletableFuture<GetConfigurationResponse> getConfigurationAsync(final ConfigurationKey configurationKey,
+                                                                              final String currentVersion) {
+        final CompletableFuture<GetConfigurationResponse> future = new CompletableFuture<>();
+        try {
+            future.complete(getConfiguration(configurationKey, currentVersion));
+        } catch (final RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * @param configurationKey configuration being polled.
+     * @return the minimum time the provider asks callers to wait between two polls of the key.
+     */
+    default Duration getPollInterval(final ConfigurationKey configurationKey) {
+        return Duration.ZERO;
+    }
+}
@@ -0,0 +1,213 @@
+package com.amazonaws.samples.appconfig.provider;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCacheItem;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Retrieves configurations from the first of several providers that has them, e.g. the local AppConfig Agent, then
+ * files on local disk, then the AppConfig API, so that the request path only leaves the host when the local sources
+ * cannot answer.
+ *
+ * <p>A provider that reports the key as unknown or the request as invalid, like a directory that holds only some of
+ * the configurations, is skipped for that call only. A provider that fails otherwise, like an agent that is not
+ * running, is skipped for every key during the cool-down instead of being tried again on each call. The last provider
+ * is always tried, and its exception is thrown when no provider has the configuration, with those of the other
+ * providers suppressed.
+ *
+ * <p>The version of every configuration is the SHA-256 digest of its content, whichever provider returned it, as
+ * providers number versions differently: the agent reports the deployed version, the AppConfigData API has no version
+ * at all. A failover to another provider that returns the same content is then not seen as a new version. The chain
+ * remembers the version the last answering provider gave for each key, and passes it back to that provider instead of
+ * the digest, so that a provider that polls conditionally, like the GetConfiguration API, still answers an unchanged
+ * configuration without its content.
+ */
+public class ConfigurationProviderChain implements ConfigurationProvider, AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(ConfigurationProviderChain.class);
+
+    private final List<ConfigurationProvider> providers;
+    private final AtomicLong[] retryTimes;
+    private final long coolDownMillis;
+    private final Clock clock;
+    private final ConcurrentHashMap<ConfigurationKey, AnsweredVersion> answered = new ConcurrentHashMap<>();
+
+    /**
+     * @param providers providers in order of preference.
+     * @param coolDown  time during which a provider that failed is skipped.
+     */
+    public ConfigurationProviderChain(final List<ConfigurationProvider> providers, final Duration coolDown) {
+        this(providers, coolDown, Clock.systemDefaultZone());
+    }
+
+    public ConfigurationProviderChain(final List<ConfigurationProvider> providers,
+                                      final Duration coolDown,
+                                      final Clock clock) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("At least one configuration provider is required");
+        }
+        this.providers = new ArrayList<>(providers);
+        this.retryTimes = new AtomicLong[providers.size()];
+        for (int i = 0; i < retryTimes.length; i++) {
+            retryTimes[i] = new AtomicLong();
+        }
+        this.coolDownMillis = coolDown.toMillis();
+        this.clock = clock;
+    }
+
+    @Override
+    public GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey, final String currentVersion) {
+        RuntimeException failure = null;
+        for (int i = nextProvider(-1); i < providers.size(); i = nextProvider(i)) {
+            try {
+                return withContentVersion(i, configurationKey,
+                        providers.get(i).getConfiguration(configurationKey, providerVersion(i, configurationKey, currentVersion)));
+            } catch (final RuntimeException e) {
+                failure = failed(i, configurationKey, e, failure);
+            }
+        }
+        throw failure;
+    }
+
+    @Override
+    public CompletableFuture<GetConfigurationResponse> getConfigurationAsync(final ConfigurationKey configurationKey,
+                                                                             final String currentVersion) {
+        return getConfigurationAsync(nextProvider(-1), configurationKey, currentVersion, null);
+    }
+
+    /**
+     * @return the longest poll interval of the providers, since the next poll may be answered by any of them.
+     */
+    @Override
+    public Duration getPollInterval(final ConfigurationKey configurationKey) {
+        Duration pollInterval = Duration.ZERO;
+        for (final ConfigurationProvider provider : providers) {
+            final Duration providerPollInterval = provider.getPollInterval(configurationKey);
+            if (providerPollInterval.compareTo(pollInterval) > 0) {
+                pollInterval = providerPollInterval;
+            }
+        }
+        return pollInterval;
+    }
+
+    /**
+     * Closes the providers that hold resources, such as the watch service of a {@link FileConfigurationProvider}.
+     */
+    @Override
+    public void close() throws Exception {
+        for (final ConfigurationProvider provider : providers) {
+            if (provider instanceof AutoCloseable) {
+                ((AutoCloseable) provider).close();
+            }
+        }
+    }
+
+    private CompletableFuture<GetConfigurationResponse> getConfigurationAsync(final int index,
+                                                                              final ConfigurationKey configurationKey,
+                                                                              final String currentVersion,
+                                                                              final RuntimeException previousFailure) {
+        return Futures.call(() -> providers.get(index).getConfigurationAsync(configurationKey,
+                        providerVersion(index, configurationKey, currentVersion)))
+                .handle((response, exception) -> {
+                    if (exception == null) {
+                        return CompletableFuture.completedFuture(withContentVersion(index, configurationKey, response));
+                    }
+                    final Throwable cause = Futures.unwrap(exception);
+                    if (!(cause instanceof RuntimeException)) {
+                        return Futures.<GetConfigurationResponse>failed(cause);
+                    }
+                    final RuntimeException failure = failed(index, configurationKey, (RuntimeException) cause,
+                            previousFailure);
+                    final int next = nextProvider(index);
+                    return next < providers.size()
+                            ? getConfigurationAsync(next, configurationKey, currentVersion, failure)
+                            : Futures.<GetConfigurationResponse>failed(failure);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * @return the version to pass to the provider at {@code index}: the one it gave for the configuration the caller
+     * holds, or the digest if another provider answered last.
+     */
+    private String providerVersion(final int index, final ConfigurationKey configurationKey, final String currentVersion) {
+        final AnsweredVersion last = answered.get(configurationKey);
+        return last != null && last.index == index && last.digest.equals(currentVersion)
+                ? last.providerVersion : currentVersion;
+    }
+
+    /**
+     * @return the response of the provider at {@code index} with the digest of its content as version. A response
+     * without content and with the version the provider gave last keeps the digest of that answer: a conditional poll
+     * leaves the unchanged content out.
+     */
+    private GetConfigurationResponse withContentVersion(final int index,
+                                                        final ConfigurationKey configurationKey,
+                                                        final GetConfigurationResponse response) {
+        final String providerVersion = response.configurationVersion();
+        final AnsweredVersion last = answered.get(configurationKey);
+        final String digest;
+        if (AppConfigDataProvider.isEmpty(response.content()) && providerVersion != null && last != null
+                && last.index == index && providerVersion.equals(last.providerVersion)) {
+            digest = last.digest;
+        } else if (response.content() != null) {
+            digest = AppConfigDataProvider.digest(response.content());
+            answered.put(configurationKey, new AnsweredVersion(index, providerVersion, digest));
+        } else {
+            return response;
+        }
+        return digest.equals(providerVersion) ? response : response.toBuilder().configurationVersion(digest).build();
+    }
+
+    /**
+     * @return the index of the provider to try after the one at {@code index}: the next one that is not cooling down,
+     * or the last one.
+     */
+    private int nextProvider(final int index) {
+        final long now = clock.millis();
+        int next = index + 1;
+        while (next < providers.size() - 1 && now < retryTimes[next].get()) {
+            next++;
+        }
+        return next;
+    }
+
+    private RuntimeException failed(final int index,
+                                    final ConfigurationKey configurationKey,
+                                    final RuntimeException exception,
+                                    final RuntimeException previousFailure) {
+        if (!ConfigurationCacheItem.isCacheableExceptionType(exception) && index < providers.size() - 1) {
+            final long now = clock.millis();
+            if (retryTimes[index].getAndSet(now + coolDownMillis) <= now) {
+                logger.warn("Configuration provider {} failed for {}, skipping it for {} ms",
+                        providers.get(index).getClass().getSimpleName(), configurationKey, coolDownMillis, exception);
+            }
+        }
+        if (previousFailure != null && previousFailure != exception) {
+            exception.addSuppressed(previousFailure);
+        }
+        return exception;
+    }
+
+    private static final class AnsweredVersion {
+        private final int index;
+        private final String providerVersion;
+        private final String digest;
+
+        private AnsweredVersion(final int index, final String providerVersion, final String digest) {
+            this.index = index;
+            this.providerVersion = providerVersion;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.amazonaws.samples.appconfig.provider;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+import software.amazon.awssdk.services.appconfig.model.ResourceNotFoundException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Reads configurations from a local directory, one file per key at
+ * {@code <directory>/<application>/<environment>/<configuration>}, e.g. files mounted into the container or written by
+ * a deployment tool.
+ *
+ * <p>A file is read once and its content kept in memory until a {@link WatchService} reports that it was created,
+ * modified or deleted, so that calls only touch the disk after a change. The version of a configuration is the SHA-256
+ * digest of its content, and a missing file is reported as a {@link ResourceNotFoundException}, like an unknown key is
+ * by the AppConfig API.
+ */
+public class FileConfigurationProvider implements ConfigurationProvider, Closeable {
+    private static final Logger logger = LogManager.getLogger(FileConfigurationProvider.class);
+
+    private final Path directory;
+    private final WatchService watchService;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Path, GetConfigurationResponse> files = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, Boolean> watchedDirectories = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory directory holding the configurations.
+     * @param executor  runs the loop that waits for file changes. Owned by the provider and shut down on close.
+     */
+    public FileConfigurationProvider(final Path directory, final ExecutorService executor) {
+        this.directory = directory;
+        this.executor = executor;
+        try {
+            this.watchService = directory.getFileSystem().newWatchService();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error watching " + directory, e);
+        }
+        executor.execute(this::watch);
+    }
+
+    @Override
+    public GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey, final String currentVersion) {
+        final Path file = directory.resolve(configurationKey.getApplication())
+                .resolve(configurationKey.getEnvironment())
+                .resolve(configurationKey.getConfiguration());
+        // watched before the file is read, so that a change made while it is read is not missed, and only kept in
+        // memory if changes are seen
+        if (!watch(file.getParent())) {
+            return read(file);
+        }
+        return files.computeIfAbsent(file, FileConfigurationProvider::read);
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (final IOException e) {
+            logger.warn("Error closing the watch service of {}", directory, e);
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return whether changes to the files of the directory are seen.
+     */
+    private boolean watch(final Path parent) {
+        if (watchedDirectories.containsKey(parent)) {
+            return true;
+        }
+        try {
+            parent.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(parent, Boolean.TRUE);
+            return true;
+        } catch (final NoSuchFileException e) {
+            // no configuration of this application and environment yet; registered once the directory exists
+            return false;
+        } catch (final ClosedWatchServiceException | IOException e) {
+            logger.warn("Error watching {}, its configurations are read on every call", parent, e);
+            return false;
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                final WatchKey key = watchService.take();
+                final Path parent = (Path) key.watchable();
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        files.keySet().removeIf(file -> parent.equals(file.getParent()));
+                    } else {
+                        files.remove(parent.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    // the directory was deleted: watched again if it is created again
+                    watchedDirectories.remove(parent);
+                    files.keySet().removeIf(file -> parent.equals(file.getParent()));
+                }
+            }
+        } catch (final ClosedWatchServiceException | InterruptedException e) {
+            logger.debug("Stopped watching {}", directory);
+        }
+    }
+
+    private static GetConfigurationResponse read(final Path file) {
+        try {
+            final SdkBytes content = SdkBytes.fromByteArray(Files.readAllBytes(file));
+            return GetConfigurationResponse.builder()
+                    .content(content)
+                    .contentType(Files.probeContentType(file))
+                    .configurationVersion(AppConfigDataProvider.digest(content))
+                    .build();
+        } catch (final NoSuchFileException e) {
+            throw ResourceNotFoundException.builder().message("No configuration file " + file).build();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error reading the configuration file " + file, e);
+        }
+    }
+}
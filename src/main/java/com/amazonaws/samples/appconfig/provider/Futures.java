@@ -0,0 +1,46 @@
+package com.amazonaws.samples.appconfig.provider;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for the asynchronous retrieval path, which has to stay on Java 8's {@link CompletableFuture}.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * @return a future completed exceptionally with the given exception.
+     */
+    public static <T> CompletableFuture<T> failed(final Throwable exception) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        return future;
+    }
+
+    /**
+     * Calls an asynchronous client method, turning an exception thrown before the call was sent into a failed future.
+     */
+    public static <T> CompletableFuture<T> call(final Supplier<CompletableFuture<T>> call) {
+        try {
+            return call.get();
+        } catch (final RuntimeException e) {
+            return failed(e);
+        }
+    }
+
+    /**
+     * @return the exception a dependent stage failed with, without the {@link CompletionException} wrapping it.
+     */
+    public static Throwable unwrap(final Throwable exception) {
+        Throwable cause = exception;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
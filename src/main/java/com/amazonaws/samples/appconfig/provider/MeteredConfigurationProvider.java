@@ -0,0 +1,109 @@
+package com.amazonaws.samples.appconfig.provider;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the calls a {@link ConfigurationProvider} makes, tagged with the application, environment and configuration
+ * of the key:
+ *
+ * <ul>
+ *     <li>{@code appconfig.fetch}: latency histogram, tagged with the outcome ({@code success}, {@code throttled} or
+ *     {@code error}) and the exception class.</li>
+ *     <li>{@code appconfig.payload.size}: size in bytes of the configurations received.</li>
+ *     <li>{@code appconfig.version.changes}: number of times a new configuration version was received.</li>
+ * </ul>
+ */
+public class MeteredConfigurationProvider implements ConfigurationProvider {
+
+    private final ConfigurationProvider delegate;
+    private final MeterRegistry registry;
+
+    public MeteredConfigurationProvider(final ConfigurationProvider delegate, final MeterRegistry registry) {
+        this.delegate = delegate;
+        this.registry = registry;
+    }
+
+    @Override
+    public GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey, final String currentVersion) {
+        final Tags keyTags = tags(configurationKey);
+        final long start = registry.config().clock().monotonicTime();
+        try {
+            final GetConfigurationResponse response = delegate.getConfiguration(configurationKey, currentVersion);
+            recordSuccess(keyTags, start, currentVersion, response);
+            return response;
+        } catch (final RuntimeException e) {
+            recordFailure(keyTags, start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<GetConfigurationResponse> getConfigurationAsync(final ConfigurationKey configurationKey,
+                                                                             final String currentVersion) {
+        final Tags keyTags = tags(configurationKey);
+        final long start = registry.config().clock().monotonicTime();
+        return Futures.call(() -> delegate.getConfigurationAsync(configurationKey, currentVersion))
+                .whenComplete((response, exception) -> {
+                    if (exception == null) {
+                        recordSuccess(keyTags, start, currentVersion, response);
+                    } else {
+                        recordFailure(keyTags, start, Futures.unwrap(exception));
+                    }
+                });
+    }
+
+    @Override
+    public Duration getPollInterval(final ConfigurationKey configurationKey) {
+        return delegate.getPollInterval(configurationKey);
+    }
+
+    private void recordSuccess(final Tags keyTags,
+                               final long start,
+                               final String currentVersion,
+                               final GetConfigurationResponse response) {
+        record(keyTags, start, "success", "none");
+        if (response.content() != null) {
+            DistributionSummary.builder("appconfig.payload.size")
+                    .baseUnit("bytes")
+                    .tags(keyTags)
+                    .register(registry)
+                    .record(response.content().asByteBuffer().remaining());
+            if (currentVersion != null && !currentVersion.equals(response.configurationVersion())) {
+                Counter.builder("appconfig.version.changes").tags(keyTags).register(registry).increment();
+            }
+        }
+    }
+
+    private void recordFailure(final Tags keyTags, final long start, final Throwable exception) {
+        final boolean throttled = exception instanceof SdkServiceException
+                && ((SdkServiceException) exception).isThrottlingException();
+        record(keyTags, start, throttled ? "throttled" : "error", exception.getClass().getSimpleName());
+    }
+
+    private void record(final Tags keyTags, final long start, final String outcome, final String exception) {
+        Timer.builder("appconfig.fetch")
+                .tags(keyTags)
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(registry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static Tags tags(final ConfigurationKey configurationKey) {
+        return Tags.of("application", configurationKey.getApplication(),
+                "environment", configurationKey.getEnvironment(),
+                "configuration", configurationKey.getConfiguration());
+    }
+}
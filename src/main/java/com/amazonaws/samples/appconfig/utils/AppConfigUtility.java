@@ -2,21 +2,46 @@ package com.amazonaws.samples.appconfig.utils;
 
 import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
 import com.amazonaws.samples.appconfig.cache.ConfigurationCacheItem;
+import com.amazonaws.samples.appconfig.cache.RefreshPolicy;
 import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.model.ConfigurationSnapshot;
+import com.amazonaws.samples.appconfig.provider.AppConfigApiProvider;
+import com.amazonaws.samples.appconfig.provider.ConfigurationProvider;
+import com.amazonaws.samples.appconfig.provider.Futures;
+import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.appconfig.AppConfigClient;
-import software.amazon.awssdk.services.appconfig.model.GetConfigurationRequest;
 import software.amazon.awssdk.services.appconfig.model.*;
 
 import java.time.Duration;
-import java.util.Optional;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 
 public class AppConfigUtility {
 
+    /**
+     * Number of configurations {@link #getConfigurations(Collection)} fetches at the same time.
+     */
+    public static final int DEFAULT_BATCH_CONCURRENCY = 8;
+
     private final AppConfigClient client;
+    private final ConfigurationProvider provider;
     private final ConfigurationCache cache;
     private final Duration cacheItemTtl;
-    private final String clientId;
+    private final RefreshPolicy refreshPolicy;
+    private volatile ConfigurationRefresher backgroundRefresher;
+    private volatile Executor batchExecutor = Runnable::run;
+    private final ConcurrentHashMap<ConfigurationKey, UnaryOperator<GetConfigurationResponse>> overlays
+            = new ConcurrentHashMap<>();
 
     /**
      * Constructor for AppConfigUtility.
@@ -31,11 +56,71 @@ public class AppConfigUtility {
                             final Duration cacheItemTtl,
                             final String clientId) {
 
+        this(client, new AppConfigApiProvider(client, clientId), configurationCache, cacheItemTtl);
+
+    }
+
+    /**
+     * Constructor for AppConfigUtility.
+     *
+     * @param client             client for updating configuration profiles through the AppConfig API.
+     * @param provider           retrieves the configurations, e.g. through the AppConfigData session API.
+     * @param configurationCache cache for configurations returned by the provider.
+     * @param cacheItemTtl       items are refreshed according to this ttl, or the poll interval requested by the
+     *                           provider if that is longer.
+     */
+    public AppConfigUtility(final AppConfigClient client,
+                            final ConfigurationProvider provider,
+                            final ConfigurationCache configurationCache,
+                            final Duration cacheItemTtl) {
+
+        this(client, provider, configurationCache, cacheItemTtl, new RefreshPolicy());
+
+    }
+
+    /**
+     * Constructor for AppConfigUtility.
+     *
+     * @param client             client for updating configuration profiles through the AppConfig API.
+     * @param provider           retrieves the configurations, e.g. through the AppConfigData session API.
+     * @param configurationCache cache for configurations returned by the provider.
+     * @param cacheItemTtl       items are refreshed according to this ttl, or the poll interval requested by the
+     *                           provider if that is longer.
+     * @param refreshPolicy      backoff, circuit breaker and adaptive TTL applied to the fetches of each key.
+     */
+    public AppConfigUtility(final AppConfigClient client,
+                            final ConfigurationProvider provider,
+                            final ConfigurationCache configurationCache,
+                            final Duration cacheItemTtl,
+                            final RefreshPolicy refreshPolicy) {
+
         this.client = client;
+        this.provider = provider;
         this.cache = configurationCache;
         this.cacheItemTtl = cacheItemTtl;
-        this.clientId = clientId;
+        this.refreshPolicy = refreshPolicy;
+
+    }
+
+    /**
+     * Hands expired items over to a background refresher. Once set, a request for an expired item that still has a value
+     * is answered with that (stale) value while the refresher fetches the new one, instead of calling the API inline.
+     *
+     * @param backgroundRefresher refresher to notify about stale reads, or null to refresh inline.
+     */
+    public void setBackgroundRefresher(final ConfigurationRefresher backgroundRefresher) {
+        this.backgroundRefresher = backgroundRefresher;
+    }
 
+    /**
+     * Sets where {@link #getConfigurations} runs its fetches. With a provider that has a non-blocking
+     * {@link ConfigurationProvider#getConfigurationAsync}, the calling thread is enough and is the default. With a
+     * blocking provider, the fetches of a batch only overlap when run on an executor with a thread for each of them.
+     *
+     * @param batchExecutor executor of the batch fetches.
+     */
+    public void setBatchExecutor(final Executor batchExecutor) {
+        this.batchExecutor = batchExecutor;
     }
 
     /**
@@ -46,92 +131,376 @@ public class AppConfigUtility {
      * @return GetConfigurationResponse Containing the content, content type, and version of the configuration.
      */
     public GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey) {
-        final ConfigurationCacheItem<GetConfigurationResponse> result = Optional.ofNullable(cache.get(configurationKey))
-                .map(item -> {
-                    if (item.isRefreshNeeded()) {
-                        return getConfigurationFromApiAndApplyToCache(configurationKey, item, item.getValue().configurationVersion());
-                    } else {
-                        return item;
-                    }
-                }).orElseGet(() -> getConfigurationFromApiAndApplyToCache(configurationKey, null, null));
-        if (result.getValue() == null && result.getException() != null) {
-            throw result.getException();
+        final ConfigurationCacheItem<GetConfigurationResponse> item = cachedItem(configurationKey);
+        return valueOf(item != null ? item : loadIfRefreshNeeded(configurationKey));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getConfiguration}. A cached configuration is returned as a completed future; a
+     * load goes through {@link ConfigurationProvider#getConfigurationAsync} and is shared with every synchronous or
+     * asynchronous caller asking for the same key meanwhile, so no thread waits for the AppConfig API.
+     *
+     * @param configurationKey specifies the application name, environment name, and the configuration name of the
+     *                         configuration to be retrieved.
+     * @return a future of the configuration, completed exceptionally if it cannot be retrieved and nothing is cached.
+     */
+    public CompletableFuture<GetConfigurationResponse> getConfigurationAsync(final ConfigurationKey configurationKey) {
+        final ConfigurationCacheItem<GetConfigurationResponse> item = cachedItem(configurationKey);
+        final CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>> result = item != null
+                ? CompletableFuture.completedFuture(item) : loadIfRefreshNeededAsync(configurationKey);
+        return result.thenApply(AppConfigUtility::valueOf);
+    }
+
+    /**
+     * Retrieves several configurations at once, e.g. all the profiles a request needs, with
+     * {@link #DEFAULT_BATCH_CONCURRENCY} fetches at a time.
+     *
+     * @see #getConfigurationsAsync(Collection, int)
+     */
+    public ConfigurationSnapshot getConfigurations(final Collection<ConfigurationKey> configurationKeys) {
+        return getConfigurationsAsync(configurationKeys, DEFAULT_BATCH_CONCURRENCY).join();
+    }
+
+    /**
+     * Retrieves several configurations at once. Configurations that {@link #getConfiguration} would return from the
+     * cache are taken from it right away; the others are fetched in parallel, at most {@code maxConcurrency} at a time,
+     * so the batch takes about as long as its slowest fetch rather than the sum of them. Fetches are shared with
+     * concurrent callers asking for the same keys, as for {@link #getConfigurationAsync}.
+     *
+     * @param configurationKeys keys of the configurations. Duplicates are retrieved once.
+     * @param maxConcurrency    maximum number of fetches in flight.
+     * @return a future of the snapshot, never completed exceptionally: a configuration that cannot be retrieved is
+     * recorded in the snapshot as a failure.
+     */
+    public CompletableFuture<ConfigurationSnapshot> getConfigurationsAsync(final Collection<ConfigurationKey> configurationKeys,
+                                                                           final int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
         }
-        return result.getValue();
+        final Batch batch = new Batch(configurationKeys);
+        for (int i = 0; i < batch.keys.length; i++) {
+            final ConfigurationCacheItem<GetConfigurationResponse> item = cachedItem(batch.keys[i]);
+            if (item == null) {
+                batch.addMiss(i);
+            } else {
+                batch.complete(i, item.getValue(), item.getValue() == null ? item.getException() : null);
+            }
+        }
+        final Executor executor = batchExecutor;
+        final CompletableFuture<?>[] lanes = new CompletableFuture<?>[Integer.min(maxConcurrency, batch.missCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = CompletableFuture.supplyAsync(() -> fetchMisses(batch), executor).thenCompose(Function.identity());
+        }
+        return CompletableFuture.allOf(lanes).thenApply(ignored -> batch.toSnapshot());
     }
 
-    public GetConfigurationResponse updateConfiguration(final ConfigurationKey configurationKey, final String content) {
-        try {
-            UpdateConfigurationProfileRequest updateRequest = UpdateConfigurationProfileRequest.builder()
-                    .build();
-
-            UpdateConfigurationProfileResponse updateResponse = client.updateConfigurationProfile(updateRequest);
-            final ConfigurationCacheItem<GetConfigurationResponse> result = Optional.ofNullable(cache.get(configurationKey))
-                    .map(item -> {
-                        if (item.isRefreshNeeded()) {
-                            return getConfigurationFromApiAndApplyToCache(configurationKey, item, item.getValue().configurationVersion());
-                        } else {
-                            return item;
-                        }
-                    }).orElseGet(() -> getConfigurationFromApiAndApplyToCache(configurationKey, null, null));
-            if (result.getValue() == null && result.getException() != null) {
-                throw result.getException();
+    /**
+     * Stores the content as a new hosted configuration version. The version is not deployed: it reaches the hosts,
+     * this one included, once a deployment of it completes.
+     *
+     * @param applicationId          id of the application. This API does not accept its name.
+     * @param configurationProfileId id of the hosted configuration profile.
+     * @param content                the whole new configuration.
+     * @param contentType            media type of the content, e.g. application/json.
+     * @return number of the new version.
+     */
+    public Integer publishConfiguration(final String applicationId,
+                                        final String configurationProfileId,
+                                        final byte[] content,
+                                        final String contentType) {
+        final CreateHostedConfigurationVersionRequest request = CreateHostedConfigurationVersionRequest.builder()
+                .applicationId(applicationId)
+                .configurationProfileId(configurationProfileId)
+                .content(SdkBytes.fromByteArray(content))
+                .contentType(contentType)
+                .build();
+        return client.createHostedConfigurationVersion(request).versionNumber();
+    }
+
+    /**
+     * Caches a configuration produced on this host, e.g. with local edits that are not deployed yet, so that requests
+     * read it right away. It keeps the refresh time of the configuration it replaces, so the next fetch is made on
+     * schedule. The fetched configuration replaces it unless an overlay set with {@link #setOverlay} keeps the local
+     * changes.
+     *
+     * @param configuration configuration to serve. Its version must differ from the cached one for change listeners
+     *                      and derived values to pick it up.
+     */
+    public void putLocalConfiguration(final ConfigurationKey configurationKey,
+                                      final GetConfigurationResponse configuration) {
+        final ConfigurationCacheItem<GetConfigurationResponse> existingItem = cache.peek(configurationKey);
+        final ConfigurationCacheItem<GetConfigurationResponse> item
+                = new ConfigurationCacheItem<>(ttlFor(configurationKey), refreshPolicy.getClock());
+        item.setValue(configuration);
+        if (existingItem != null) {
+            item.setRefreshTime(existingItem.getRefreshTime());
+        } else {
+            item.calculateAndSetRefreshTime();
+        }
+        cache.put(configurationKey, item);
+    }
+
+    /**
+     * Applies local changes to every configuration fetched for the key before it is cached, so that requests and change
+     * listeners never see a fetched configuration without them. An overlay that returns the same version for the same
+     * fetched version keeps a configuration that did not change from being cached and announced again.
+     *
+     * @param overlay returns the configuration to cache in place of the fetched one. Called on the fetching thread.
+     */
+    public void setOverlay(final ConfigurationKey configurationKey,
+                           final UnaryOperator<GetConfigurationResponse> overlay) {
+        overlays.put(configurationKey, overlay);
+    }
+
+    public void removeOverlay(final ConfigurationKey configurationKey) {
+        overlays.remove(configurationKey);
+    }
+
+    /**
+     * Fetches the configuration from the API regardless of the TTL and applies it to the cache. Used by
+     * {@link ConfigurationRefresher} to refresh items before they expire.
+     *
+     * @param configurationKey key of the configuration to refresh.
+     * @return the cache item holding the configuration after the refresh.
+     */
+    public ConfigurationCacheItem<GetConfigurationResponse> refreshConfiguration(final ConfigurationKey configurationKey) {
+        return cache.load(configurationKey, key -> {
+            final ConfigurationCacheItem<GetConfigurationResponse> existingItem = cache.peek(key);
+            return getConfigurationFromApiAndApplyToCache(key, existingItem, versionOf(existingItem));
+        });
+    }
+
+    /**
+     * @return whether the refresh policy lets the key be fetched now, so that the refresher does not schedule
+     * refreshes that would be skipped. The fetch itself is claimed by the refresh.
+     */
+    boolean isFetchDue(final ConfigurationKey configurationKey) {
+        return refreshPolicy.isFetchDue(configurationKey);
+    }
+
+    /**
+     * @return the cached item if it can be returned without loading: it is fresh, or it is stale but has a value and is
+     * refreshed in the background. Null if the configuration must be loaded.
+     */
+    private ConfigurationCacheItem<GetConfigurationResponse> cachedItem(final ConfigurationKey configurationKey) {
+        final ConfigurationCacheItem<GetConfigurationResponse> item = cache.get(configurationKey);
+        if (item == null || !item.isRefreshNeeded()) {
+            return item;
+        }
+        final ConfigurationRefresher refresher = backgroundRefresher;
+        if (refresher != null && item.getValue() != null) {
+            refresher.onStaleRead(configurationKey, item);
+            return item;
+        }
+        return null;
+    }
+
+    private static GetConfigurationResponse valueOf(final ConfigurationCacheItem<GetConfigurationResponse> item) {
+        if (item.getValue() == null && item.getException() != null) {
+            throw item.getException();
+        }
+        return item.getValue();
+    }
+
+    /**
+     * Fetches the misses of the batch one after the other until none is left. Running this in several lanes bounds
+     * the number of fetches in flight to the number of lanes; a fetch that completes at once does not leave the loop.
+     */
+    private CompletableFuture<Void> fetchMisses(final Batch batch) {
+        int miss;
+        while ((miss = batch.nextMiss()) >= 0) {
+            final int index = miss;
+            final CompletableFuture<Void> fetched = Futures.call(() -> getConfigurationAsync(batch.keys[index]))
+                    .handle((configuration, exception) -> {
+                        final Throwable cause = exception == null ? null : Futures.unwrap(exception);
+                        batch.complete(index, configuration, cause == null || cause instanceof RuntimeException
+                                ? (RuntimeException) cause : new CompletionException(cause));
+                        return null;
+                    });
+            if (!fetched.isDone()) {
+                return fetched.thenCompose(ignored -> fetchMisses(batch));
             }
-            return result.getValue();
-        } catch (Exception e) {
-            throw new RuntimeException("Error updating configuration: " + e.getMessage(), e);
         }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Loads the configuration from the API unless another thread refreshed it while this one was waiting. Concurrent
+     * callers for the same key share a single API call.
+     */
+    private ConfigurationCacheItem<GetConfigurationResponse> loadIfRefreshNeeded(final ConfigurationKey configurationKey) {
+        return cache.load(configurationKey, key -> {
+            final ConfigurationCacheItem<GetConfigurationResponse> existingItem = cache.peek(key);
+            if (existingItem != null && !existingItem.isRefreshNeeded()) {
+                return existingItem;
+            }
+            return getConfigurationFromApiAndApplyToCache(key, existingItem, versionOf(existingItem));
+        });
+    }
+
+    private CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>> loadIfRefreshNeededAsync(
+            final ConfigurationKey configurationKey) {
+        return cache.loadAsync(configurationKey, key -> {
+            final ConfigurationCacheItem<GetConfigurationResponse> existingItem = cache.peek(key);
+            if (existingItem != null && !existingItem.isRefreshNeeded()) {
+                return CompletableFuture.completedFuture(existingItem);
+            }
+            return getConfigurationFromApiAndApplyToCacheAsync(key, existingItem, versionOf(existingItem));
+        });
     }
 
+    private Duration ttlFor(final ConfigurationKey configurationKey) {
+        final Duration pollInterval = provider.getPollInterval(configurationKey);
+        return pollInterval.compareTo(cacheItemTtl) > 0 ? pollInterval : cacheItemTtl;
+    }
+
+    private static String versionOf(final ConfigurationCacheItem<GetConfigurationResponse> item) {
+        return item == null || item.getValue() == null ? null : item.getValue().configurationVersion();
+    }
 
     protected ConfigurationCacheItem<GetConfigurationResponse> getConfigurationFromApiAndApplyToCache(
             final ConfigurationKey configurationKey,
             final ConfigurationCacheItem<GetConfigurationResponse> existingItem,
             final String version) {
-        try {
-            final GetConfigurationResponse result = client.getConfiguration(GetConfigurationRequest.builder()
-                    .application(configurationKey.getApplication())
-                    .environment(configurationKey.getEnvironment())
-                    .configuration(configurationKey.getConfiguration())
-                    .clientId(this.clientId)
-                    .clientConfigurationVersion(version)
-                    .build());
-
-            final ConfigurationCacheItem<GetConfigurationResponse> item = new ConfigurationCacheItem<>(cacheItemTtl);
-            if (result.content() != null) {
-                item.setValue(result);
-            }
-
-            if (existingItem == null || existingItem.getValue() == null
-                    || (item.getValue() != null
-                    && !existingItem.getValue().configurationVersion().equals(item.getValue().configurationVersion()))) {
-                item.calculateAndSetRefreshTime();
-                cache.put(configurationKey, item);
-                return item;
-            } else {
-
-                existingItem.calculateAndSetRefreshTime();
-                cache.put(configurationKey, existingItem);
+        if (!refreshPolicy.isFetchAllowed(configurationKey)) {
+            if (existingItem == null) {
+                throw fetchSuspended(configurationKey);
             }
             return existingItem;
+        }
+        try {
+            final GetConfigurationResponse result = provider.getConfiguration(configurationKey, version);
+            return applyToCache(configurationKey, existingItem, result, null);
         } catch (final RuntimeException e) {
-            final ConfigurationCacheItem<GetConfigurationResponse> item = new ConfigurationCacheItem<>(cacheItemTtl);
-            item.setException(e);
-
-            if (existingItem == null || existingItem.getValue() == null
-                    || (item.getValue() != null
-                    && !existingItem.getValue().configurationVersion().equals(item.getValue().configurationVersion()))) {
-                item.calculateAndSetRefreshTime();
-                cache.put(configurationKey, item);
-                return item;
-            } else {
+            return applyToCache(configurationKey, existingItem, null, e);
+        }
+    }
+
+    private CompletableFuture<ConfigurationCacheItem<GetConfigurationResponse>> getConfigurationFromApiAndApplyToCacheAsync(
+            final ConfigurationKey configurationKey,
+            final ConfigurationCacheItem<GetConfigurationResponse> existingItem,
+            final String version) {
+        if (!refreshPolicy.isFetchAllowed(configurationKey)) {
+            return existingItem == null
+                    ? Futures.failed(fetchSuspended(configurationKey)) : CompletableFuture.completedFuture(existingItem);
+        }
+        return Futures.call(() -> provider.getConfigurationAsync(configurationKey, version))
+                .handle((result, exception) -> {
+                    if (exception == null) {
+                        return applyToCache(configurationKey, existingItem, result, null);
+                    }
+                    final Throwable cause = Futures.unwrap(exception);
+                    return applyToCache(configurationKey, existingItem, null,
+                            cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause));
+                });
+    }
+
+    /**
+     * @return the exception thrown when the refresh policy does not let the key be fetched and there is no cached item
+     * to serve meanwhile, e.g. after it was evicted.
+     */
+    private IllegalStateException fetchSuspended(final ConfigurationKey configurationKey) {
+        return new IllegalStateException(String.format(
+                "%s is not cached and cannot be fetched for %d ms after %d failed fetches in a row", configurationKey,
+                refreshPolicy.getRetryDelay(configurationKey).toMillis(), refreshPolicy.getFailureCount(configurationKey)));
+    }
+
+    /**
+     * State of one {@link #getConfigurationsAsync} call, shared by its lanes. Each key has its own slot, written once;
+     * the snapshot is built after every lane has completed.
+     */
+    private static final class Batch {
+        private final ConfigurationKey[] keys;
+        private final GetConfigurationResponse[] configurations;
+        private final RuntimeException[] failures;
+        /**
+         * Indexes of the keys to fetch, added before the lanes start.
+         */
+        private final int[] misses;
+        private int missCount;
+        private final AtomicInteger nextMiss = new AtomicInteger();
+
+        private Batch(final Collection<ConfigurationKey> configurationKeys) {
+            keys = new LinkedHashSet<>(configurationKeys).toArray(new ConfigurationKey[0]);
+            configurations = new GetConfigurationResponse[keys.length];
+            failures = new RuntimeException[keys.length];
+            misses = new int[keys.length];
+        }
+
+        private void addMiss(final int index) {
+            misses[missCount++] = index;
+        }
+
+        /**
+         * @return index of the next key to fetch, or -1 if none is left.
+         */
+        private int nextMiss() {
+            final int next = nextMiss.getAndIncrement();
+            return next < missCount ? misses[next] : -1;
+        }
+
+        /**
+         * Records the outcome of a key. No configuration and no exception, e.g. when the first fetch of the key
+         * returned no content, is recorded as a failure, so that the snapshot never holds a null configuration.
+         */
+        private void complete(final int index,
+                              final GetConfigurationResponse configuration,
+                              final RuntimeException exception) {
+            configurations[index] = configuration;
+            failures[index] = configuration == null && exception == null
+                    ? new IllegalStateException("No configuration was retrieved for " + keys[index])
+                    : exception;
+        }
 
-                existingItem.calculateAndSetRefreshTime();
-                cache.put(configurationKey, existingItem);
+        private ConfigurationSnapshot toSnapshot() {
+            final Map<ConfigurationKey, GetConfigurationResponse> retrieved = new LinkedHashMap<>();
+            final Map<ConfigurationKey, RuntimeException> failed = new LinkedHashMap<>();
+            for (int i = 0; i < keys.length; i++) {
+                if (failures[i] != null) {
+                    failed.put(keys[i], failures[i]);
+                } else {
+                    retrieved.put(keys[i], configurations[i]);
+                }
             }
-            return existingItem;
+            return new ConfigurationSnapshot(retrieved, failed);
         }
+    }
 
+    /**
+     * Caches the new configuration, or the exception if there is no configuration to fall back to. Otherwise, when
+     * nothing changed or the retrieval failed, the existing item is kept and its refresh time pushed back: by the TTL
+     * the refresh policy gives, by the configured TTL after an error that is cached, like an unknown key, or after a
+     * failure that may be transient, by its backoff. The last good configuration is served meanwhile
+     * (stale-while-error).
+     */
+    private ConfigurationCacheItem<GetConfigurationResponse> applyToCache(
+            final ConfigurationKey configurationKey,
+            final ConfigurationCacheItem<GetConfigurationResponse> existingItem,
+            final GetConfigurationResponse result,
+            final RuntimeException exception) {
+        final Duration ttl = ttlFor(configurationKey);
+        final ConfigurationCacheItem<GetConfigurationResponse> item = new ConfigurationCacheItem<>(ttl, refreshPolicy.getClock());
+        if (exception != null) {
+            item.setException(exception);
+        } else if (result.content() != null) {
+            final UnaryOperator<GetConfigurationResponse> overlay = overlays.get(configurationKey);
+            item.setValue(overlay == null ? result : overlay.apply(result));
+        }
+
+        final boolean changed = existingItem == null || existingItem.getValue() == null
+                || (item.getValue() != null
+                && !existingItem.getValue().configurationVersion().equals(item.getValue().configurationVersion()));
+        final ConfigurationCacheItem<GetConfigurationResponse> appliedItem = changed ? item : existingItem;
+        if (exception != null && !ConfigurationCacheItem.isCacheableExceptionType(exception)) {
+            appliedItem.setRefreshDelay(refreshPolicy.onFailure(configurationKey));
+        } else if (exception != null) {
+            refreshPolicy.onRejected(configurationKey);
+            appliedItem.setRefreshDelay(ttl);
+        } else {
+            appliedItem.setRefreshDelay(refreshPolicy.onSuccess(configurationKey, ttl, changed));
+        }
+        cache.put(configurationKey, appliedItem);
+        return appliedItem;
     }
 
 
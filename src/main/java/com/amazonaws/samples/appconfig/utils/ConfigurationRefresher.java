@@ -0,0 +1,208 @@
+package com.amazonaws.samples.appconfig.utils;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.cache.ConfigurationCacheItem;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Refreshes cached configurations in the background before their TTL runs out (refresh-ahead), so request threads
+ * never wait for the AppConfig API once a key has been loaded.
+ *
+ * <p>Every scan picks the items whose refresh time falls within {@code refreshAhead} (plus a random jitter of up to
+ * {@code maxJitter}, so keys and replicas do not all poll at the same instant) and refreshes each of them at most once
+ * at a time. Items that expire anyway keep being served by {@link AppConfigUtility} until the refresh completes.
+ * Keys that back off after failed fetches are left alone until their {@link com.amazonaws.samples.appconfig.cache.RefreshPolicy}
+ * lets them be fetched again.
+ */
+public class ConfigurationRefresher implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ConfigurationRefresher.class);
+
+    private final AppConfigUtility appConfigUtility;
+    private final ConfigurationCache cache;
+    private final Duration refreshAhead;
+    private final Duration maxJitter;
+    private final ScheduledExecutorService executor;
+    private final ExecutorService refreshExecutor;
+    private final Clock clock = Clock.systemDefaultZone();
+    private final Set<ConfigurationKey> refreshesInFlight = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder refreshCount = new LongAdder();
+    private final LongAdder refreshFailureCount = new LongAdder();
+    private final LongAdder refreshLatencyTotalNanos = new LongAdder();
+    private final AtomicLong maxRefreshLatencyNanos = new AtomicLong();
+    private final LongAdder staleReadCount = new LongAdder();
+    private final AtomicLong maxStalenessMillis = new AtomicLong();
+
+    /**
+     * Constructor for ConfigurationRefresher.
+     *
+     * @param appConfigUtility utility used to fetch configurations and apply them to the cache.
+     * @param cache            cache whose items are refreshed.
+     * @param refreshAhead     how long before its refresh time an item is refreshed.
+     * @param maxJitter        upper bound of the random amount added to {@code refreshAhead} on each scan.
+     * @param executor         runs the periodic scan as well as the refreshes. Owned by the refresher and shut down on close.
+     */
+    public ConfigurationRefresher(final AppConfigUtility appConfigUtility,
+                                  final ConfigurationCache cache,
+                                  final Duration refreshAhead,
+                                  final Duration maxJitter,
+                                  final ScheduledExecutorService executor) {
+        this(appConfigUtility, cache, refreshAhead, maxJitter, executor, executor);
+    }
+
+    /**
+     * Constructor for ConfigurationRefresher that runs the refreshes apart from the scan, e.g. on virtual threads.
+     *
+     * @param appConfigUtility utility used to fetch configurations and apply them to the cache.
+     * @param cache            cache whose items are refreshed.
+     * @param refreshAhead     how long before its refresh time an item is refreshed.
+     * @param maxJitter        upper bound of the random amount added to {@code refreshAhead} on each scan.
+     * @param executor         runs the periodic scan. Owned by the refresher and shut down on close.
+     * @param refreshExecutor  runs the refreshes. Owned by the refresher and shut down on close.
+     */
+    public ConfigurationRefresher(final AppConfigUtility appConfigUtility,
+                                  final ConfigurationCache cache,
+                                  final Duration refreshAhead,
+                                  final Duration maxJitter,
+                                  final ScheduledExecutorService executor,
+                                  final ExecutorService refreshExecutor) {
+        this.appConfigUtility = appConfigUtility;
+        this.cache = cache;
+        this.refreshAhead = refreshAhead;
+        this.maxJitter = maxJitter;
+        this.executor = executor;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Starts scanning the cache periodically and lets {@link AppConfigUtility} serve stale items while they are refreshed.
+     *
+     * @param scanInterval delay between two scans of the cache.
+     */
+    public void start(final Duration scanInterval) {
+        appConfigUtility.setBackgroundRefresher(this);
+        executor.scheduleWithFixedDelay(this::refreshDueItems,
+                scanInterval.toMillis(), scanInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops expired and excess cache entries, then schedules a refresh for every cached item that is due within the
+     * refresh-ahead window.
+     */
+    public void refreshDueItems() {
+        try {
+            cache.cleanUp();
+            final long jitterMillis = maxJitter.isZero() ? 0 : ThreadLocalRandom.current().nextLong(maxJitter.toMillis() + 1);
+            final long horizon = clock.millis() + refreshAhead.toMillis() + jitterMillis;
+            for (final Map.Entry<ConfigurationKey, ConfigurationCacheItem<GetConfigurationResponse>> entry : cache.entrySet()) {
+                if (entry.getValue().getRefreshTime() <= horizon && appConfigUtility.isFetchDue(entry.getKey())) {
+                    refreshAsync(entry.getKey());
+                }
+            }
+        } catch (final RuntimeException e) {
+            // an exception would cancel the periodic scan
+            logger.error("Error scanning the configuration cache for refresh", e);
+        }
+    }
+
+    /**
+     * Called by {@link AppConfigUtility} when it serves an item past its refresh time.
+     */
+    void onStaleRead(final ConfigurationKey configurationKey, final ConfigurationCacheItem<GetConfigurationResponse> item) {
+        staleReadCount.increment();
+        maxStalenessMillis.accumulateAndGet(clock.millis() - item.getRefreshTime(), Long::max);
+        refreshAsync(configurationKey);
+    }
+
+    /**
+     * Refreshes the given key on the executor unless a refresh for it is already running.
+     */
+    public void refreshAsync(final ConfigurationKey configurationKey) {
+        if (!refreshesInFlight.add(configurationKey)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh(configurationKey);
+                } finally {
+                    refreshesInFlight.remove(configurationKey);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            refreshesInFlight.remove(configurationKey);
+        }
+    }
+
+    private void refresh(final ConfigurationKey configurationKey) {
+        final long start = System.nanoTime();
+        try {
+            final ConfigurationCacheItem<GetConfigurationResponse> item = appConfigUtility.refreshConfiguration(configurationKey);
+            if (item.getException() != null) {
+                refreshFailureCount.increment();
+            }
+        } catch (final RuntimeException e) {
+            refreshFailureCount.increment();
+            logger.error("Error refreshing configuration " + configurationKey, e);
+        } finally {
+            final long latency = System.nanoTime() - start;
+            refreshCount.increment();
+            refreshLatencyTotalNanos.add(latency);
+            maxRefreshLatencyNanos.accumulateAndGet(latency, Long::max);
+        }
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    public long getRefreshFailureCount() {
+        return refreshFailureCount.sum();
+    }
+
+    public long getRefreshLatencyTotalNanos() {
+        return refreshLatencyTotalNanos.sum();
+    }
+
+    public long getMaxRefreshLatencyNanos() {
+        return maxRefreshLatencyNanos.get();
+    }
+
+    /**
+     * @return number of requests answered with an item past its refresh time.
+     */
+    public long getStaleReadCount() {
+        return staleReadCount.sum();
+    }
+
+    /**
+     * @return the largest amount of time an item has been served past its refresh time.
+     */
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis.get();
+    }
+
+    @Override
+    public void close() {
+        appConfigUtility.setBackgroundRefresher(null);
+        executor.shutdownNow();
+        refreshExecutor.shutdownNow();
+    }
+}
@@ -26,6 +26,41 @@ public class Encoder {
     byte[] bytes = new byte[57];
 //    String enc1 = new sun.misc.BASE64Encoder().encode(bytes);
 
+    /**
+     * Encodes the chars of {@code text} from {@code offset} to {@code end} to UTF-8, as {@link String#getBytes} does,
+     * without creating a string. A surrogate pair is only encoded when both of its chars are in the range.
+     *
+     * @param target   array written from {@code position}, with room for 3 bytes per char.
+     * @return the position after the last byte written.
+     */
+    public static int encodeUtf8(final CharSequence text, final int offset, final int end,
+                                 final byte[] target, final int position) {
+        int next = position;
+        for (int i = offset; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                target[next++] = (byte) c;
+            } else if (c < 0x800) {
+                target[next++] = (byte) (0xC0 | (c >> 6));
+                target[next++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                target[next++] = (byte) (0xF0 | (codePoint >> 18));
+                target[next++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                target[next++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                target[next++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced like String.getBytes(UTF_8) does
+                target[next++] = '?';
+            } else {
+                target[next++] = (byte) (0xE0 | (c >> 12));
+                target[next++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                target[next++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return next;
+    }
+
 
 
 }
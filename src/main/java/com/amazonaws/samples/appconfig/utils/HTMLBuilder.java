@@ -1,7 +1,31 @@
 package com.amazonaws.samples.appconfig.utils;
 import com.amazonaws.samples.appconfig.movies.Movie;
+import com.amazonaws.samples.appconfig.movies.MovieCatalog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 public class HTMLBuilder {
 
+    /**
+     * Size of the buffer {@link #writeMoviesHtml(Movie[], OutputStream)} fills before writing to the stream.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    private static final byte[] HEADER = utf8("<div id='movies-container'>"
+            + "<h1> FREE Movie List for this Month</h1>");
+    private static final byte[] ITEM_START = utf8("<div class='movie-item'>"
+            + "<p>ID: ");
+    private static final byte[] ITEM_NAME = utf8("</p>"
+            + "<h3>");
+    private static final byte[] ITEM_END = utf8("</h3>"
+            + "<hr width=\"100%\" size=\"2\" color=\"blue\" noshade>"
+            + "</div>");
+    private static final byte[] FOOTER = utf8("<hr>"
+            + "<hr width=\"100%\" size=\"2\" color=\"blue\" noshade>"
+            + "</div>");
+
 //    public String getMoviesHtml(Movie[] movies) {
 //        StringBuilder htmlBuilder = new StringBuilder();
 //        htmlBuilder.append("<div id='movies-container'>");
@@ -42,4 +66,202 @@ public class HTMLBuilder {
         return movieItemsHtml.toString();
     }
 
+    /**
+     * Writes the same UTF-8 markup as {@link #getMoviesHtml(Movie[])} to the stream in chunks of {@link #CHUNK_SIZE}
+     * bytes. The static parts of the page are encoded once, and no string of the whole page or of the movie list is
+     * built, so the memory used does not depend on the number of movies.
+     *
+     * @param movies movies to render.
+     * @param out    stream receiving the markup. It is neither flushed nor closed.
+     */
+    public void writeMoviesHtml(final Movie[] movies, final OutputStream out) throws IOException {
+        final ChunkWriter chunk = new ChunkWriter(out);
+        chunk.write(HEADER);
+        for (final Movie movie : movies) {
+            chunk.write(ITEM_START);
+            chunk.writeDecimal(movie.getId());
+            chunk.write(ITEM_NAME);
+            chunk.writeUtf8(String.valueOf(movie.getMovieName()));
+            chunk.write(ITEM_END);
+        }
+        chunk.write(FOOTER);
+        chunk.flush();
+    }
+
+    /**
+     * Writes the same markup as {@link #writeMoviesHtml(Movie[], OutputStream)} from a {@link MovieCatalog}. The names
+     * are copied as stored, already encoded, and no object is created per movie.
+     *
+     * @param catalog movies to render.
+     * @param out     stream receiving the markup. It is neither flushed nor closed.
+     */
+    public void writeMoviesHtml(final MovieCatalog catalog, final OutputStream out) throws IOException {
+        final ChunkWriter chunk = new ChunkWriter(out);
+        chunk.write(HEADER);
+        for (int i = 0; i < catalog.size(); i++) {
+            chunk.write(ITEM_START);
+            chunk.writeDecimal(catalog.getId(i));
+            chunk.write(ITEM_NAME);
+            catalog.writeName(i, chunk);
+            chunk.write(ITEM_END);
+        }
+        chunk.write(FOOTER);
+        chunk.flush();
+    }
+
+    /**
+     * Renders the {@code movie-item} block of one movie, as {@link #writeMoviesHtml(MovieCatalog, OutputStream)} writes
+     * it, so that it can be kept and written again with {@link #writeMoviesHtml(byte[][], OutputStream)}.
+     *
+     * @return the UTF-8 encoded block.
+     */
+    public byte[] getMovieItemHtml(final MovieCatalog catalog, final int position) {
+        final byte[] id = Long.toString(catalog.getId(position)).getBytes(StandardCharsets.US_ASCII);
+        final byte[] item = new byte[ITEM_START.length + id.length + ITEM_NAME.length
+                + catalog.getNameLength(position) + ITEM_END.length];
+        int offset = copy(ITEM_START, item, 0);
+        offset = copy(id, item, offset);
+        offset = copy(ITEM_NAME, item, offset);
+        catalog.copyName(position, item, offset);
+        copy(ITEM_END, item, offset + catalog.getNameLength(position));
+        return item;
+    }
+
+    /**
+     * Writes the page around {@code movie-item} blocks rendered by {@link #getMovieItemHtml}. Nothing is formatted or
+     * encoded: the blocks are copied into chunks of {@link #CHUNK_SIZE} bytes, so each stream write carries many
+     * movies.
+     *
+     * @param items rendered blocks, in the order of the page.
+     * @param out   stream receiving the markup. It is neither flushed nor closed.
+     */
+    public void writeMoviesHtml(final byte[][] items, final OutputStream out) throws IOException {
+        final ChunkWriter chunk = new ChunkWriter(out);
+        chunk.write(HEADER);
+        for (final byte[] item : items) {
+            chunk.write(item);
+        }
+        chunk.write(FOOTER);
+        chunk.flush();
+    }
+
+    /**
+     * @param items rendered blocks, in the order of the page.
+     * @return the page around the blocks, like {@link #writeMoviesHtml(byte[][], OutputStream)} writes it, in an array
+     * of the exact size.
+     */
+    public byte[] getMoviesHtml(final byte[][] items) {
+        long length = HEADER.length + FOOTER.length;
+        for (final byte[] item : items) {
+            length += item.length;
+        }
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("The page does not fit in an array: " + length + " bytes");
+        }
+        final byte[] html = new byte[(int) length];
+        int offset = copy(HEADER, html, 0);
+        for (final byte[] item : items) {
+            offset = copy(item, html, offset);
+        }
+        copy(FOOTER, html, offset);
+        return html;
+    }
+
+    /**
+     * @return the offset in {@code target} after the copy.
+     */
+    private static int copy(final byte[] source, final byte[] target, final int offset) {
+        System.arraycopy(source, 0, target, offset, source.length);
+        return offset + source.length;
+    }
+
+    private static byte[] utf8(final String fragment) {
+        return fragment.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fixed-size buffer in front of the output stream that encodes strings and numbers to UTF-8 without allocating.
+     */
+    private static final class ChunkWriter extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int position;
+
+        private ChunkWriter(final OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(final byte[] bytes) throws IOException {
+            write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            if (length > buffer.length - position) {
+                flush();
+                if (length > buffer.length) {
+                    out.write(bytes, offset, length);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        private void writeDecimal(final long value) throws IOException {
+            // at most 19 digits and a sign
+            if (buffer.length - position < 20) {
+                flush();
+            }
+            if (value < 0) {
+                buffer[position++] = '-';
+            }
+            // digits are taken from the negative value, which unlike the positive one exists for Long.MIN_VALUE
+            long remaining = value < 0 ? value : -value;
+            final int start = position;
+            do {
+                buffer[position++] = (byte) ('0' - remaining % 10);
+                remaining /= 10;
+            } while (remaining != 0);
+            for (int low = start, high = position - 1; low < high; low++, high--) {
+                final byte digit = buffer[low];
+                buffer[low] = buffer[high];
+                buffer[high] = digit;
+            }
+        }
+
+        private void writeUtf8(final String text) throws IOException {
+            int offset = 0;
+            while (offset < text.length()) {
+                // room for a surrogate pair
+                if (buffer.length - position < 6) {
+                    flush();
+                }
+                int end = Integer.min(text.length(), offset + (buffer.length - position) / 3);
+                if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                    // a surrogate pair is encoded in one piece
+                    end--;
+                }
+                position = Encoder.encodeUtf8(text, offset, end, buffer, position);
+                offset = end;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (position > 0) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
 }
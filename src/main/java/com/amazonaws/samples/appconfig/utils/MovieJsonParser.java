@@ -0,0 +1,147 @@
+package com.amazonaws.samples.appconfig.utils;
+
+import com.amazonaws.samples.appconfig.movies.Movie;
+import com.amazonaws.samples.appconfig.movies.MovieCatalog;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decodes the "movies" array of the AppConfig configuration document with a streaming parser, so the document is read
+ * once and no intermediate string or JSON tree is built. Fields other than "id" and "movieName" are skipped.
+ */
+public class MovieJsonParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * @param json configuration content, e.g. {"movies":[{"id":1,"movieName":"Memento"}]}
+     * @return movies in document order
+     */
+    public Movie[] getMovies(final String json) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return toArray(parser);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error reading the movies configuration", e);
+        }
+    }
+
+    /**
+     * @param json configuration content in UTF-8, as returned by {@code SdkBytes.asInputStream()}.
+     * @return movies in document order
+     */
+    public Movie[] getMovies(final InputStream json) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return toArray(parser);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error reading the movies configuration", e);
+        }
+    }
+
+    /**
+     * Decodes the movies straight into a {@link MovieCatalog}: names go from the parser's buffer to the catalogue's
+     * UTF-8 array, and no {@link Movie} or {@code String} is created per movie.
+     *
+     * @param json configuration content in UTF-8, as returned by {@code SdkBytes.asInputStream()}.
+     * @return movies in document order
+     */
+    public MovieCatalog getMovieCatalog(final InputStream json) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            final MovieCatalog.Builder catalog = new MovieCatalog.Builder();
+            parseMovies(parser, (id, movieName) -> catalog.add(id, movieName, 0, movieName.length()));
+            return catalog.build();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error reading the movies configuration", e);
+        }
+    }
+
+    /**
+     * Hands every movie to the consumer as soon as it has been read, without collecting them.
+     *
+     * @param json     configuration content in UTF-8.
+     * @param consumer receives the movies in document order.
+     */
+    public void parseMovies(final InputStream json, final Consumer<Movie> consumer) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            parseMovies(parser, (id, movieName) -> consumer.accept(new Movie(id, movieName.toString())));
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error reading the movies configuration", e);
+        }
+    }
+
+    private static Movie[] toArray(final JsonParser parser) throws IOException {
+        final List<Movie> movies = new ArrayList<>();
+        parseMovies(parser, (id, movieName) -> movies.add(new Movie(id, movieName.toString())));
+        return movies.toArray(new Movie[0]);
+    }
+
+    private static void parseMovies(final JsonParser parser, final MovieSink sink) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Movies configuration is not a JSON object");
+        }
+        boolean found = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if ("movies".equals(field) && value == JsonToken.START_ARRAY) {
+                final StringBuilder movieName = new StringBuilder();
+                JsonToken token;
+                while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                    final long id = readMovie(parser, movieName);
+                    sink.accept(id, movieName);
+                }
+                if (token != JsonToken.END_ARRAY) {
+                    throw new IllegalArgumentException("Unexpected " + token + " in the movies array");
+                }
+                found = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (!found) {
+            throw new IllegalArgumentException("Movies configuration has no movies array");
+        }
+    }
+
+    /**
+     * @param movieName receives the name of the movie, read from the parser's buffer.
+     * @return the id of the movie.
+     */
+    private static long readMovie(final JsonParser parser, final StringBuilder movieName) throws IOException {
+        long id = 0;
+        boolean hasId = false;
+        boolean hasName = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if ("id".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                id = parser.getLongValue();
+                hasId = true;
+            } else if ("movieName".equals(field) && value == JsonToken.VALUE_STRING) {
+                movieName.setLength(0);
+                movieName.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                hasName = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (!hasId || !hasName) {
+            throw new IllegalArgumentException("Movie without a numeric id or a movieName");
+        }
+        return id;
+    }
+
+    /**
+     * Receives each movie as it is read. The name is only valid during the call.
+     */
+    private interface MovieSink {
+        void accept(long id, CharSequence movieName) throws IOException;
+    }
+}
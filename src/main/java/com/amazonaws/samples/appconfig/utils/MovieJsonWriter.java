@@ -0,0 +1,121 @@
+package com.amazonaws.samples.appconfig.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes a new version of the AppConfig configuration document with some movies renamed or added. The document is
+ * copied token by token with a streaming parser and generator, like {@link MovieJsonParser} reads it: fields other
+ * than the movies, such as feature flags, and fields of the movies other than "movieName" are kept as they are.
+ */
+public class MovieJsonWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * @param json       configuration content in UTF-8, e.g. {"movies":[{"id":1,"movieName":"Memento"}]}
+     * @param movieNames new name by movie id. Every movie with one of these ids is renamed, and the ids found in no
+     *                   movie are added at the end of the "movies" array, in the order of the map.
+     * @return the new content in UTF-8
+     */
+    public byte[] applyEdits(final InputStream json, final Map<Long, String> movieNames) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Map<Long, String> added = new LinkedHashMap<>(movieNames);
+        try (JsonParser parser = JSON_FACTORY.createParser(json);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("The configuration is not a JSON object");
+            }
+            generator.writeStartObject();
+            boolean hasMovies = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                generator.writeFieldName(field);
+                if ("movies".equals(field) && value == JsonToken.START_ARRAY) {
+                    hasMovies = true;
+                    copyMovies(parser, generator, movieNames, added);
+                } else {
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+            if (!hasMovies) {
+                generator.writeArrayFieldStart("movies");
+                writeMovies(generator, added);
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error writing the movies configuration", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Copies the "movies" array, from the token after its start, renaming the edited movies and removing them from
+     * {@code added}.
+     */
+    private static void copyMovies(final JsonParser parser,
+                                   final JsonGenerator generator,
+                                   final Map<Long, String> movieNames,
+                                   final Map<Long, String> added) throws IOException {
+        generator.writeStartArray();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                generator.copyCurrentStructure(parser);
+                continue;
+            }
+            generator.writeStartObject();
+            Long id = null;
+            String movieName = null;
+            boolean nameWritten = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if ("id".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    id = parser.getLongValue();
+                    generator.writeNumberField(field, id);
+                    added.remove(id);
+                } else if ("movieName".equals(field) && value == JsonToken.VALUE_STRING) {
+                    // written once the id is known, which may come after the name
+                    movieName = parser.getText();
+                    if (id != null) {
+                        generator.writeStringField(field, movieNames.getOrDefault(id, movieName));
+                        nameWritten = true;
+                    }
+                } else {
+                    generator.writeFieldName(field);
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+            if (!nameWritten) {
+                final String newName = id == null ? null : movieNames.get(id);
+                if (newName != null || movieName != null) {
+                    generator.writeStringField("movieName", newName != null ? newName : movieName);
+                }
+            }
+            generator.writeEndObject();
+        }
+        writeMovies(generator, added);
+        generator.writeEndArray();
+    }
+
+    private static void writeMovies(final JsonGenerator generator, final Map<Long, String> movies) throws IOException {
+        for (final Map.Entry<Long, String> movie : movies.entrySet()) {
+            generator.writeStartObject();
+            generator.writeNumberField("id", movie.getKey());
+            generator.writeStringField("movieName", movie.getValue());
+            generator.writeEndObject();
+        }
+    }
+}
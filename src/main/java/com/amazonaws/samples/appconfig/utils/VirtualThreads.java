@@ -0,0 +1,102 @@
+package com.amazonaws.samples.appconfig.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads when the JVM supports them (Java 21 and later). The service is compiled for Java 8, so the
+ * virtual thread API is looked up reflectively.
+ *
+ * <p>Code that runs on virtual threads must not block while holding a monitor: on Java 21 a virtual thread that blocks
+ * inside {@code synchronized} pins its carrier thread. The cache, the providers and the refresher use
+ * {@link java.util.concurrent.locks.ReentrantLock} and {@link java.util.concurrent.CompletableFuture} for that reason.
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL = method(Thread.class, "ofVirtual");
+    private static final Method NAME = method(classForName("java.lang.Thread$Builder"), "name", String.class, long.class);
+    private static final Method FACTORY = method(classForName("java.lang.Thread$Builder"), "factory");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR
+            = method(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+    private static final boolean SUPPORTED = probe();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether the JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * @param namePrefix prefix of the thread names, followed by a counter.
+     * @return a factory of virtual threads.
+     * @throws UnsupportedOperationException if the JVM does not support virtual threads.
+     */
+    public static ThreadFactory threadFactory(final String namePrefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+        }
+        final Object builder = invoke(NAME, invoke(OF_VIRTUAL, null), namePrefix, 0L);
+        return (ThreadFactory) invoke(FACTORY, builder);
+    }
+
+    /**
+     * @param namePrefix prefix of the thread names, followed by a counter.
+     * @return an executor that starts a new virtual thread for every task.
+     * @throws UnsupportedOperationException if the JVM does not support virtual threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(final String namePrefix) {
+        return (ExecutorService) invoke(NEW_THREAD_PER_TASK_EXECUTOR, null, threadFactory(namePrefix));
+    }
+
+    private static Object invoke(final Method method, final Object target, final Object... arguments) {
+        try {
+            return method.invoke(target, arguments);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (final InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * The API also exists as a preview on Java 19 and 20, where it fails unless preview features are enabled.
+     */
+    private static boolean probe() {
+        if (OF_VIRTUAL == null || NAME == null || FACTORY == null || NEW_THREAD_PER_TASK_EXECUTOR == null) {
+            return false;
+        }
+        try {
+            invoke(OF_VIRTUAL, null);
+            return true;
+        } catch (final RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static Class<?> classForName(final String name) {
+        try {
+            return Class.forName(name);
+        } catch (final ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method method(final Class<?> type, final String name, final Class<?>... parameterTypes) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.provider.AppConfigAgentProvider;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+import software.amazon.awssdk.services.appconfig.model.ResourceNotFoundException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class AppConfigAgentProviderTest {
+
+    private static final String MOVIES = "{\"movies\":[{\"id\":1,\"movieName\":\"Memento\"}]}";
+
+    private HttpServer agent;
+    private AppConfigAgentProvider provider;
+
+    @Before
+    public void setUp() throws IOException {
+        agent = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        agent.createContext("/applications/myApp/environments/dev/configurations/my Config", exchange -> {
+            final byte[] body = MOVIES.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Configuration-Version", "7");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        agent.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        agent.start();
+        provider = new AppConfigAgentProvider(
+                URI.create("http://localhost:" + agent.getAddress().getPort()), Duration.ofSeconds(5));
+    }
+
+    @After
+    public void tearDown() {
+        agent.stop(0);
+    }
+
+    @Test
+    public void testConfigurationIsReadFromTheAgent() {
+        GetConfigurationResponse response = provider.getConfiguration(new ConfigurationKey("myApp", "dev", "my Config"), null);
+
+        assertEquals(MOVIES, response.content().asUtf8String());
+        assertEquals("7", response.configurationVersion());
+        assertEquals("application/json", response.contentType());
+    }
+
+    @Test
+    public void testUnknownConfigurationIsNotFound() {
+        try {
+            provider.getConfiguration(new ConfigurationKey("myApp", "dev", "other"), null);
+            fail("The agent has no such configuration");
+        } catch (ResourceNotFoundException expected) {
+            // the next provider of a chain is asked
+        }
+    }
+
+    @Test
+    public void testStoppedAgentFails() {
+        agent.stop(0);
+        try {
+            provider.getConfiguration(new ConfigurationKey("myApp", "dev", "my Config"), null);
+            fail("The agent is not running");
+        } catch (UncheckedIOException expected) {
+            // the chain skips the agent for a while
+        }
+    }
+}
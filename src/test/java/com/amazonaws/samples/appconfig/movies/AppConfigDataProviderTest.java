@@ -0,0 +1,210 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.provider.AppConfigDataProvider;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+import software.amazon.awssdk.services.appconfigdata.AppConfigDataAsyncClient;
+import software.amazon.awssdk.services.appconfigdata.model.GetLatestConfigurationRequest;
+import software.amazon.awssdk.services.appconfigdata.model.GetLatestConfigurationResponse;
+import software.amazon.awssdk.services.appconfigdata.model.StartConfigurationSessionRequest;
+import software.amazon.awssdk.services.appconfigdata.model.StartConfigurationSessionResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class AppConfigDataProviderTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+    private static final String MOVIES_V1 = "{\"movies\":[{\"id\":1,\"movieName\":\"Memento\"}]}";
+    private static final String MOVIES_V2 = "{\"movies\":[{\"id\":1,\"movieName\":\"Stardust\"}]}";
+
+    private FakeAppConfigDataClient fakeService;
+    private MutableClock clock;
+    private AppConfigDataProvider provider;
+
+    @Before
+    public void setUp() {
+        fakeService = new FakeAppConfigDataClient(MOVIES_V1, 60);
+        clock = new MutableClock();
+        provider = new AppConfigDataProvider(fakeService, Duration.ofSeconds(15), clock);
+    }
+
+    @Test
+    public void testFirstPollReturnsConfiguration() {
+        GetConfigurationResponse response = provider.getConfiguration(KEY, null);
+
+        assertEquals(MOVIES_V1, response.content().asUtf8String());
+        assertEquals(1, fakeService.getSessions());
+        assertEquals(Duration.ofSeconds(60), provider.getPollInterval(KEY));
+    }
+
+    @Test
+    public void testServiceIsNotPolledBeforeSuggestedInterval() {
+        GetConfigurationResponse first = provider.getConfiguration(KEY, null);
+        clock.advance(Duration.ofSeconds(59));
+
+        GetConfigurationResponse second = provider.getConfiguration(KEY, first.configurationVersion());
+
+        assertEquals(1, fakeService.getPolls());
+        assertEquals(first.configurationVersion(), second.configurationVersion());
+    }
+
+    @Test
+    public void testUnchangedConfigurationTransfersNoContent() {
+        GetConfigurationResponse first = provider.getConfiguration(KEY, null);
+        long bytesAfterFirstPoll = fakeService.getBytesReturned();
+
+        for (int i = 0; i < 10; i++) {
+            clock.advance(Duration.ofSeconds(60));
+            assertEquals(first.configurationVersion(),
+                    provider.getConfiguration(KEY, first.configurationVersion()).configurationVersion());
+        }
+
+        assertEquals(11, fakeService.getPolls());
+        assertEquals(1, fakeService.getSessions());
+        assertEquals(bytesAfterFirstPoll, fakeService.getBytesReturned());
+    }
+
+    @Test
+    public void testDeployedChangeIsPickedUpWithNewVersion() {
+        GetConfigurationResponse first = provider.getConfiguration(KEY, null);
+        fakeService.deploy(MOVIES_V2);
+        clock.advance(Duration.ofSeconds(60));
+
+        GetConfigurationResponse second = provider.getConfiguration(KEY, first.configurationVersion());
+
+        assertEquals(MOVIES_V2, second.content().asUtf8String());
+        assertNotEquals(first.configurationVersion(), second.configurationVersion());
+    }
+
+    @Test
+    public void testExpiredTokenStartsNewSession() {
+        GetConfigurationResponse first = provider.getConfiguration(KEY, null);
+        fakeService.expireTokens();
+        clock.advance(Duration.ofSeconds(60));
+
+        GetConfigurationResponse second = provider.getConfiguration(KEY, first.configurationVersion());
+
+        assertEquals(2, fakeService.getSessions());
+        assertEquals(first.configurationVersion(), second.configurationVersion());
+    }
+
+    @Test
+    public void testAppConfigUtilityCachesForSuggestedPollInterval() {
+        AppConfigUtility appConfigUtility = new AppConfigUtility(null, provider, new ConfigurationCache(), Duration.ZERO);
+
+        appConfigUtility.getConfiguration(KEY);
+        GetConfigurationResponse response = appConfigUtility.getConfiguration(KEY);
+
+        assertEquals(MOVIES_V1, response.content().asUtf8String());
+        assertEquals(1, fakeService.getPolls());
+    }
+
+    @Test
+    public void testAsyncPollsShareSessionWithBlockingPolls() {
+        AppConfigDataProvider asyncProvider = new AppConfigDataProvider(fakeService, new FakeAppConfigDataAsyncClient(fakeService),
+                Duration.ofSeconds(15), clock);
+
+        GetConfigurationResponse first = asyncProvider.getConfigurationAsync(KEY, null).join();
+        clock.advance(Duration.ofSeconds(30));
+        GetConfigurationResponse cached = asyncProvider.getConfigurationAsync(KEY, first.configurationVersion()).join();
+        fakeService.deploy(MOVIES_V2);
+        clock.advance(Duration.ofSeconds(30));
+        GetConfigurationResponse second = asyncProvider.getConfiguration(KEY, first.configurationVersion());
+
+        assertEquals(MOVIES_V1, first.content().asUtf8String());
+        assertEquals(first.configurationVersion(), cached.configurationVersion());
+        assertEquals(MOVIES_V2, second.content().asUtf8String());
+        assertEquals(1, fakeService.getSessions());
+        assertEquals(2, fakeService.getPolls());
+    }
+
+    @Test
+    public void testAsyncPollWithExpiredTokenStartsNewSession() {
+        AppConfigDataProvider asyncProvider = new AppConfigDataProvider(fakeService, new FakeAppConfigDataAsyncClient(fakeService),
+                Duration.ofSeconds(15), clock);
+        GetConfigurationResponse first = asyncProvider.getConfigurationAsync(KEY, null).join();
+        fakeService.expireTokens();
+        clock.advance(Duration.ofSeconds(60));
+
+        GetConfigurationResponse second = asyncProvider.getConfigurationAsync(KEY, first.configurationVersion()).join();
+
+        assertEquals(2, fakeService.getSessions());
+        assertEquals(first.configurationVersion(), second.configurationVersion());
+    }
+
+    /**
+     * Asynchronous view of a {@link FakeAppConfigDataClient}, completing every call before returning.
+     */
+    static class FakeAppConfigDataAsyncClient implements AppConfigDataAsyncClient {
+        private final FakeAppConfigDataClient delegate;
+
+        FakeAppConfigDataAsyncClient(final FakeAppConfigDataClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletableFuture<StartConfigurationSessionResponse> startConfigurationSession(
+                final StartConfigurationSessionRequest request) {
+            return CompletableFuture.completedFuture(delegate.startConfigurationSession(request));
+        }
+
+        @Override
+        public CompletableFuture<GetLatestConfigurationResponse> getLatestConfiguration(
+                final GetLatestConfigurationRequest request) {
+            final CompletableFuture<GetLatestConfigurationResponse> future = new CompletableFuture<>();
+            try {
+                future.complete(delegate.getLatestConfiguration(request));
+            } catch (final RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Clock that only moves when told to.
+     */
+    static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2020-01-01T00:00:00Z");
+
+        void advance(final Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.provider.ConfigurationProvider;
+import com.amazonaws.samples.appconfig.provider.MeteredConfigurationProvider;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.appconfig.AppConfigClient;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class AppConfigMetricsTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+
+    @Mock
+    private ConfigurationProvider provider;
+
+    @Mock
+    private AppConfigClient appConfigClient;
+
+    private MeterRegistry registry;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        registry = new SimpleMeterRegistry();
+        when(provider.getPollInterval(KEY)).thenReturn(Duration.ZERO);
+    }
+
+    @Test
+    public void testFetchesArePublishedPerKey() {
+        when(provider.getConfiguration(KEY, null)).thenReturn(response("1", "{\"movies\":[]}"));
+        when(provider.getConfiguration(KEY, "1"))
+                .thenReturn(response("1", null))
+                .thenReturn(response("2", "{\"movies\":[{}]}"));
+        MeteredConfigurationProvider metered = new MeteredConfigurationProvider(provider, registry);
+
+        metered.getConfiguration(KEY, null);
+        metered.getConfiguration(KEY, "1");
+        metered.getConfiguration(KEY, "1");
+
+        assertEquals(3, registry.get("appconfig.fetch").tag("configuration", "myConfig").tag("outcome", "success")
+                .timer().count());
+        assertEquals(2, registry.get("appconfig.payload.size").summary().count());
+        assertEquals(13 + 15, registry.get("appconfig.payload.size").summary().totalAmount(), 0.0);
+        assertEquals(1, registry.get("appconfig.version.changes").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testThrottledFetchesAreCountedSeparately() {
+        when(provider.getConfiguration(KEY, null))
+                .thenThrow(SdkServiceException.builder().statusCode(429).message("Rate exceeded").build())
+                .thenThrow(new IllegalStateException("boom"));
+        MeteredConfigurationProvider metered = new MeteredConfigurationProvider(provider, registry);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                metered.getConfiguration(KEY, null);
+                fail();
+            } catch (RuntimeException expected) {
+                // rethrown unchanged
+            }
+        }
+
+        assertEquals(1, registry.get("appconfig.fetch").tag("outcome", "throttled").timer().count());
+        assertEquals(1, registry.get("appconfig.fetch").tag("outcome", "error")
+                .tag("exception", "IllegalStateException").timer().count());
+    }
+
+    @Test
+    public void testCacheCountersArePublished() {
+        ConfigurationCache cache = new ConfigurationCache();
+        when(provider.getConfiguration(KEY, null)).thenReturn(response("1", "{\"movies\":[]}"));
+        AppConfigUtility appConfigUtility = new AppConfigUtility(appConfigClient, provider, cache, Duration.ofSeconds(60));
+        new AppConfigMetrics(cache, null).bindTo(registry);
+
+        appConfigUtility.getConfiguration(KEY);
+        appConfigUtility.getConfiguration(KEY);
+        appConfigUtility.getConfiguration(KEY);
+
+        assertEquals(2, registry.get("appconfig.cache.gets").tag("result", "hit").functionCounter().count(), 0.0);
+        assertEquals(1, registry.get("appconfig.cache.gets").tag("result", "miss").functionCounter().count(), 0.0);
+        assertEquals(1, registry.get("appconfig.cache.size").gauge().value(), 0.0);
+        assertEquals(13, registry.get("appconfig.cache.payload").gauge().value(), 0.0);
+    }
+
+    private static GetConfigurationResponse response(final String version, final String content) {
+        return GetConfigurationResponse.builder()
+                .content(content == null ? null : SdkBytes.fromUtf8String(content))
+                .configurationVersion(version)
+                .build();
+    }
+}
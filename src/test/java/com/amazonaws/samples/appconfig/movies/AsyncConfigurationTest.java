@@ -0,0 +1,208 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.model.ConfigurationSnapshot;
+import com.amazonaws.samples.appconfig.provider.ConfigurationProvider;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+import software.amazon.awssdk.services.appconfig.model.ResourceNotFoundException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Requests on the non-blocking path must not wait for AppConfig, and must share loads with each other and with the
+ * blocking path.
+ */
+public class AsyncConfigurationTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+    private static final String MOVIES_JSON = "{\"movies\":[{\"id\":1,\"movieName\":\"Memento\"}]}";
+
+    private PendingProvider provider;
+    private AppConfigUtility appConfigUtility;
+
+    @Before
+    public void setUp() {
+        provider = new PendingProvider();
+        appConfigUtility = new AppConfigUtility(null, provider, new ConfigurationCache(), Duration.ZERO);
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneFetchWithoutBlocking() {
+        List<CompletableFuture<GetConfigurationResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(appConfigUtility.getConfigurationAsync(KEY));
+        }
+
+        assertEquals(1, provider.fetches.size());
+        for (CompletableFuture<GetConfigurationResponse> result : results) {
+            assertFalse(result.isDone());
+        }
+
+        provider.fetches.poll().complete(response("1"));
+
+        for (CompletableFuture<GetConfigurationResponse> result : results) {
+            assertEquals(MOVIES_JSON, result.join().content().asUtf8String());
+        }
+    }
+
+    @Test
+    public void testBlockingRequestWaitsForRunningAsyncFetch() throws Exception {
+        CompletableFuture<GetConfigurationResponse> asyncResult = appConfigUtility.getConfigurationAsync(KEY);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<GetConfigurationResponse> blockingResult = executor.submit(() -> appConfigUtility.getConfiguration(KEY));
+            Thread.sleep(100);
+            assertFalse(blockingResult.isDone());
+
+            provider.fetches.poll().complete(response("1"));
+
+            assertEquals("1", blockingResult.get(5, TimeUnit.SECONDS).configurationVersion());
+            assertEquals("1", asyncResult.join().configurationVersion());
+            assertEquals(0, provider.syncFetches);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedFetchServesCachedConfiguration() {
+        CompletableFuture<GetConfigurationResponse> first = appConfigUtility.getConfigurationAsync(KEY);
+        provider.fetches.poll().complete(response("1"));
+        first.join();
+
+        CompletableFuture<GetConfigurationResponse> second = appConfigUtility.getConfigurationAsync(KEY);
+        provider.fetches.poll().completeExceptionally(new IllegalStateException("no network"));
+
+        assertEquals("1", second.join().configurationVersion());
+    }
+
+    @Test
+    public void testFailedFetchWithNothingCachedFailsTheFuture() {
+        CompletableFuture<GetConfigurationResponse> result = appConfigUtility.getConfigurationAsync(KEY);
+        provider.fetches.poll().completeExceptionally(ResourceNotFoundException.builder().message("missing").build());
+
+        assertTrue(result.isCompletedExceptionally());
+        try {
+            result.join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof ResourceNotFoundException);
+        }
+    }
+
+    @Test
+    public void testBatchFetchesMissesInParallelUpToTheLimit() {
+        ConfigurationKey[] keys = new ConfigurationKey[4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new ConfigurationKey("myApp", "dev", "config" + i);
+        }
+        CompletableFuture<ConfigurationSnapshot> result = appConfigUtility.getConfigurationsAsync(Arrays.asList(keys), 2);
+
+        assertEquals(2, provider.fetches.size());
+        provider.fetches.poll().complete(response("1"));
+        assertEquals(2, provider.fetches.size());
+        provider.fetches.poll().complete(response("2"));
+        provider.fetches.poll().complete(response("3"));
+        assertFalse(result.isDone());
+        provider.fetches.poll().complete(response("4"));
+
+        ConfigurationSnapshot snapshot = result.join();
+        assertTrue(snapshot.isComplete());
+        assertEquals(Arrays.asList(keys), new ArrayList<>(snapshot.getConfigurations().keySet()));
+        assertEquals(Arrays.asList(keys), provider.fetchedKeys);
+    }
+
+    @Test
+    public void testBatchServesCachedKeysAndRecordsFailuresPerKey() {
+        appConfigUtility = new AppConfigUtility(null, provider, new ConfigurationCache(), Duration.ofMinutes(1));
+        appConfigUtility.getConfigurationAsync(KEY);
+        provider.fetches.poll().complete(response("1"));
+        provider.fetchedKeys.clear();
+
+        ConfigurationKey missing = new ConfigurationKey("myApp", "dev", "missing");
+        CompletableFuture<ConfigurationSnapshot> result
+                = appConfigUtility.getConfigurationsAsync(Arrays.asList(missing, KEY, missing), 4);
+
+        assertEquals(Arrays.asList(missing), provider.fetchedKeys);
+        provider.fetches.poll().completeExceptionally(ResourceNotFoundException.builder().message("missing").build());
+
+        ConfigurationSnapshot snapshot = result.join();
+        assertFalse(snapshot.isComplete());
+        assertEquals("1", snapshot.get(KEY).configurationVersion());
+        try {
+            snapshot.get(missing);
+            fail();
+        } catch (ResourceNotFoundException e) {
+            assertEquals(Arrays.asList(missing), new ArrayList<>(snapshot.getFailures().keySet()));
+        }
+    }
+
+    @Test
+    public void testBatchRecordsKeyWithoutConfigurationAsFailure() {
+        ConfigurationKey empty = new ConfigurationKey("myApp", "dev", "empty");
+        CompletableFuture<ConfigurationSnapshot> result
+                = appConfigUtility.getConfigurationsAsync(Arrays.asList(empty, KEY), 2);
+
+        // a first fetch without content leaves the key with neither a configuration nor an exception
+        provider.fetches.poll().complete(GetConfigurationResponse.builder().configurationVersion("1").build());
+        provider.fetches.poll().complete(response("1"));
+
+        ConfigurationSnapshot snapshot = result.join();
+        assertFalse(snapshot.isComplete());
+        assertEquals(Arrays.asList(KEY), new ArrayList<>(snapshot.getConfigurations().keySet()));
+        assertTrue(snapshot.getFailures().get(empty) instanceof IllegalStateException);
+    }
+
+    private static GetConfigurationResponse response(final String version) {
+        return GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String(MOVIES_JSON))
+                .configurationVersion(version)
+                .build();
+    }
+
+    /**
+     * Provider whose asynchronous fetches complete only when the test completes them.
+     */
+    private static class PendingProvider implements ConfigurationProvider {
+        private final ConcurrentLinkedQueue<CompletableFuture<GetConfigurationResponse>> fetches
+                = new ConcurrentLinkedQueue<>();
+        private final List<ConfigurationKey> fetchedKeys = new ArrayList<>();
+        private volatile int syncFetches;
+
+        @Override
+        public GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey,
+                                                         final String currentVersion) {
+            syncFetches++;
+            return response("sync");
+        }
+
+        @Override
+        public CompletableFuture<GetConfigurationResponse> getConfigurationAsync(final ConfigurationKey configurationKey,
+                                                                                 final String currentVersion) {
+            final CompletableFuture<GetConfigurationResponse> fetch = new CompletableFuture<>();
+            fetchedKeys.add(configurationKey);
+            fetches.add(fetch);
+            return fetch;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.cache.ConfigurationCacheItem;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+import software.amazon.awssdk.services.appconfig.model.ResourceNotFoundException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ConfigurationCacheTest {
+
+    private static final ConfigurationKey KEY_A = new ConfigurationKey("myApp", "dev", "a");
+    private static final ConfigurationKey KEY_B = new ConfigurationKey("myApp", "dev", "b");
+    private static final ConfigurationKey KEY_C = new ConfigurationKey("myApp", "dev", "c");
+
+    private AppConfigDataProviderTest.MutableClock clock;
+
+    @Before
+    public void setUp() {
+        clock = new AppConfigDataProviderTest.MutableClock();
+    }
+
+    @Test
+    public void testLeastRecentlyReadEntryIsEvictedWhenFull() {
+        ConfigurationCache cache = new ConfigurationCache(2, Long.MAX_VALUE, null, null, clock);
+        cache.put(KEY_A, item(10));
+        clock.advance(Duration.ofSeconds(1));
+        cache.put(KEY_B, item(10));
+        clock.advance(Duration.ofSeconds(1));
+        cache.get(KEY_A);
+
+        cache.put(KEY_C, item(10));
+
+        assertNotNull(cache.get(KEY_A));
+        assertNull(cache.get(KEY_B));
+        assertNotNull(cache.get(KEY_C));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testEntriesAreEvictedWhenPayloadsExceedMaxSize() {
+        ConfigurationCache cache = new ConfigurationCache(100, 25, null, null, clock);
+        cache.put(KEY_A, item(10));
+        clock.advance(Duration.ofSeconds(1));
+        cache.put(KEY_B, item(10));
+        assertEquals(20, cache.getWeightInBytes());
+
+        cache.put(KEY_C, item(10));
+
+        assertNull(cache.peek(KEY_A));
+        assertEquals(20, cache.getWeightInBytes());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testReplacingAnEntryUpdatesItsSize() {
+        ConfigurationCache cache = new ConfigurationCache();
+        cache.put(KEY_A, item(10));
+        cache.put(KEY_A, item(4));
+
+        assertEquals(4, cache.getWeightInBytes());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testNegativeEntriesExpireEvenWhenRefreshed() {
+        ConfigurationCache cache = new ConfigurationCache(100, Long.MAX_VALUE, Duration.ofMinutes(5), null, clock);
+        cache.put(KEY_A, notFound());
+        clock.advance(Duration.ofMinutes(3));
+        cache.put(KEY_A, notFound());
+        assertNotNull(cache.get(KEY_A));
+
+        clock.advance(Duration.ofMinutes(2));
+
+        assertNull(cache.get(KEY_A));
+        assertEquals(1, cache.getExpirationCount());
+    }
+
+    @Test
+    public void testIdleEntriesAreRemovedOnCleanUp() {
+        ConfigurationCache cache = new ConfigurationCache(100, Long.MAX_VALUE, null, Duration.ofMinutes(10), clock);
+        cache.put(KEY_A, item(10));
+        cache.put(KEY_B, item(10));
+        clock.advance(Duration.ofMinutes(6));
+        cache.get(KEY_B);
+        clock.advance(Duration.ofMinutes(6));
+
+        cache.cleanUp();
+
+        assertNull(cache.peek(KEY_A));
+        assertNotNull(cache.peek(KEY_B));
+        assertEquals(10, cache.getWeightInBytes());
+    }
+
+    @Test
+    public void testReadsAreCountedAsHitsAndMisses() {
+        ConfigurationCache cache = new ConfigurationCache();
+        cache.get(KEY_A);
+        cache.put(KEY_A, item(10));
+        cache.get(KEY_A);
+        cache.get(KEY_A);
+        cache.peek(KEY_B);
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testChangeListenerIsCalledOncePerVersion() {
+        ConfigurationCache cache = new ConfigurationCache();
+        List<String> versions = new ArrayList<>();
+        cache.addChangeListener(KEY_A, (key, configuration) -> versions.add(configuration.configurationVersion()),
+                Runnable::run);
+
+        ConfigurationCacheItem<GetConfigurationResponse> first = item(10, "1");
+        cache.put(KEY_A, first);
+        cache.put(KEY_A, first);
+        cache.put(KEY_A, item(10, "1"));
+        cache.put(KEY_B, item(10, "2"));
+        cache.put(KEY_A, notFound());
+        cache.put(KEY_A, item(10, "2"));
+
+        assertEquals(Arrays.asList("1", "2"), versions);
+    }
+
+    @Test
+    public void testChangesAreCoalescedUntilTheListenerRuns() {
+        ConfigurationCache cache = new ConfigurationCache();
+        cache.put(KEY_A, item(10, "1"));
+        ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        List<String> versions = new ArrayList<>();
+        cache.addChangeListener(KEY_A, (key, configuration) -> versions.add(configuration.configurationVersion()),
+                tasks::add);
+
+        cache.put(KEY_A, item(10, "2"));
+        cache.put(KEY_A, item(10, "3"));
+        assertEquals(1, tasks.size());
+        tasks.poll().run();
+        cache.put(KEY_A, item(10, "4"));
+        tasks.poll().run();
+
+        assertEquals(Arrays.asList("3", "4"), versions);
+    }
+
+    private static ConfigurationCacheItem<GetConfigurationResponse> item(final int size) {
+        return item(size, "1");
+    }
+
+    private static ConfigurationCacheItem<GetConfigurationResponse> item(final int size, final String version) {
+        ConfigurationCacheItem<GetConfigurationResponse> item = new ConfigurationCacheItem<>(Duration.ofSeconds(60));
+        item.setValue(GetConfigurationResponse.builder()
+                .content(SdkBytes.fromByteArray(new byte[size]))
+                .configurationVersion(version)
+                .build());
+        return item;
+    }
+
+    private static ConfigurationCacheItem<GetConfigurationResponse> notFound() {
+        ConfigurationCacheItem<GetConfigurationResponse> item = new ConfigurationCacheItem<>(Duration.ofSeconds(60));
+        item.setException(ResourceNotFoundException.builder().message("not found").build());
+        return item;
+    }
+}
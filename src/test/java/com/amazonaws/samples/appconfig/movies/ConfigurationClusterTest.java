@@ -0,0 +1,383 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.provider.AppConfigDataProvider;
+import com.amazonaws.samples.appconfig.provider.ConfigurationCluster;
+import com.amazonaws.samples.appconfig.provider.ConfigurationProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConfigurationClusterTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+    private static final String MOVIES_V1 = "{\"movies\":[{\"id\":1,\"movieName\":\"Memento\"}]}";
+    private static final String MOVIES_V2 = "{\"movies\":[{\"id\":1,\"movieName\":\"Stardust\"}]}";
+    private static final String SECRET = "cluster-secret";
+
+    private final FakeAppConfigDataClient appConfig = new FakeAppConfigDataClient(MOVIES_V1, 0);
+    private final List<ConfigurationCluster> members = new ArrayList<>();
+    private final List<CountingProvider> providers = new ArrayList<>();
+    private final Set<URI> updated = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() {
+        final List<URI> uris = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final CountingProvider provider = new CountingProvider(new AppConfigDataProvider(appConfig, null));
+            final ConfigurationCluster member = member(provider);
+            member.setUpdateListener(key -> updated.add(member.getUri()));
+            providers.add(provider);
+            members.add(member);
+            uris.add(member.getUri());
+        }
+        for (final ConfigurationCluster member : members) {
+            member.setPeers(uris);
+            member.start();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        members.forEach(ConfigurationCluster::close);
+    }
+
+    private ConfigurationCluster member(final ConfigurationProvider provider) {
+        return member(provider, SECRET);
+    }
+
+    private ConfigurationCluster member(final ConfigurationProvider provider, final String secret) {
+        final ConfigurationCluster member = new ConfigurationCluster(provider,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                null,
+                Duration.ofMillis(100),
+                Duration.ofMillis(50),
+                Duration.ofMillis(1000),
+                secret,
+                Executors.newScheduledThreadPool(4),
+                Clock.systemDefaultZone());
+        return member;
+    }
+
+    @Test
+    public void testOnlyTheLeaderPollsAndPushesNewVersions() throws InterruptedException {
+        final int leader = awaitLeader();
+        awaitAll(MOVIES_V1);
+        // once the leader confirmed their version, the followers stop polling
+        Thread.sleep(300);
+        final int[] polls = polls();
+        for (int i = 0; i < 10; i++) {
+            read();
+            Thread.sleep(20);
+        }
+        for (int i = 0; i < members.size(); i++) {
+            if (i != leader) {
+                assertEquals("follower " + i + " polled", polls[i], providers.get(i).polls.get());
+            }
+        }
+        assertTrue(providers.get(leader).polls.get() > polls[leader]);
+
+        appConfig.deploy(MOVIES_V2);
+        awaitAll(MOVIES_V2);
+
+        for (int i = 0; i < members.size(); i++) {
+            if (i != leader) {
+                assertEquals("follower " + i + " polled", polls[i], providers.get(i).polls.get());
+                final URI follower = members.get(i).getUri();
+                await(() -> updated.contains(follower), "the update listener of follower " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testFollowersTakeOverWhenTheLeaderGoesSilent() throws InterruptedException {
+        final int leader = awaitLeader();
+        final URI leaderUri = members.get(leader).getUri();
+        awaitAll(MOVIES_V1);
+
+        members.get(leader).close();
+        members.remove(leader);
+        providers.remove(leader);
+        appConfig.deploy(MOVIES_V2);
+
+        // served by direct polls once the leader has been silent for the silence timeout
+        awaitAll(MOVIES_V2);
+        final int newLeader = awaitLeader();
+        assertNotEquals(leaderUri, members.get(newLeader).getUri());
+
+        // the new leader polls for the remaining follower
+        Thread.sleep(300);
+        final int follower = 1 - newLeader;
+        final int polls = providers.get(follower).polls.get();
+        appConfig.deploy(MOVIES_V1);
+        awaitAll(MOVIES_V1);
+        assertEquals(polls, providers.get(follower).polls.get());
+    }
+
+    @Test
+    public void testConcurrentReadsShareOnePoll() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingProvider provider = new CountingProvider((key, version) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return GetConfigurationResponse.builder()
+                    .content(SdkBytes.fromUtf8String(MOVIES_V1))
+                    .configurationVersion("1")
+                    .build();
+        });
+        final ConfigurationCluster single = member(provider);
+        final ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<GetConfigurationResponse>> reads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                reads.add(readers.submit(() -> single.getProvider().getConfiguration(KEY, null)));
+            }
+            await(() -> provider.polls.get() == 1, "the first poll");
+            // the other readers wait for the poll in flight rather than poll again
+            Thread.sleep(100);
+            release.countDown();
+            for (final Future<GetConfigurationResponse> read : reads) {
+                assertEquals(MOVIES_V1, read.get(5, TimeUnit.SECONDS).content().asUtf8String());
+            }
+            assertEquals(1, provider.polls.get());
+        } finally {
+            readers.shutdownNow();
+            single.close();
+        }
+    }
+
+    @Test
+    public void testForgedPushIsRefused() throws Exception {
+        final int leader = awaitLeader();
+        awaitAll(MOVIES_V1);
+        final int follower = (leader + 1) % members.size();
+        final byte[] push = push(members.get(leader).getUri(), MOVIES_V2);
+
+        assertEquals(HttpURLConnection.HTTP_FORBIDDEN, post(members.get(follower).getUri(), push, null));
+        assertEquals(HttpURLConnection.HTTP_FORBIDDEN, post(members.get(follower).getUri(), push,
+                Base64.getEncoder().encodeToString(new byte[32])));
+
+        Thread.sleep(100);
+        assertEquals(MOVIES_V1, read().get(follower));
+    }
+
+    @Test
+    public void testReplayedOrStaleMessageIsRefused() throws Exception {
+        awaitLeader();
+        final URI follower = members.get(0).getUri();
+        final URI sender = members.get(1).getUri();
+        final long now = System.currentTimeMillis();
+        // newer than every message the sender sent so far
+        final byte[] message = message(sender, now, TimeUnit.MILLISECONDS.toMicros(now) + 1000000, null);
+
+        assertEquals(HttpURLConnection.HTTP_NO_CONTENT, post(follower, message, sign(message)));
+        assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, post(follower, message, sign(message)));
+
+        final byte[] stale = message(sender, now - 5000, Long.MAX_VALUE, null);
+        assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, post(follower, stale, sign(stale)));
+    }
+
+    @Test
+    public void testOversizedMessageIsRefusedBeforeItIsRead() throws Exception {
+        final URI member = members.get(0).getUri();
+        try (Socket socket = new Socket(member.getHost(), member.getPort())) {
+            socket.setSoTimeout(5000);
+            final OutputStream out = socket.getOutputStream();
+            out.write(("POST " + ConfigurationCluster.PATH + " HTTP/1.1\r\nHost: " + member.getHost()
+                    + "\r\nContent-Length: 100000000\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            final String statusLine = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+            assertEquals("HTTP/1.1 413 Request Entity Too Large", statusLine);
+        }
+    }
+
+    @Test
+    public void testPushFromAnotherAddressThanTheSenderIsRefusedWithoutSecret() throws Exception {
+        final ConfigurationCluster single = member(new CountingProvider(new AppConfigDataProvider(appConfig, null)), null);
+        try {
+            final URI peer = URI.create("http://192.0.2.1:7070");
+            single.setPeers(Collections.singletonList(peer));
+            single.start();
+
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, post(single.getUri(), push(peer, MOVIES_V2), null));
+        } finally {
+            single.close();
+        }
+    }
+
+    /**
+     * @return a push of the content as the given sender, in the layout of the cluster messages.
+     */
+    private static byte[] push(final URI sender, final String content) throws IOException {
+        return message(sender, System.currentTimeMillis(), TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()),
+                content);
+    }
+
+    /**
+     * @param content content pushed for {@link #KEY}, or null for a message listing no key.
+     */
+    private static byte[] message(final URI sender, final long sentTime, final long sequence, final String content)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(0x41434c55);
+        data.writeUTF(sender.toString());
+        data.writeLong(sentTime);
+        data.writeLong(sequence);
+        data.writeBoolean(false);
+        if (content == null) {
+            data.writeInt(0);
+            data.flush();
+            return out.toByteArray();
+        }
+        data.writeInt(1);
+        data.writeUTF(KEY.getApplication());
+        data.writeUTF(KEY.getEnvironment());
+        data.writeUTF(KEY.getConfiguration());
+        data.writeUTF("forged");
+        data.writeBoolean(false);
+        data.writeBoolean(true);
+        data.writeUTF("application/json");
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+        data.flush();
+        return out.toByteArray();
+    }
+
+    private static String sign(final byte[] message) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return Base64.getEncoder().encodeToString(mac.doFinal(message));
+    }
+
+    private static int post(final URI member, final byte[] message, final String signature) throws IOException {
+        final HttpURLConnection connection
+                = (HttpURLConnection) member.resolve(ConfigurationCluster.PATH).toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (signature != null) {
+            connection.setRequestProperty(ConfigurationCluster.SIGNATURE_HEADER, signature);
+        }
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(message);
+        }
+        return connection.getResponseCode();
+    }
+
+    /**
+     * @return the index of the member that every member agrees leads the key. A member that has heard from nobody yet
+     * leads every key itself, so the members only agree once the leader has been heard by all, and a member that was
+     * closed stays the leader until the silence timeout.
+     */
+    private int awaitLeader() throws InterruptedException {
+        await(() -> {
+            read();
+            final URI leader = members.get(0).getLeader(KEY);
+            return indexOf(leader) >= 0 && members.stream().allMatch(member -> member.getLeader(KEY).equals(leader));
+        }, "an agreed leader");
+        return indexOf(members.get(0).getLeader(KEY));
+    }
+
+    private int indexOf(final URI uri) {
+        for (int i = 0; i < members.size(); i++) {
+            if (members.get(i).getUri().equals(uri)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void awaitAll(final String content) throws InterruptedException {
+        await(() -> read().stream().allMatch(content::equals), "all members to serve " + content);
+    }
+
+    private List<String> read() {
+        final List<String> contents = new ArrayList<>();
+        for (final ConfigurationCluster member : members) {
+            final GetConfigurationResponse response = member.getProvider().getConfiguration(KEY, null);
+            contents.add(response.content().asUtf8String());
+        }
+        return contents;
+    }
+
+    private int[] polls() {
+        final int[] polls = new int[providers.size()];
+        for (int i = 0; i < polls.length; i++) {
+            polls[i] = providers.get(i).polls.get();
+        }
+        return polls;
+    }
+
+    private static void await(final BooleanSupplier condition, final String description) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            if (condition.getAsBoolean()) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("Timed out waiting for " + description);
+    }
+
+    private static class CountingProvider implements ConfigurationProvider {
+        private final ConfigurationProvider delegate;
+        private final AtomicInteger polls = new AtomicInteger();
+
+        CountingProvider(final ConfigurationProvider delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey, final String currentVersion) {
+            polls.incrementAndGet();
+            return delegate.getConfiguration(configurationKey, currentVersion);
+        }
+
+        @Override
+        public Duration getPollInterval(final ConfigurationKey configurationKey) {
+            return delegate.getPollInterval(configurationKey);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.provider.ConfigurationProvider;
+import com.amazonaws.samples.appconfig.provider.ConfigurationProviderChain;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+import software.amazon.awssdk.services.appconfig.model.ResourceNotFoundException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ConfigurationProviderChainTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+
+    private final AppConfigDataProviderTest.MutableClock clock = new AppConfigDataProviderTest.MutableClock();
+
+    @Test
+    public void testFirstProviderAnswers() {
+        CountingProvider local = new CountingProvider("local");
+        CountingProvider remote = new CountingProvider("remote");
+        ConfigurationProviderChain chain = chain(local, remote);
+
+        assertEquals("local", chain.getConfiguration(KEY, null).content().asUtf8String());
+        assertEquals(0, remote.calls.get());
+    }
+
+    @Test
+    public void testUnknownKeyFallsBackWithoutCoolDown() {
+        CountingProvider local = new CountingProvider(null);
+        local.failure = ResourceNotFoundException.builder().message("No file").build();
+        CountingProvider remote = new CountingProvider("remote");
+        ConfigurationProviderChain chain = chain(local, remote);
+
+        assertEquals("remote", chain.getConfiguration(KEY, null).content().asUtf8String());
+        assertEquals("remote", chain.getConfiguration(KEY, null).content().asUtf8String());
+        assertEquals(2, local.calls.get());
+    }
+
+    @Test
+    public void testFailedProviderIsSkippedDuringCoolDown() throws Exception {
+        CountingProvider agent = new CountingProvider("agent");
+        agent.failure = new UncheckedIOException(new IOException("Connection refused"));
+        CountingProvider remote = new CountingProvider("remote");
+        ConfigurationProviderChain chain = chain(agent, remote);
+
+        assertEquals("remote", chain.getConfiguration(KEY, null).content().asUtf8String());
+        assertEquals("remote", chain.getConfigurationAsync(KEY, null).get().content().asUtf8String());
+        assertEquals(1, agent.calls.get());
+
+        agent.failure = null;
+        clock.advance(Duration.ofSeconds(30));
+        assertEquals("agent", chain.getConfigurationAsync(KEY, null).get().content().asUtf8String());
+        assertEquals(2, remote.calls.get());
+    }
+
+    @Test
+    public void testLastFailureIsThrownWithTheOthersSuppressed() {
+        CountingProvider agent = new CountingProvider(null);
+        agent.failure = new UncheckedIOException(new IOException("Connection refused"));
+        CountingProvider remote = new CountingProvider(null);
+        remote.failure = ResourceNotFoundException.builder().message("Unknown configuration").build();
+        ConfigurationProviderChain chain = chain(agent, remote);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                chain.getConfiguration(KEY, null);
+                fail("No provider has the configuration");
+            } catch (ResourceNotFoundException e) {
+                assertSame(remote.failure, e);
+            }
+        }
+        // the last provider is tried even while it fails
+        assertEquals(2, remote.calls.get());
+        assertEquals(1, agent.calls.get());
+    }
+
+    @Test
+    public void testFailoverToTheSameContentKeepsTheVersion() throws Exception {
+        CountingProvider agent = new CountingProvider("7");
+        agent.content = "{}";
+        CountingProvider remote = new CountingProvider("remote");
+        remote.content = "{}";
+        ConfigurationProviderChain chain = chain(agent, remote);
+
+        String version = chain.getConfiguration(KEY, null).configurationVersion();
+        agent.failure = new UncheckedIOException(new IOException("Connection refused"));
+
+        assertEquals(version, chain.getConfiguration(KEY, version).configurationVersion());
+        assertEquals(version, chain.getConfigurationAsync(KEY, version).get().configurationVersion());
+        assertEquals(2, remote.calls.get());
+
+        remote.content = "{\"movies\":[]}";
+        assertNotEquals(version, chain.getConfiguration(KEY, version).configurationVersion());
+    }
+
+    @Test
+    public void testConditionalPollGetsTheVersionOfItsProvider() throws Exception {
+        AtomicInteger downloads = new AtomicInteger();
+        List<String> requestedVersions = new CopyOnWriteArrayList<>();
+        // answers like the GetConfiguration API: no content when the client holds the deployed version
+        ConfigurationProvider legacy = (key, currentVersion) -> {
+            requestedVersions.add(String.valueOf(currentVersion));
+            if ("7".equals(currentVersion)) {
+                return GetConfigurationResponse.builder().content(SdkBytes.fromUtf8String("")).configurationVersion("7").build();
+            }
+            downloads.incrementAndGet();
+            return GetConfigurationResponse.builder().content(SdkBytes.fromUtf8String("{}")).configurationVersion("7").build();
+        };
+        CountingProvider agent = new CountingProvider(null);
+        agent.failure = new UncheckedIOException(new IOException("Connection refused"));
+        ConfigurationProviderChain chain = chain(agent, legacy);
+
+        String version = chain.getConfiguration(KEY, null).configurationVersion();
+        assertEquals(version, chain.getConfiguration(KEY, version).configurationVersion());
+        assertEquals(version, chain.getConfigurationAsync(KEY, version).get().configurationVersion());
+
+        assertEquals(Arrays.asList("null", "7", "7"), requestedVersions);
+        assertEquals(1, downloads.get());
+        assertNotEquals("7", version);
+    }
+
+    private ConfigurationProviderChain chain(final ConfigurationProvider... providers) {
+        return new ConfigurationProviderChain(Arrays.asList(providers), Duration.ofSeconds(30), clock);
+    }
+
+    private static class CountingProvider implements ConfigurationProvider {
+        private final String version;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile RuntimeException failure;
+        private volatile String content;
+
+        CountingProvider(final String version) {
+            this.version = version;
+            this.content = version;
+        }
+
+        @Override
+        public GetConfigurationResponse getConfiguration(final ConfigurationKey configurationKey, final String currentVersion) {
+            calls.incrementAndGet();
+            if (failure != null) {
+                throw failure;
+            }
+            return GetConfigurationResponse.builder()
+                    .content(SdkBytes.fromUtf8String(content))
+                    .configurationVersion(version)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import com.amazonaws.samples.appconfig.utils.ConfigurationRefresher;
+import com.amazonaws.samples.appconfig.utils.VirtualThreads;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.AppConfigClient;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationRequest;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class ConfigurationRefresherTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+
+    @Mock
+    private AppConfigClient appConfigClient;
+
+    private ConfigurationCache cache;
+
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        cache = new ConfigurationCache();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class)))
+                .thenReturn(response("1"))
+                .thenReturn(response("2"));
+    }
+
+    @Test
+    public void testExpiredItemIsServedStaleAndRefreshedInBackground() throws InterruptedException {
+        AppConfigUtility appConfigUtility = utility(Duration.ZERO);
+        ConfigurationRefresher refresher = new ConfigurationRefresher(appConfigUtility, cache,
+                Duration.ZERO, Duration.ZERO, executor);
+        appConfigUtility.getConfiguration(KEY);
+        appConfigUtility.setBackgroundRefresher(refresher);
+
+        assertEquals("1", appConfigUtility.getConfiguration(KEY).configurationVersion());
+
+        awaitRefreshes();
+        verify(appConfigClient, times(2)).getConfiguration(any(GetConfigurationRequest.class));
+        assertEquals("2", cache.get(KEY).getValue().configurationVersion());
+        assertEquals(1, refresher.getStaleReadCount());
+        assertEquals(1, refresher.getRefreshCount());
+        assertEquals(0, refresher.getRefreshFailureCount());
+    }
+
+    @Test
+    public void testItemsAreRefreshedAheadOfExpiry() throws InterruptedException {
+        AppConfigUtility appConfigUtility = utility(Duration.ofSeconds(60));
+        ConfigurationRefresher refresher = new ConfigurationRefresher(appConfigUtility, cache,
+                Duration.ofSeconds(120), Duration.ofSeconds(1), executor);
+        appConfigUtility.getConfiguration(KEY);
+
+        refresher.refreshDueItems();
+
+        awaitRefreshes();
+        assertEquals("2", appConfigUtility.getConfiguration(KEY).configurationVersion());
+        verify(appConfigClient, times(2)).getConfiguration(any(GetConfigurationRequest.class));
+    }
+
+    @Test
+    public void testItemsOutsideTheRefreshWindowAreLeftAlone() throws InterruptedException {
+        AppConfigUtility appConfigUtility = utility(Duration.ofSeconds(60));
+        ConfigurationRefresher refresher = new ConfigurationRefresher(appConfigUtility, cache,
+                Duration.ofSeconds(5), Duration.ofSeconds(1), executor);
+        appConfigUtility.getConfiguration(KEY);
+
+        refresher.refreshDueItems();
+
+        awaitRefreshes();
+        verify(appConfigClient, times(1)).getConfiguration(any(GetConfigurationRequest.class));
+        assertEquals(0, refresher.getRefreshCount());
+    }
+
+    @Test
+    public void testRefreshesRunOnTheRefreshExecutor() throws InterruptedException {
+        ExecutorService refreshExecutor = VirtualThreads.isSupported()
+                ? VirtualThreads.newThreadPerTaskExecutor("refresh-")
+                : Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "refresh-0"));
+        AppConfigUtility appConfigUtility = utility(Duration.ofSeconds(60));
+        ConfigurationRefresher refresher = new ConfigurationRefresher(appConfigUtility, cache,
+                Duration.ofSeconds(120), Duration.ofSeconds(1), executor, refreshExecutor);
+        appConfigUtility.getConfiguration(KEY);
+        AtomicReference<String> refreshThread = new AtomicReference<>();
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class))).thenAnswer(invocation -> {
+            refreshThread.set(Thread.currentThread().getName());
+            return response("2");
+        });
+
+        refresher.refreshDueItems();
+
+        refreshExecutor.shutdown();
+        refreshExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        assertEquals("2", cache.get(KEY).getValue().configurationVersion());
+        assertTrue(refreshThread.get().startsWith("refresh-"));
+    }
+
+    @Test
+    public void testVirtualThreadsAreUnsupportedOrStartable() throws InterruptedException {
+        if (!VirtualThreads.isSupported()) {
+            try {
+                VirtualThreads.threadFactory("virtual-");
+                fail("Expected UnsupportedOperationException");
+            } catch (final UnsupportedOperationException expected) {
+                return;
+            }
+        }
+        AtomicReference<String> name = new AtomicReference<>();
+        Thread thread = VirtualThreads.threadFactory("virtual-")
+                .newThread(() -> name.set(Thread.currentThread().getName()));
+        thread.start();
+        thread.join(5000);
+        assertEquals("virtual-0", name.get());
+    }
+
+    private AppConfigUtility utility(final Duration ttl) {
+        return new AppConfigUtility(appConfigClient, cache, ttl, UUID.randomUUID().toString());
+    }
+
+    private void awaitRefreshes() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static GetConfigurationResponse response(final String version) {
+        return GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String("{\"movies\":[]}"))
+                .configurationVersion(version)
+                .build();
+    }
+}
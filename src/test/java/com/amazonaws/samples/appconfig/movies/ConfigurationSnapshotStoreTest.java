@@ -0,0 +1,115 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.cache.ConfigurationSnapshotStore;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.AppConfigClient;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationRequest;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class ConfigurationSnapshotStoreTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+    private static final String MOVIES_JSON = "{\"movies\":[{\"id\":1,\"movieName\":\"Memento\"}]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private AppConfigClient appConfigClient;
+
+    private Path directory;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        directory = folder.getRoot().toPath().resolve("snapshots");
+    }
+
+    @Test
+    public void testSavedConfigurationIsLoaded() throws IOException {
+        store().save(KEY, response("1"));
+
+        Map<ConfigurationKey, GetConfigurationResponse> snapshots = store().loadAll();
+
+        assertEquals(1, snapshots.size());
+        assertEquals("1", snapshots.get(KEY).configurationVersion());
+        assertEquals("application/json", snapshots.get(KEY).contentType());
+        assertEquals(MOVIES_JSON, snapshots.get(KEY).content().asUtf8String());
+    }
+
+    @Test
+    public void testCorruptSnapshotsAreSkipped() throws IOException {
+        store().save(KEY, response("1"));
+        File snapshot = directory.toFile().listFiles()[0];
+        byte[] bytes = Files.readAllBytes(snapshot.toPath());
+        bytes[bytes.length - 12] ^= 1;
+        Files.write(snapshot.toPath(), bytes);
+        Files.write(directory.resolve("garbage.snapshot"), new byte[]{1, 2, 3});
+
+        assertTrue(store().loadAll().isEmpty());
+    }
+
+    @Test
+    public void testWarmCacheIsServedWhileAppConfigIsUnreachable() throws IOException {
+        store().save(KEY, response("1"));
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class)))
+                .thenThrow(new IllegalStateException("no network"));
+        ConfigurationCache cache = new ConfigurationCache();
+
+        assertEquals(1, cache.warmUp(store(), Duration.ofSeconds(30)));
+        AppConfigUtility appConfigUtility = new AppConfigUtility(appConfigClient, cache, Duration.ofSeconds(30),
+                UUID.randomUUID().toString());
+
+        assertEquals(MOVIES_JSON, appConfigUtility.getConfiguration(KEY).content().asUtf8String());
+        verify(appConfigClient, times(1)).getConfiguration(any(GetConfigurationRequest.class));
+    }
+
+    @Test
+    public void testNewVersionsAreSaved() {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class))).thenReturn(response("2"));
+        ConfigurationSnapshotStore store = store();
+        ConfigurationCache cache = new ConfigurationCache();
+        cache.warmUp(store, Duration.ofSeconds(30));
+        AppConfigUtility appConfigUtility = new AppConfigUtility(appConfigClient, cache, Duration.ofSeconds(30),
+                UUID.randomUUID().toString());
+
+        appConfigUtility.getConfiguration(KEY);
+        store.close();
+
+        assertEquals("2", store().loadAll().get(KEY).configurationVersion());
+    }
+
+    private ConfigurationSnapshotStore store() {
+        return new ConfigurationSnapshotStore(directory, Executors.newSingleThreadExecutor());
+    }
+
+    private static GetConfigurationResponse response(final String version) {
+        return GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String(MOVIES_JSON))
+                .configurationVersion(version)
+                .contentType("application/json")
+                .build();
+    }
+}
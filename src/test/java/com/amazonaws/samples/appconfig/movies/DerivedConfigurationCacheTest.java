@@ -0,0 +1,69 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.DerivedConfigurationCache;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class DerivedConfigurationCacheTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+
+    @Test
+    public void testValueIsDerivedOncePerVersion() {
+        AtomicInteger derivations = new AtomicInteger();
+        DerivedConfigurationCache<String> cache = new DerivedConfigurationCache<>(response -> {
+            derivations.incrementAndGet();
+            return response.content().asUtf8String();
+        });
+
+        assertEquals("a", cache.get(KEY, configuration("1", "a")));
+        assertEquals("a", cache.get(KEY, configuration("1", "a")));
+
+        assertEquals(1, derivations.get());
+    }
+
+    @Test
+    public void testSlowDerivationDoesNotOverwriteANewerValue() throws Exception {
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger derivations = new AtomicInteger();
+        DerivedConfigurationCache<String> cache = new DerivedConfigurationCache<>(response -> {
+            derivations.incrementAndGet();
+            String content = response.content().asUtf8String();
+            if ("old".equals(content)) {
+                slowStarted.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return content;
+        });
+
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> cache.get(KEY, configuration("1", "old")));
+        slowStarted.await(5, TimeUnit.SECONDS);
+        assertEquals("new", cache.get(KEY, configuration("2", "new")));
+        release.countDown();
+
+        assertEquals("old", slow.get(5, TimeUnit.SECONDS));
+        assertEquals("new", cache.get(KEY, configuration("2", "new")));
+        assertEquals(2, derivations.get());
+    }
+
+    private static GetConfigurationResponse configuration(final String version, final String content) {
+        return GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String(content))
+                .configurationVersion(version)
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfigdata.AppConfigDataClient;
+import software.amazon.awssdk.services.appconfigdata.model.BadRequestException;
+import software.amazon.awssdk.services.appconfigdata.model.GetLatestConfigurationRequest;
+import software.amazon.awssdk.services.appconfigdata.model.GetLatestConfigurationResponse;
+import software.amazon.awssdk.services.appconfigdata.model.StartConfigurationSessionRequest;
+import software.amazon.awssdk.services.appconfigdata.model.StartConfigurationSessionResponse;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-in for the AppConfigData service. Tokens are single use, and a poll only returns the configuration
+ * when it differs from what was returned on the same session before.
+ */
+class FakeAppConfigDataClient implements AppConfigDataClient {
+
+    private final Map<String, String> lastContentByToken = new ConcurrentHashMap<>();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicInteger polls = new AtomicInteger();
+    private final AtomicLong bytesReturned = new AtomicLong();
+    private final int pollIntervalInSeconds;
+    private volatile String content;
+
+    FakeAppConfigDataClient(final String content, final int pollIntervalInSeconds) {
+        this.content = content;
+        this.pollIntervalInSeconds = pollIntervalInSeconds;
+    }
+
+    void deploy(final String newContent) {
+        content = newContent;
+    }
+
+    /**
+     * Simulates the expiry of all outstanding tokens.
+     */
+    void expireTokens() {
+        lastContentByToken.clear();
+    }
+
+    int getSessions() {
+        return sessions.get();
+    }
+
+    int getPolls() {
+        return polls.get();
+    }
+
+    long getBytesReturned() {
+        return bytesReturned.get();
+    }
+
+    @Override
+    public StartConfigurationSessionResponse startConfigurationSession(final StartConfigurationSessionRequest request) {
+        sessions.incrementAndGet();
+        final String token = UUID.randomUUID().toString();
+        lastContentByToken.put(token, "");
+        return StartConfigurationSessionResponse.builder().initialConfigurationToken(token).build();
+    }
+
+    @Override
+    public GetLatestConfigurationResponse getLatestConfiguration(final GetLatestConfigurationRequest request) {
+        polls.incrementAndGet();
+        final String lastContent = lastContentByToken.remove(request.configurationToken());
+        if (lastContent == null) {
+            throw BadRequestException.builder().message("Invalid or expired token").build();
+        }
+        final String current = content;
+        final String nextToken = UUID.randomUUID().toString();
+        lastContentByToken.put(nextToken, current);
+        final String body = current.equals(lastContent) ? "" : current;
+        bytesReturned.addAndGet(body.length());
+        return GetLatestConfigurationResponse.builder()
+                .configuration(SdkBytes.fromUtf8String(body))
+                .contentType("application/json")
+                .nextPollConfigurationToken(nextToken)
+                .nextPollIntervalInSeconds(pollIntervalInSeconds)
+                .build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,119 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.VersionedReference;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FeatureFlagsTest {
+
+    @Test
+    public void testFlagsAreReadFromTopLevelFields() {
+        FeatureFlags flags = parse("{\"movies\":[{\"id\":1,\"movieName\":\"Memento\",\"intItemLimit\":1}],"
+                + "\"nested\":{\"boolEnableFeature\":false},\"boolEnableFeature\":true,\"intItemLimit\":5}");
+
+        assertTrue(flags.isEnableFeature());
+        assertEquals(5, flags.getItemLimit());
+    }
+
+    @Test
+    public void testMissingFlagsKeepTheirDefaults() {
+        FeatureFlags flags = parse("{\"movies\":[]}");
+
+        assertEquals(FeatureFlags.DEFAULTS.isEnableFeature(), flags.isEnableFeature());
+        assertEquals(FeatureFlags.DEFAULTS.getItemLimit(), flags.getItemLimit());
+    }
+
+    @Test
+    public void testInvalidFlagsAreRejected() {
+        for (String json : new String[]{"{\"boolEnableFeature\":\"yes\"}", "{\"intItemLimit\":1.5}", "{\"intItemLimit\":0}"}) {
+            try {
+                parse(json);
+                fail(json);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testReferencePublishesEachVersionOnce() {
+        List<FeatureFlags> changes = new ArrayList<>();
+        VersionedReference<FeatureFlags> reference
+                = new VersionedReference<>(FeatureFlags.DEFAULTS, FeatureFlags::fromConfiguration);
+        reference.addListener(changes::add);
+
+        assertTrue(reference.update(response("1", "{\"intItemLimit\":5}")));
+        FeatureFlags first = reference.get();
+        assertFalse(reference.update(response("1", "{\"intItemLimit\":6}")));
+        assertSame(first, reference.get());
+        assertTrue(reference.update(response("2", "{\"intItemLimit\":7}")));
+
+        assertEquals(2, changes.size());
+        assertSame(first, changes.get(0));
+        assertEquals(7, reference.get().getItemLimit());
+        assertEquals("2", reference.getVersion());
+    }
+
+    @Test
+    public void testReferenceKeepsValueWhenVersionCannotBeRead() {
+        VersionedReference<FeatureFlags> reference
+                = new VersionedReference<>(FeatureFlags.DEFAULTS, FeatureFlags::fromConfiguration);
+
+        try {
+            reference.update(response("1", "{\"intItemLimit\":-1}"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertSame(FeatureFlags.DEFAULTS, reference.get());
+        }
+        assertTrue(reference.update(response("2", "{\"intItemLimit\":3}")));
+    }
+
+    @Test
+    public void testInvalidVersionIsParsedOnce() {
+        AtomicInteger parses = new AtomicInteger();
+        VersionedReference<FeatureFlags> reference = new VersionedReference<>(FeatureFlags.DEFAULTS, response -> {
+            parses.incrementAndGet();
+            return FeatureFlags.fromConfiguration(response);
+        });
+        assertTrue(reference.update(response("1", "{\"intItemLimit\":3}")));
+
+        try {
+            reference.update(response("2", "{\"intItemLimit\":-1}"));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // reported by the first caller only
+        }
+        for (int i = 0; i < 10; i++) {
+            assertFalse(reference.update(response("2", "{\"intItemLimit\":-1}")));
+        }
+
+        assertEquals(2, parses.get());
+        assertEquals("1", reference.getVersion());
+        assertEquals(3, reference.get().getItemLimit());
+        assertTrue(reference.update(response("3", "{\"intItemLimit\":4}")));
+    }
+
+    private static FeatureFlags parse(final String json) {
+        return FeatureFlags.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static GetConfigurationResponse response(final String version, final String json) {
+        return GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String(json))
+                .configurationVersion(version)
+                .build();
+    }
+}
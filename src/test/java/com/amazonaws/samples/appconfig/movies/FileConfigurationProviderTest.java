@@ -0,0 +1,81 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.provider.FileConfigurationProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+import software.amazon.awssdk.services.appconfig.model.ResourceNotFoundException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class FileConfigurationProviderTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+    private static final String MOVIES_V1 = "{\"movies\":[{\"id\":1,\"movieName\":\"Memento\"}]}";
+    private static final String MOVIES_V2 = "{\"movies\":[{\"id\":1,\"movieName\":\"Stardust\"}]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileConfigurationProvider provider;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        provider = new FileConfigurationProvider(folder.getRoot().toPath(), Executors.newSingleThreadExecutor());
+        file = folder.getRoot().toPath().resolve("myApp").resolve("dev").resolve("myConfig");
+    }
+
+    @After
+    public void tearDown() {
+        provider.close();
+    }
+
+    @Test
+    public void testMissingFileIsNotFound() {
+        try {
+            provider.getConfiguration(KEY, null);
+            fail("There is no configuration file");
+        } catch (ResourceNotFoundException expected) {
+            // the next provider of a chain is asked
+        }
+    }
+
+    @Test
+    public void testFileIsReadOnceUntilItChanges() throws Exception {
+        write(MOVIES_V1);
+
+        GetConfigurationResponse first = provider.getConfiguration(KEY, null);
+        assertEquals(MOVIES_V1, first.content().asUtf8String());
+        assertSame(first, provider.getConfiguration(KEY, first.configurationVersion()));
+
+        write(MOVIES_V2);
+        GetConfigurationResponse second = first;
+        // watch services may poll the file system, e.g. every few seconds on macOS
+        for (int i = 0; i < 1000 && second == first; i++) {
+            Thread.sleep(10);
+            second = provider.getConfiguration(KEY, first.configurationVersion());
+        }
+
+        assertEquals(MOVIES_V2, second.content().asUtf8String());
+        assertNotEquals(first.configurationVersion(), second.configurationVersion());
+    }
+
+    private void write(final String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,81 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.HTMLBuilder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HTMLBuilderTest {
+
+    private final HTMLBuilder htmlBuilder = new HTMLBuilder();
+
+    @Test
+    public void testStreamedHtmlMatchesStringHtml() throws IOException {
+        Movie[] movies = {
+                new Movie(1L, "Memento"),
+                new Movie(2L, "Am\u00e9lie"),
+                new Movie(3L, "\u5343\u3068\u5343\u5c0b\u306e\u795e\u96a0\u3057"),
+                new Movie(4L, "Emoji \ud83c\udfac and a lone \ud83c surrogate"),
+                new Movie(5L, null)
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        htmlBuilder.writeMoviesHtml(movies, out);
+
+        assertArrayEquals(htmlBuilder.getMoviesHtml(movies).getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    @Test
+    public void testNameLongerThanAChunkKeepsItsSurrogatePairs() throws IOException {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            name.append(i % 7 == 0 ? "\u00e9" : "\ud83c\udfac");
+        }
+        Movie[] movies = {new Movie(1L, name.toString())};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        htmlBuilder.writeMoviesHtml(movies, out);
+
+        assertArrayEquals(htmlBuilder.getMoviesHtml(movies).getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    @Test
+    public void testLargeListIsWrittenInBoundedChunks() throws IOException {
+        Movie[] movies = new Movie[20000];
+        for (int i = 0; i < movies.length; i++) {
+            movies[i] = new Movie((long) i, "Movie number " + i);
+        }
+        ChunkRecorder out = new ChunkRecorder();
+
+        htmlBuilder.writeMoviesHtml(movies, out);
+
+        assertEquals(htmlBuilder.getMoviesHtml(movies).length(), out.total);
+        assertTrue(out.writes > 1);
+        assertTrue(out.largestWrite <= 8192);
+    }
+
+    private static class ChunkRecorder extends OutputStream {
+        int writes;
+        int largestWrite;
+        long total;
+
+        @Override
+        public void write(final int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            writes++;
+            largestWrite = Math.max(largestWrite, len);
+            total += len;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MovieCatalogDiffTest {
+
+    private static final MovieCatalog PREVIOUS = MovieCatalog.of(
+            new Movie(1L, "Memento"),
+            new Movie(2L, "Stardust"),
+            new Movie(3L, "Metropolis"),
+            new Movie(4L, "Mean Streets"));
+
+    @Test
+    public void testAddedRemovedAndRenamedMoviesAreFound() {
+        MovieCatalog next = MovieCatalog.of(
+                new Movie(1L, "Memento"),
+                new Movie(3L, "Metropolis (1927)"),
+                new Movie(4L, "Mean Streets"),
+                new Movie(5L, "Alien"));
+
+        MovieCatalogDiff diff = MovieCatalogDiff.between(new MovieIndex(PREVIOUS), next);
+
+        assertFalse(diff.isEmpty());
+        assertFalse(diff.isReordered());
+        assertEquals(1, diff.getAddedCount());
+        assertEquals(1, diff.getModifiedCount());
+        assertArrayEquals(new long[]{2L}, diff.getRemovedIds());
+        assertArrayEquals(new int[]{1, 3}, diff.getChangedPositions());
+        assertEquals(0, diff.getPreviousPosition(0));
+        assertEquals(3, diff.getPreviousPosition(2));
+        assertEquals(-1, diff.getPreviousPosition(1));
+        assertEquals(2, diff.getNextPosition(3));
+        assertEquals(-1, diff.getNextPosition(1));
+    }
+
+    @Test
+    public void testSameMoviesMakeAnEmptyDiff() {
+        MovieCatalogDiff diff = MovieCatalogDiff.between(new MovieIndex(PREVIOUS), MovieCatalog.of(PREVIOUS.toMovies()));
+
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    public void testMovedMoviesAreReported() {
+        MovieCatalog next = MovieCatalog.of(
+                new Movie(2L, "Stardust"),
+                new Movie(1L, "Memento"),
+                new Movie(3L, "Metropolis"),
+                new Movie(4L, "Mean Streets"));
+
+        MovieCatalogDiff diff = MovieCatalogDiff.between(new MovieIndex(PREVIOUS), next);
+
+        assertTrue(diff.isReordered());
+        assertEquals(0, diff.getChangedPositions().length);
+        assertFalse(diff.isEmpty());
+    }
+
+    @Test
+    public void testDuplicateIdsAreMatchedOnce() {
+        MovieCatalog next = MovieCatalog.of(
+                new Movie(1L, "Memento"),
+                new Movie(1L, "Memento"),
+                new Movie(2L, "Stardust"),
+                new Movie(3L, "Metropolis"),
+                new Movie(4L, "Mean Streets"));
+
+        MovieCatalogDiff diff = MovieCatalogDiff.between(new MovieIndex(PREVIOUS), next);
+
+        assertEquals(1, diff.getAddedCount());
+        assertArrayEquals(new int[]{1}, diff.getChangedPositions());
+        assertEquals(0, diff.getRemovedCount());
+    }
+}
@@ -0,0 +1,80 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.HTMLBuilder;
+import com.amazonaws.samples.appconfig.utils.MovieJsonParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MovieCatalogTest {
+
+    private static final String[] NAMES = {
+            "Memento", "Am\u00e9lie", "\u5343\u3068\u5343\u5c0b\u306e\u795e\u96a0\u3057", "\ud83c\udfac Clapper", "", "Broken \ud800"
+    };
+
+    @Test
+    public void testNamesAreStoredAsUtf8() throws IOException {
+        MovieCatalog.Builder builder = new MovieCatalog.Builder(1);
+        for (int i = 0; i < NAMES.length; i++) {
+            builder.add(Long.MIN_VALUE + i, NAMES[i]);
+        }
+        MovieCatalog catalog = builder.build();
+
+        assertEquals(NAMES.length, catalog.size());
+        for (int i = 0; i < NAMES.length; i++) {
+            byte[] expected = NAMES[i].getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            catalog.writeName(i, out);
+            assertEquals(Long.MIN_VALUE + i, catalog.getId(i));
+            assertArrayEquals(expected, out.toByteArray());
+            assertEquals(expected.length, catalog.getNameLength(i));
+            assertEquals(new String(expected, StandardCharsets.UTF_8), catalog.getMovieName(i));
+        }
+    }
+
+    @Test
+    public void testRangeAndSelect() {
+        MovieCatalog catalog = MovieCatalog.of(new Movie(1L, "One"), new Movie(2L, "Two"), new Movie(3L, "Three"));
+
+        MovieCatalog range = catalog.range(1, 3);
+        MovieCatalog selected = catalog.select(new int[]{2, 0, 1}, 0, 2);
+
+        assertSame(catalog, catalog.range(0, 3));
+        assertEquals(2, range.size());
+        assertEquals(2L, range.getId(0));
+        assertEquals("Three", range.getMovieName(1));
+        assertEquals(2, selected.size());
+        assertEquals("Three", selected.getMovieName(0));
+        assertEquals(1L, selected.getId(1));
+        assertSame(MovieCatalog.empty(), catalog.select(new int[0], 0, 0));
+    }
+
+    @Test
+    public void testParserAndHtmlBuilderMatchTheMoviePath() throws IOException {
+        StringBuilder json = new StringBuilder("{\"movies\":[");
+        for (int i = 0; i < NAMES.length; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"movieName\":\"").append(NAMES[i]).append("\",\"id\":")
+                    .append(i == 0 ? Long.MIN_VALUE : i * 1000L).append('}');
+        }
+        byte[] content = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        MovieJsonParser parser = new MovieJsonParser();
+
+        Movie[] movies = parser.getMovies(new ByteArrayInputStream(content));
+        MovieCatalog catalog = parser.getMovieCatalog(new ByteArrayInputStream(content));
+
+        assertEquals(movies.length, catalog.size());
+        ByteArrayOutputStream fromMovies = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromCatalog = new ByteArrayOutputStream();
+        new HTMLBuilder().writeMoviesHtml(movies, fromMovies);
+        new HTMLBuilder().writeMoviesHtml(catalog, fromCatalog);
+        assertArrayEquals(fromMovies.toByteArray(), fromCatalog.toByteArray());
+        assertEquals(new HTMLBuilder().getMoviesHtml(movies), new String(fromCatalog.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,70 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.HTMLBuilder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class MovieFragmentsTest {
+
+    private final HTMLBuilder htmlBuilder = new HTMLBuilder();
+
+    @Test
+    public void testAssembledHtmlMatchesStringHtml() throws IOException {
+        Movie[] movies = {
+                new Movie(1L, "Memento"),
+                new Movie(-2L, "Am\u00e9lie"),
+                new Movie(Long.MIN_VALUE, "\u5343\u3068\u5343\u5c0b\u306e\u795e\u96a0\u3057"),
+                new Movie(4L, "Emoji \ud83c\udfac")
+        };
+        MovieFragments fragments = MovieFragments.render(MovieCatalog.of(movies));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        fragments.writeHtml(out);
+
+        byte[] expected = htmlBuilder.getMoviesHtml(movies).getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, fragments.toHtml());
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    public void testUpdateRendersOnlyChangedMovies() throws IOException {
+        MovieFragments previous = MovieFragments.render(MovieCatalog.of(
+                new Movie(1L, "Memento"),
+                new Movie(2L, "Heat"),
+                new Movie(3L, "Alien"),
+                new Movie(4L, "Brazil")));
+        MovieCatalog next = MovieCatalog.of(
+                new Movie(5L, "Up"),
+                new Movie(1L, "Memento"),
+                new Movie(3L, "Aliens"),
+                new Movie(4L, "Brazil"));
+
+        MovieFragments fragments = previous.update(next);
+
+        assertEquals(2, fragments.getReusedCount());
+        assertSame(previous.getItem(0), fragments.getItem(1));
+        assertSame(previous.getItem(3), fragments.getItem(3));
+        assertNotSame(previous.getItem(2), fragments.getItem(2));
+        assertSame(next, fragments.getCatalog());
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        htmlBuilder.writeMoviesHtml(next, expected);
+        assertArrayEquals(expected.toByteArray(), fragments.toHtml());
+    }
+
+    @Test
+    public void testUpdateWithSameCatalogueReturnsSameFragments() {
+        MovieCatalog catalog = MovieCatalog.of(new Movie(1L, "Memento"));
+        MovieFragments fragments = MovieFragments.render(catalog);
+
+        assertSame(fragments, fragments.update(catalog));
+        assertEquals(0, fragments.getReusedCount());
+    }
+}
@@ -0,0 +1,124 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MovieIndexTest {
+
+    private static final MovieCatalog MOVIES = MovieCatalog.of(
+            new Movie(7L, "memento"),
+            new Movie(-3L, "Stardust"),
+            new Movie(42L, "Metropolis"),
+            new Movie(7L, "Duplicate id"),
+            new Movie(100000000000L, "Mean Streets"),
+            new Movie(5L, "\u00c9t\u00e9"));
+
+    @Test
+    public void testFindById() {
+        MovieIndex index = new MovieIndex(MOVIES);
+
+        assertEquals("memento", index.findById(7L).getMovieName());
+        assertEquals("Stardust", index.findById(-3L).getMovieName());
+        assertEquals("Mean Streets", index.findById(100000000000L).getMovieName());
+        assertEquals("\u00c9t\u00e9", index.findById(5L).getMovieName());
+        assertEquals(5L, index.findById(5L).getId());
+        assertNull(index.findById(8L));
+        assertNull(new MovieIndex(MovieCatalog.empty()).findById(7L));
+    }
+
+    @Test
+    public void testFindByIdInLargeIndex() {
+        MovieCatalog.Builder builder = new MovieCatalog.Builder();
+        for (int i = 0; i < 10000; i++) {
+            builder.add((long) i * 1024, "Movie " + i);
+        }
+        MovieIndex index = new MovieIndex(builder.build());
+
+        for (int i = 0; i < 10000; i++) {
+            assertEquals("Movie " + i, index.findById((long) i * 1024).getMovieName());
+        }
+        assertNull(index.findById(1));
+    }
+
+    @Test
+    public void testPagesFollowConfigurationOrder() {
+        MovieIndex index = new MovieIndex(MOVIES);
+
+        assertEquals(6, index.size());
+        assertEquals(4, index.page(0, 4).size());
+        assertEquals(7L, index.page(0, 4).getId(0));
+        assertEquals(2, index.page(1, 4).size());
+        assertEquals("Mean Streets", index.page(1, 4).getMovieName(0));
+        assertEquals(0, index.page(2, 4).size());
+        assertEquals(0, index.page(Integer.MAX_VALUE, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testFindByNamePrefixIgnoresCaseAndOrdersByName() {
+        MovieIndex index = new MovieIndex(MOVIES);
+
+        MovieCatalog matches = index.findByNamePrefix("ME", 0, 10);
+
+        assertEquals(3, matches.size());
+        assertEquals("Mean Streets", matches.getMovieName(0));
+        assertEquals("memento", matches.getMovieName(1));
+        assertEquals("Metropolis", matches.getMovieName(2));
+        assertEquals(42L, matches.getId(2));
+        assertEquals("memento", index.findByNamePrefix("me", 1, 1).getMovieName(0));
+        assertEquals(0, index.findByNamePrefix("me", 3, 1).size());
+        assertEquals(0, index.findByNamePrefix("Mx", 0, 10).size());
+        assertEquals(0, index.findByNamePrefix("zzz", 0, 10).size());
+        assertEquals(1, index.findByNamePrefix("\u00e9T", 0, 10).size());
+        assertEquals(6, index.findByNamePrefix("", 0, 10).size());
+    }
+
+    @Test
+    public void testUpdateMatchesFullBuild() {
+        Random random = new Random(42);
+        MovieCatalog.Builder builder = new MovieCatalog.Builder();
+        for (int i = 0; i < 2000; i++) {
+            builder.add(i, "Movie " + random.nextInt(500));
+        }
+        MovieCatalog previous = builder.build();
+        MovieIndex index = new MovieIndex(previous);
+
+        for (int version = 0; version < 20; version++) {
+            MovieCatalog.Builder next = new MovieCatalog.Builder();
+            for (int i = 0; i < previous.size(); i++) {
+                int change = random.nextInt(100);
+                if (change == 0) {
+                    continue;
+                }
+                next.add(previous.getId(i), change == 1 ? "movie " + random.nextInt(500) : previous.getMovieName(i));
+                if (change == 2) {
+                    next.add(10000 + version * 100 + random.nextInt(100), "Movie " + random.nextInt(500));
+                }
+            }
+            MovieCatalog catalog = next.build();
+
+            MovieIndex updated = MovieIndex.update(index, catalog);
+
+            MovieIndex rebuilt = new MovieIndex(catalog);
+            assertTrue(rebuilt.findByNamePrefix("", 0, catalog.size())
+                    .contentEquals(updated.findByNamePrefix("", 0, catalog.size())));
+            for (int i = 0; i < catalog.size(); i++) {
+                assertEquals(rebuilt.findById(catalog.getId(i)).getMovieName(),
+                        updated.findById(catalog.getId(i)).getMovieName());
+            }
+            index = updated;
+            previous = catalog;
+        }
+        assertSame(index, MovieIndex.update(index, previous));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativePageIsRejected() {
+        new MovieIndex(MOVIES).page(-1, 10);
+    }
+}
@@ -0,0 +1,60 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.utils.MovieJsonParser;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MovieJsonParserTest {
+
+    private final MovieJsonParser parser = new MovieJsonParser();
+
+    @Test
+    public void testMoviesAreReadInDocumentOrder() {
+        Movie[] movies = parser.getMovies(SdkBytes.fromUtf8String(
+                "{\"movies\":[{\"id\":1,\"movieName\":\"Memento\"},{\"id\":2,\"movieName\":\"Am\u00e9lie\"}]}").asInputStream());
+
+        assertEquals(2, movies.length);
+        assertEquals(1, movies[0].getId());
+        assertEquals("Memento", movies[0].getMovieName());
+        assertEquals(2, movies[1].getId());
+        assertEquals("Am\u00e9lie", movies[1].getMovieName());
+    }
+
+    @Test
+    public void testUnknownFieldsAreSkipped() {
+        Movie[] movies = parser.getMovies("{\"boolEnableFeature\":true,\"tags\":{\"a\":[1,2]},"
+                + "\"movies\":[{\"rating\":[5],\"id\":7,\"movieName\":\"Heat\",\"cast\":{\"lead\":\"Pacino\"}}],"
+                + "\"intItemLimit\":5}");
+
+        assertEquals(1, movies.length);
+        assertEquals(7, movies[0].getId());
+        assertEquals("Heat", movies[0].getMovieName());
+    }
+
+    @Test
+    public void testMoviesAreStreamedToConsumer() {
+        List<String> names = new ArrayList<>();
+
+        parser.parseMovies(SdkBytes.fromUtf8String(
+                "{\"movies\":[{\"id\":1,\"movieName\":\"Memento\"},{\"id\":2,\"movieName\":\"Stardust\"}]}").asInputStream(),
+                movie -> names.add(movie.getMovieName()));
+
+        assertEquals(2, names.size());
+        assertEquals("Stardust", names.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingMoviesArrayIsRejected() {
+        parser.getMovies("{\"boolEnableFeature\":true}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMovieWithoutNameIsRejected() {
+        parser.getMovies("{\"movies\":[{\"id\":1}]}");
+    }
+}
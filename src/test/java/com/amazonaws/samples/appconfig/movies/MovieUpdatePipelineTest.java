@@ -0,0 +1,306 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.cache.RefreshPolicy;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import com.amazonaws.samples.appconfig.utils.MovieJsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.appconfig.AppConfigClient;
+import software.amazon.awssdk.services.appconfig.model.BadRequestException;
+import software.amazon.awssdk.services.appconfig.model.CreateHostedConfigurationVersionRequest;
+import software.amazon.awssdk.services.appconfig.model.CreateHostedConfigurationVersionResponse;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationRequest;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MovieUpdatePipelineTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("MoviesApplication", "dev", "MoviesProfile");
+    private static final String MOVIES = "{\"intItemLimit\":5,\"movies\":"
+            + "[{\"id\":1,\"movieName\":\"Memento\"},{\"id\":2,\"movieName\":\"Heat\"}]}";
+
+    private final HostedAppConfigClient appConfig = new HostedAppConfigClient();
+    private final ConfigurationCache cache = new ConfigurationCache();
+    private ScheduledExecutorService scheduler;
+    private AppConfigUtility appConfigUtility;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        appConfigUtility = new AppConfigUtility(appConfig, cache, Duration.ofMinutes(1),
+                UUID.randomUUID().toString());
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testEditsAreAppliedLocallyAndCoalescedIntoOneVersion() throws Exception {
+        MovieUpdatePipeline pipeline = pipeline(Duration.ofMinutes(1), 100);
+
+        pipeline.submit(new Movie(1L, "Memento (2000)")).get(5, TimeUnit.SECONDS);
+        pipeline.submit(new Movie(1L, "Memento")).get(5, TimeUnit.SECONDS);
+        pipeline.submit(new Movie(3L, "Up")).get(5, TimeUnit.SECONDS);
+
+        GetConfigurationResponse local = appConfigUtility.getConfiguration(KEY);
+        assertTrue(local.configurationVersion().startsWith("1" + MovieUpdatePipeline.LOCAL_VERSION_SEPARATOR));
+        assertEquals("Up", movieNames(local)[2]);
+        assertEquals(0, appConfig.hosted.size());
+
+        pipeline.flush().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, appConfig.hosted.size());
+        assertEquals(1, pipeline.getPublishedVersionCount());
+        String published = appConfig.hosted.get(0).content().asUtf8String();
+        assertEquals("{\"intItemLimit\":5,\"movies\":[{\"id\":1,\"movieName\":\"Memento\"},"
+                + "{\"id\":2,\"movieName\":\"Heat\"},{\"id\":3,\"movieName\":\"Up\"}]}", published);
+        assertEquals("appId", appConfig.hosted.get(0).applicationId());
+        assertEquals("profileId", appConfig.hosted.get(0).configurationProfileId());
+    }
+
+    @Test
+    public void testFullBatchIsPublishedWithoutWaitingForTheWindow() throws Exception {
+        MovieUpdatePipeline pipeline = pipeline(Duration.ofMinutes(1), 2);
+
+        pipeline.submit(new Movie(1L, "Memento (2000)"));
+        pipeline.submit(new Movie(2L, "Heat (1995)")).get(5, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 500 && appConfig.hosted.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, appConfig.hosted.size());
+    }
+
+    @Test
+    public void testFailedBatchIsPublishedWithTheNextOne() throws Exception {
+        MovieUpdatePipeline pipeline = pipeline(Duration.ofMinutes(1), 100);
+        appConfig.failures.set(1);
+
+        pipeline.submit(new Movie(2L, "Heat (1995)")).get(5, TimeUnit.SECONDS);
+        try {
+            pipeline.flush().get(5, TimeUnit.SECONDS);
+            fail("The first publication should fail");
+        } catch (ExecutionException expected) {
+            assertEquals(1, pipeline.getFailedPublishCount());
+        }
+        assertEquals("Heat (1995)", movieNames(appConfigUtility.getConfiguration(KEY))[1]);
+
+        pipeline.submit(new Movie(3L, "Up")).get(5, TimeUnit.SECONDS);
+        pipeline.flush().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, appConfig.hosted.size());
+        String published = appConfig.hosted.get(0).content().asUtf8String();
+        assertTrue(published.contains("Heat (1995)") && published.contains("Up"));
+    }
+
+    @Test
+    public void testFailedBatchWaitsForTheBackoff() throws Exception {
+        MovieUpdatePipeline pipeline = pipeline(Duration.ZERO, 100);
+        appConfig.failures.set(1);
+
+        pipeline.submit(new Movie(2L, "Heat (1995)")).get(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 500 && pipeline.getFailedPublishCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+
+        assertEquals(1, pipeline.getFailedPublishCount());
+        assertEquals(1, appConfig.publishing.availablePermits());
+        assertEquals(0, appConfig.hosted.size());
+    }
+
+    @Test
+    public void testRefusedBatchIsDroppedWithoutRetrying() throws Exception {
+        MovieUpdatePipeline pipeline = pipeline(Duration.ofMinutes(1), 100);
+        appConfig.failures.set(1);
+        appConfig.failure = BadRequestException.builder().message("Simulated refusal").build();
+
+        pipeline.submit(new Movie(2L, "Heat (1995)")).get(5, TimeUnit.SECONDS);
+        try {
+            pipeline.flush().get(5, TimeUnit.SECONDS);
+            fail("The publication should be refused");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof BadRequestException);
+        }
+        assertEquals("Heat", movieNames(appConfigUtility.getConfiguration(KEY))[1]);
+
+        pipeline.submit(new Movie(3L, "Up")).get(5, TimeUnit.SECONDS);
+        pipeline.flush().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, appConfig.hosted.size());
+        String published = appConfig.hosted.get(0).content().asUtf8String();
+        assertTrue(published.contains("Up") && !published.contains("Heat (1995)"));
+    }
+
+    @Test
+    public void testEditsStayAppliedUntilTheirVersionIsDeployed() throws Exception {
+        MovieUpdatePipeline pipeline = pipeline(Duration.ofMinutes(1), 100);
+        pipeline.submit(new Movie(2L, "Heat (1995)")).get(5, TimeUnit.SECONDS);
+        pipeline.flush().get(5, TimeUnit.SECONDS);
+
+        // another version is deployed before ours: the edit is applied over it
+        appConfig.deploy("2", "{\"movies\":[{\"id\":2,\"movieName\":\"Heat\"},{\"id\":4,\"movieName\":\"Alien\"}]}");
+        appConfigUtility.refreshConfiguration(KEY);
+        pipeline.flush().get(5, TimeUnit.SECONDS);
+        GetConfigurationResponse local = appConfigUtility.getConfiguration(KEY);
+        assertTrue(local.configurationVersion().startsWith("2" + MovieUpdatePipeline.LOCAL_VERSION_SEPARATOR));
+        assertEquals("Heat (1995)", movieNames(local)[0]);
+        assertEquals("Alien", movieNames(local)[1]);
+
+        // our version is deployed: the deployed configuration is served as is
+        appConfig.deploy("3", appConfig.hosted.get(0).content().asUtf8String());
+        appConfigUtility.refreshConfiguration(KEY);
+        pipeline.flush().get(5, TimeUnit.SECONDS);
+        appConfig.deploy("4", MOVIES);
+        appConfigUtility.refreshConfiguration(KEY);
+        pipeline.flush().get(5, TimeUnit.SECONDS);
+
+        assertEquals("4", appConfigUtility.getConfiguration(KEY).configurationVersion());
+    }
+
+    @Test
+    public void testFetchingTheSameDeployedVersionKeepsTheLocalView() throws Exception {
+        MovieUpdatePipeline pipeline = pipeline(Duration.ofMinutes(1), 100);
+        pipeline.submit(new Movie(2L, "Heat (1995)")).get(5, TimeUnit.SECONDS);
+        String localVersion = appConfigUtility.getConfiguration(KEY).configurationVersion();
+        AtomicInteger changes = new AtomicInteger();
+        cache.addChangeListener(KEY, (key, configuration) -> changes.incrementAndGet(), Runnable::run);
+        changes.set(0);
+
+        appConfigUtility.refreshConfiguration(KEY);
+        appConfigUtility.refreshConfiguration(KEY);
+
+        GetConfigurationResponse local = appConfigUtility.getConfiguration(KEY);
+        assertEquals(localVersion, local.configurationVersion());
+        assertEquals("Heat (1995)", movieNames(local)[1]);
+        assertEquals(0, changes.get());
+    }
+
+    @Test
+    public void testEditsBeingPublishedAreAppliedOverANewVersion() throws Exception {
+        ExecutorService publishExecutor = Executors.newSingleThreadExecutor();
+        try {
+            MovieUpdatePipeline pipeline = pipeline(Duration.ofMinutes(1), 100, publishExecutor);
+            pipeline.submit(new Movie(2L, "Heat (1995)")).get(5, TimeUnit.SECONDS);
+            appConfig.blocked = new CountDownLatch(1);
+            CompletableFuture<Void> flushed = pipeline.flush();
+            assertTrue(appConfig.publishing.tryAcquire(5, TimeUnit.SECONDS));
+
+            // another version is deployed while the batch is published
+            appConfig.deploy("2", "{\"movies\":[{\"id\":2,\"movieName\":\"Heat\"},{\"id\":4,\"movieName\":\"Alien\"}]}");
+            appConfigUtility.refreshConfiguration(KEY);
+            scheduler.submit(() -> { }).get(5, TimeUnit.SECONDS);
+            GetConfigurationResponse local = appConfigUtility.getConfiguration(KEY);
+            assertTrue(local.configurationVersion().startsWith("2" + MovieUpdatePipeline.LOCAL_VERSION_SEPARATOR));
+            assertEquals("Heat (1995)", movieNames(local)[0]);
+
+            appConfig.blocked.countDown();
+            flushed.get(5, TimeUnit.SECONDS);
+            local = appConfigUtility.getConfiguration(KEY);
+            assertEquals("Heat (1995)", movieNames(local)[0]);
+            assertEquals("Alien", movieNames(local)[1]);
+        } finally {
+            publishExecutor.shutdownNow();
+        }
+    }
+
+    private MovieUpdatePipeline pipeline(final Duration window, final int maxBatchSize) {
+        return pipeline(window, maxBatchSize, Runnable::run);
+    }
+
+    private MovieUpdatePipeline pipeline(final Duration window, final int maxBatchSize, final Executor publishExecutor) {
+        appConfig.deploy("1", MOVIES);
+        RefreshPolicy retryPolicy = new RefreshPolicy(Duration.ofMinutes(1), Duration.ofMinutes(1), 5,
+                Duration.ofMinutes(1), null, Clock.systemUTC());
+        MovieUpdatePipeline pipeline = new MovieUpdatePipeline(appConfigUtility, cache, KEY, "appId", "profileId",
+                scheduler, publishExecutor, window, maxBatchSize, retryPolicy);
+        pipeline.start();
+        return pipeline;
+    }
+
+    private static String[] movieNames(final GetConfigurationResponse configuration) {
+        Movie[] movies = new MovieJsonParser().getMovies(configuration.content().asInputStream());
+        String[] names = new String[movies.length];
+        for (int i = 0; i < movies.length; i++) {
+            names[i] = movies[i].getMovieName();
+        }
+        return names;
+    }
+
+    /**
+     * AppConfig in memory: hosted versions are recorded, and one of them is deployed by the test.
+     */
+    private static class HostedAppConfigClient implements AppConfigClient {
+        final List<CreateHostedConfigurationVersionRequest> hosted = new CopyOnWriteArrayList<>();
+        final AtomicInteger failures = new AtomicInteger();
+        final Semaphore publishing = new Semaphore(0);
+        volatile RuntimeException failure = SdkClientException.create("Simulated failure");
+        volatile CountDownLatch blocked;
+        volatile GetConfigurationResponse deployed;
+
+        void deploy(final String version, final String content) {
+            deployed = GetConfigurationResponse.builder()
+                    .content(SdkBytes.fromUtf8String(content))
+                    .configurationVersion(version)
+                    .build();
+        }
+
+        @Override
+        public GetConfigurationResponse getConfiguration(final GetConfigurationRequest request) {
+            return deployed;
+        }
+
+        @Override
+        public CreateHostedConfigurationVersionResponse createHostedConfigurationVersion(
+                final CreateHostedConfigurationVersionRequest request) {
+            publishing.release();
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failures.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                throw failure;
+            }
+            hosted.add(request);
+            return CreateHostedConfigurationVersionResponse.builder().versionNumber(hosted.size()).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
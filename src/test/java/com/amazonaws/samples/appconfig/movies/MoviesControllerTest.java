@@ -7,67 +7,324 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.appconfig.AppConfigClient;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationRequest;
 import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 
 public class MoviesControllerTest {
 
-    @Mock
-    private Environment env;
+    private static final String MOVIES_JSON = "{\"movies\":[{\"id\":1,\"movieName\":\"Memento\"},{\"id\":2,\"movieName\":\"Stardust\"}]}";
 
     @Mock
     private AppConfigClient appConfigClient;
 
-    @Mock
-    private ConfigurationCache configurationCache;
+    private ConfigurationKey configurationKey;
 
     private MoviesController moviesController;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        configurationKey = new ConfigurationKey("myApp", "dev", "myConfig");
         moviesController = new MoviesController();
-        moviesController.env = env;
+        moviesController.moviesConfigurationKey = configurationKey;
     }
 
     @Test
     public void testMovieWithFeatureEnabled() {
         // Arrange
-        when(env.getProperty("appconfig.application")).thenReturn("myApp");
-        when(env.getProperty("appconfig.environment")).thenReturn("dev");
-        when(env.getProperty("appconfig.config")).thenReturn("myConfig");
-        when(env.getProperty("appconfig.cacheTtlInSeconds")).thenReturn("60");
-
         String jsonResponse = "{\"boolEnableFeature\":true,\"intItemLimit\":5}";
 
-        GetConfigurationResponse getConfigurationResponse = GetConfigurationResponse.builder().build();
+        GetConfigurationResponse getConfigurationResponse = GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String(jsonResponse))
+                .configurationVersion("1")
+                .build();
 
         AppConfigUtility appConfigUtility = mock(AppConfigUtility.class);
         when(appConfigUtility.getConfiguration(any(ConfigurationKey.class))).thenReturn(getConfigurationResponse);
-
-        moviesController.cacheItemTtl = Duration.ofSeconds(60);
-        moviesController.client = appConfigClient;
-        moviesController.cache = configurationCache;
-        moviesController.clientId = UUID.randomUUID().toString();
+        moviesController.appConfigUtility = appConfigUtility;
 
         // Act
-        //Movie[] movies = moviesController.movie();
+        String moviesHtml = html(moviesController.movie(null));
 
         // Assert
         Movie[] expectedMovies = new Movie[5];
         for (int i = 0; i < 5; i++) {
             expectedMovies[i] = MoviesController.PAIDMOVIES[i];
         }
-        //assertArrayEquals(expectedMovies, movies);
         assertEquals(5, expectedMovies.length);
+        assertTrue(moviesHtml.contains(MoviesController.PAIDMOVIES[0].getMovieName()));
+    }
+
+    @Test
+    public void testMovieRendersConfiguredMovies() {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class))).thenReturn(moviesResponse("1"));
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ofSeconds(60), UUID.randomUUID().toString());
+
+        String moviesHtml = html(moviesController.movie(null));
+
+        assertTrue(moviesHtml.contains("<h3>Memento</h3>"));
+        assertTrue(moviesHtml.contains("<h3>Stardust</h3>"));
+    }
+
+    @Test
+    public void testSharedUtilityServesRepeatedRequestsFromCache() {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class))).thenReturn(moviesResponse("1"));
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ofSeconds(60), UUID.randomUUID().toString());
+
+        for (int i = 0; i < 100; i++) {
+            moviesController.movie(null);
+        }
+
+        verify(appConfigClient, times(1)).getConfiguration(any(GetConfigurationRequest.class));
+    }
+
+    @Test
+    public void testRenderedPageIsReusedUntilVersionChanges() {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class)))
+                .thenReturn(moviesResponse("1"))
+                .thenReturn(moviesResponse("2"));
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ZERO, UUID.randomUUID().toString());
+
+        MoviesPage first = moviesController.movie(null).getBody();
+        MoviesPage second = moviesController.movie(null).getBody();
+        MoviesPage third = moviesController.movie(null).getBody();
+
+        assertNotSame(first, second);
+        assertSame(second, third);
+        assertEquals(html(first), html(second));
+    }
+
+    @Test
+    public void testPageIsReusedWhenOnlyFeatureFlagsChange() {
+        MoviesPage first = MoviesPage.fromConfiguration(moviesResponse("1"));
+        GetConfigurationResponse flagsChanged = GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String("{\"boolEnableFeature\":true," + MOVIES_JSON.substring(1)))
+                .configurationVersion("2")
+                .build();
+
+        MoviesPage second = MoviesPage.fromConfiguration(first, flagsChanged, true);
+        MoviesPage third = MoviesPage.fromConfiguration(second, moviesResponse("3").toBuilder()
+                .content(SdkBytes.fromUtf8String("{\"movies\":[{\"id\":1,\"movieName\":\"Memento\"}]}")).build(), true);
+
+        assertSame(first.getCatalog(), second.getCatalog());
+        assertEquals("W/\"2\"", second.getETag());
+        assertEquals(html(first), html(second));
+        assertNotSame(second.getCatalog(), third.getCatalog());
+        assertFalse(html(third).contains("Stardust"));
+    }
+
+    @Test
+    public void testStreamingPageRendersSameHtml() {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class))).thenReturn(moviesResponse("1"));
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ofSeconds(60), UUID.randomUUID().toString());
+        String prerendered = html(moviesController.movie(null));
+
+        MoviesController streamingController = new MoviesController();
+        streamingController.moviesConfigurationKey = configurationKey;
+        streamingController.appConfigUtility = moviesController.appConfigUtility;
+        streamingController.streamingHtml = true;
+        ResponseEntity<MoviesPage> streamed = streamingController.movie(null);
+
+        assertEquals(-1, streamed.getBody().getHtmlLength());
+        assertEquals(prerendered, html(streamed));
+    }
+
+    @Test
+    public void testAsyncMovieRendersSamePage() {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class))).thenReturn(moviesResponse("1"));
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ofSeconds(60), UUID.randomUUID().toString());
+
+        MoviesPage blocking = moviesController.movie(null).getBody();
+        MoviesPage async = moviesController.movieAsync(null).join().getBody();
+
+        assertSame(blocking, async);
+        verify(appConfigClient, times(1)).getConfiguration(any(GetConfigurationRequest.class));
+    }
+
+    @Test
+    public void testAsyncMovieFallsBackToStaticMovies() {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class)))
+                .thenThrow(new IllegalStateException("no network"));
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ofSeconds(60), UUID.randomUUID().toString());
+
+        String moviesHtml = html(moviesController.movieAsync(null).join());
+
+        assertTrue(moviesHtml.contains(MoviesController.PAIDMOVIES[0].getMovieName()));
+    }
+
+    @Test
+    public void testETagFollowsConfigurationVersion() {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class)))
+                .thenReturn(moviesResponse("1"))
+                .thenReturn(moviesResponse("2"));
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ZERO, UUID.randomUUID().toString());
+
+        assertEquals("W/\"1\"", moviesController.movie(null).getHeaders().getETag());
+        assertEquals("W/\"2\"", moviesController.movie(null).getHeaders().getETag());
+    }
+
+    @Test
+    public void testGzipIsSentOnlyWhenAccepted() throws Exception {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class))).thenReturn(moviesResponse("1"));
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ofSeconds(60), UUID.randomUUID().toString());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(moviesController)
+                .setMessageConverters(new MoviesPageHttpMessageConverter())
+                .build();
+
+        MvcResult plain = mockMvc.perform(get("/movies/getMovies")).andReturn();
+        MvcResult gzip = mockMvc.perform(get("/movies/getMovies").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andReturn();
+
+        assertNull(plain.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("gzip", gzip.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, gzip.getResponse().getHeader(HttpHeaders.VARY));
+        byte[] compressed = gzip.getResponse().getContentAsByteArray();
+        assertEquals(compressed.length, gzip.getResponse().getContentLength());
+        assertEquals(plain.getResponse().getContentAsString(), gunzip(compressed));
+    }
+
+    @Test
+    public void testMatchingIfNoneMatchIsAnsweredWithNotModified() throws Exception {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class))).thenReturn(moviesResponse("1"));
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ofSeconds(60), UUID.randomUUID().toString());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(moviesController)
+                .setMessageConverters(new MoviesPageHttpMessageConverter())
+                .build();
+
+        MvcResult current = mockMvc.perform(get("/movies/getMovies").header(HttpHeaders.IF_NONE_MATCH, "W/\"1\""))
+                .andReturn();
+        MvcResult outdated = mockMvc.perform(get("/movies/getMovies").header(HttpHeaders.IF_NONE_MATCH, "W/\"0\""))
+                .andReturn();
+
+        assertEquals(304, current.getResponse().getStatus());
+        assertEquals(0, current.getResponse().getContentAsByteArray().length);
+        assertEquals(200, outdated.getResponse().getStatus());
+        assertTrue(outdated.getResponse().getContentAsString().contains("<h3>Memento</h3>"));
+    }
+
+    @Test
+    public void testMoviesArePagedAndLookedUpFromTheIndex() throws Exception {
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class))).thenReturn(moviesResponse("1"));
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ofSeconds(60), UUID.randomUUID().toString());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(moviesController)
+                .setMessageConverters(new MoviesPageHttpMessageConverter())
+                .build();
+
+        String secondPage = mockMvc.perform(get("/movies?page=1&limit=1")).andReturn().getResponse().getContentAsString();
+        String byPrefix = mockMvc.perform(get("/movies?prefix=mem")).andReturn().getResponse().getContentAsString();
+        MvcResult byId = mockMvc.perform(get("/movies/2")).andReturn();
+
+        assertTrue(secondPage.contains("<h3>Stardust</h3>"));
+        assertFalse(secondPage.contains("<h3>Memento</h3>"));
+        assertTrue(byPrefix.contains("<h3>Memento</h3>"));
+        assertFalse(byPrefix.contains("<h3>Stardust</h3>"));
+        assertTrue(byId.getResponse().getContentAsString().contains("<h3>Stardust</h3>"));
+        assertEquals("W/\"1\"", byId.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(404, mockMvc.perform(get("/movies/3")).andReturn().getResponse().getStatus());
+        assertEquals(400, mockMvc.perform(get("/movies?limit=0")).andReturn().getResponse().getStatus());
+        assertEquals(400, mockMvc.perform(get("/movies?limit=" + (MoviesController.MAX_PAGE_SIZE + 1)))
+                .andReturn().getResponse().getStatus());
+        assertEquals(200, mockMvc.perform(get("/movies/getMovies")).andReturn().getResponse().getStatus());
+        verify(appConfigClient, times(1)).getConfiguration(any(GetConfigurationRequest.class));
+    }
+
+    @Test
+    public void testItemLimitFlagCutsPages() throws Exception {
+        String json = "{\"boolEnableFeature\":true,\"intItemLimit\":1," + MOVIES_JSON.substring(1);
+        when(appConfigClient.getConfiguration(any(GetConfigurationRequest.class))).thenReturn(
+                GetConfigurationResponse.builder().content(SdkBytes.fromUtf8String(json)).configurationVersion("1").build());
+        moviesController.appConfigUtility = new AppConfigUtility(appConfigClient, new ConfigurationCache(),
+                Duration.ofSeconds(60), UUID.randomUUID().toString());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(moviesController)
+                .setMessageConverters(new MoviesPageHttpMessageConverter())
+                .build();
+
+        String page = mockMvc.perform(get("/movies?limit=10")).andReturn().getResponse().getContentAsString();
+
+        assertTrue(page.contains("<h3>Memento</h3>"));
+        assertFalse(page.contains("<h3>Stardust</h3>"));
+        assertTrue(moviesController.featureFlags.get().isEnableFeature());
+        assertEquals("1", moviesController.featureFlags.getVersion());
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(MoviesController.acceptsGzip("gzip"));
+        assertTrue(MoviesController.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(MoviesController.acceptsGzip("br, *"));
+        assertFalse(MoviesController.acceptsGzip(null));
+        assertFalse(MoviesController.acceptsGzip("identity"));
+        assertFalse(MoviesController.acceptsGzip("gzip;q=0"));
+        assertFalse(MoviesController.acceptsGzip("*, gzip;q=0"));
+    }
+
+    private static String gunzip(final byte[] compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String html(final ResponseEntity<MoviesPage> response) {
+        return html(response.getBody());
+    }
+
+    private static String html(final MoviesPage page) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            page.writeHtml(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static GetConfigurationResponse moviesResponse(final String version) {
+        return GetConfigurationResponse.builder()
+                .content(SdkBytes.fromUtf8String(MOVIES_JSON))
+                .configurationVersion(version)
+                .build();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,254 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.cache.ConfigurationCacheItem;
+import com.amazonaws.samples.appconfig.cache.RefreshPolicy;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+import software.amazon.awssdk.services.appconfig.model.ResourceNotFoundException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RefreshPolicyTest {
+
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+
+    private AppConfigDataProviderTest.MutableClock clock;
+    private RefreshPolicy policy;
+
+    @Before
+    public void setUp() {
+        clock = new AppConfigDataProviderTest.MutableClock();
+        policy = new RefreshPolicy(Duration.ofSeconds(1), Duration.ofSeconds(8), 5, Duration.ofMinutes(1),
+                Duration.ofMinutes(4), clock);
+    }
+
+    @Test
+    public void testBackoffDoublesWithJitterUpToTheMaximum() {
+        long[] maxDelays = {1000, 2000, 4000, 8000};
+        for (long maxDelay : maxDelays) {
+            long delay = policy.onFailure(KEY).toMillis();
+            assertTrue(delay + " for " + maxDelay, delay >= maxDelay / 2 && delay <= maxDelay);
+            assertFalse(policy.isFetchAllowed(KEY));
+            clock.advance(Duration.ofMillis(delay));
+            assertTrue(policy.isFetchAllowed(KEY));
+        }
+        assertFalse(policy.isOpen(KEY));
+    }
+
+    @Test
+    public void testCircuitOpensAfterConsecutiveFailuresAndClosesOnSuccess() {
+        for (int i = 0; i < 4; i++) {
+            policy.onFailure(KEY);
+        }
+        long openDelay = policy.onFailure(KEY).toMillis();
+
+        assertTrue(policy.isOpen(KEY));
+        assertTrue(openDelay >= 60000 && openDelay <= 75000);
+        clock.advance(Duration.ofMillis(openDelay - 1));
+        assertFalse(policy.isFetchAllowed(KEY));
+        clock.advance(Duration.ofMillis(1));
+        assertTrue(policy.isFetchAllowed(KEY));
+
+        policy.onSuccess(KEY, Duration.ofSeconds(30), true);
+        assertFalse(policy.isOpen(KEY));
+        assertEquals(0, policy.getFailureCount(KEY));
+        assertTrue(policy.isFetchAllowed(KEY));
+    }
+
+    @Test
+    public void testOneConcurrentCallerProbesTheOpenCircuit() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            policy.onFailure(KEY);
+        }
+        clock.advance(Duration.ofSeconds(75));
+
+        assertEquals(1, concurrentlyAllowedFetches(8));
+        assertFalse(policy.isFetchDue(KEY));
+
+        // the probe failed: the circuit opens again, then lets one caller through
+        policy.onFailure(KEY);
+        assertEquals(0, concurrentlyAllowedFetches(8));
+        clock.advance(Duration.ofSeconds(75));
+        assertTrue(policy.isFetchDue(KEY));
+        assertEquals(1, concurrentlyAllowedFetches(8));
+
+        policy.onSuccess(KEY, Duration.ofSeconds(30), false);
+        assertEquals(8, concurrentlyAllowedFetches(8));
+    }
+
+    @Test
+    public void testUnreportedProbeIsRetriedAfterTheOpenDuration() {
+        policy.onFailure(KEY);
+        clock.advance(Duration.ofSeconds(1));
+        assertTrue(policy.isFetchAllowed(KEY));
+        assertFalse(policy.isFetchAllowed(KEY));
+
+        clock.advance(Duration.ofMinutes(1));
+        assertTrue(policy.isFetchAllowed(KEY));
+    }
+
+    @Test
+    public void testOpenCircuitIsRespectedWithoutACachedItem() {
+        AtomicInteger fetches = new AtomicInteger();
+        AppConfigUtility appConfigUtility = new AppConfigUtility(null, (key, version) -> {
+            fetches.incrementAndGet();
+            throw new IllegalStateException("throttled");
+        }, new ConfigurationCache(), Duration.ofSeconds(30), policy);
+        // the key failed before its item was evicted
+        for (int i = 0; i < 5; i++) {
+            policy.onFailure(KEY);
+        }
+
+        try {
+            appConfigUtility.getConfiguration(KEY);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("is not cached and cannot be fetched"));
+        }
+        try {
+            appConfigUtility.getConfigurationAsync(KEY).join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, fetches.get());
+    }
+
+    @Test
+    public void testRejectedFetchKeepsTheAdaptiveTtl() {
+        Duration ttl = Duration.ofSeconds(30);
+        AtomicInteger fetches = new AtomicInteger();
+        AppConfigUtility appConfigUtility = new AppConfigUtility(null, (key, version) -> {
+            if (fetches.incrementAndGet() == 1) {
+                return GetConfigurationResponse.builder()
+                        .content(SdkBytes.fromUtf8String("{}"))
+                        .configurationVersion("1")
+                        .build();
+            }
+            throw ResourceNotFoundException.builder().message("The profile was deleted").build();
+        }, new ConfigurationCache(), ttl, policy);
+        appConfigUtility.getConfiguration(KEY);
+
+        // not counted as unchanged polls, so the deleted profile is checked every TTL
+        for (int i = 0; i < 3; i++) {
+            clock.advance(ttl);
+            assertEquals("1", appConfigUtility.getConfiguration(KEY).configurationVersion());
+        }
+        assertEquals(4, fetches.get());
+        assertFalse(policy.isOpen(KEY));
+    }
+
+    @Test
+    public void testItemRefreshTimeIsTheTtlEvenAfterAnException() {
+        // backing off after failures is up to the refresh policy
+        ConfigurationCacheItem<GetConfigurationResponse> item = new ConfigurationCacheItem<>(Duration.ofSeconds(30), clock);
+        item.setException(new IllegalStateException("throttled"));
+
+        item.calculateAndSetRefreshTime();
+
+        assertEquals(clock.millis() + 30000, item.getRefreshTime());
+        assertFalse(item.isRefreshNeeded());
+    }
+
+    @Test
+    public void testTtlGrowsWhileTheConfigurationDoesNotChange() {
+        Duration ttl = Duration.ofSeconds(30);
+
+        assertEquals(ttl, policy.onSuccess(KEY, ttl, true));
+        assertEquals(Duration.ofSeconds(60), policy.onSuccess(KEY, ttl, false));
+        assertEquals(Duration.ofSeconds(120), policy.onSuccess(KEY, ttl, false));
+        assertEquals(Duration.ofSeconds(240), policy.onSuccess(KEY, ttl, false));
+        assertEquals(Duration.ofSeconds(240), policy.onSuccess(KEY, ttl, false));
+        assertEquals(ttl, policy.onSuccess(KEY, ttl, true));
+    }
+
+    @Test
+    public void testFailingKeyIsNotFetchedOnEveryRequest() {
+        AtomicInteger fetches = new AtomicInteger();
+        AppConfigUtility appConfigUtility = new AppConfigUtility(null, (key, version) -> {
+            fetches.incrementAndGet();
+            throw new IllegalStateException("throttled");
+        }, new ConfigurationCache(), Duration.ofSeconds(30), policy);
+
+        for (int i = 0; i < 100; i++) {
+            try {
+                appConfigUtility.getConfiguration(KEY);
+                fail();
+            } catch (IllegalStateException e) {
+                assertEquals("throttled", e.getMessage());
+            }
+        }
+        assertEquals(1, fetches.get());
+
+        clock.advance(Duration.ofSeconds(1));
+        try {
+            appConfigUtility.getConfiguration(KEY);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(2, fetches.get());
+        }
+    }
+
+    @Test
+    public void testLastGoodConfigurationIsServedWhileFetchesFail() {
+        AtomicInteger fetches = new AtomicInteger();
+        AppConfigUtility appConfigUtility = new AppConfigUtility(null, (key, version) -> {
+            if (fetches.incrementAndGet() == 1) {
+                return GetConfigurationResponse.builder()
+                        .content(SdkBytes.fromUtf8String("{}"))
+                        .configurationVersion("1")
+                        .build();
+            }
+            throw new IllegalStateException("unavailable");
+        }, new ConfigurationCache(), Duration.ofSeconds(30), policy);
+        appConfigUtility.getConfiguration(KEY);
+
+        for (int i = 0; i < 10; i++) {
+            clock.advance(Duration.ofSeconds(20));
+            assertEquals("1", appConfigUtility.getConfiguration(KEY).configurationVersion());
+        }
+
+        assertTrue(policy.isOpen(KEY));
+        assertTrue(fetches.get() < 10);
+    }
+
+    private int concurrentlyAllowedFetches(final int callers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> allowed = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                allowed.add(executor.submit(() -> {
+                    start.await();
+                    return policy.isFetchAllowed(KEY);
+                }));
+            }
+            start.countDown();
+            int count = 0;
+            for (Future<Boolean> future : allowed) {
+                count += future.get() ? 1 : 0;
+            }
+            return count;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.amazonaws.samples.appconfig.movies;
+
+import com.amazonaws.samples.appconfig.cache.ConfigurationCache;
+import com.amazonaws.samples.appconfig.model.ConfigurationKey;
+import com.amazonaws.samples.appconfig.utils.AppConfigUtility;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfig.AppConfigClient;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationRequest;
+import software.amazon.awssdk.services.appconfig.model.GetConfigurationResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Many threads asking for the same missing or expired key must result in exactly one AppConfig call.
+ */
+public class SingleFlightTest {
+
+    private static final int THREADS = 64;
+    private static final ConfigurationKey KEY = new ConfigurationKey("myApp", "dev", "myConfig");
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private ExecutorService executor;
+    private AppConfigUtility appConfigUtility;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        appConfigUtility = new AppConfigUtility(new SlowAppConfigClient(), new ConfigurationCache(),
+                Duration.ofMillis(300), UUID.randomUUID().toString());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneUpstreamCall() throws Exception {
+        assertEquals(THREADS, requestConcurrently());
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void testConcurrentRequestsAfterExpiryShareOneUpstreamCall() throws Exception {
+        requestConcurrently();
+        Thread.sleep(400);
+
+        requestConcurrently();
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    /**
+     * Releases all threads at once and returns how many of them got a configuration.
+     */
+    private int requestConcurrently() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<GetConfigurationResponse>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return appConfigUtility.getConfiguration(KEY);
+            }));
+        }
+        start.countDown();
+        int served = 0;
+        for (Future<GetConfigurationResponse> result : results) {
+            if (result.get().content() != null) {
+                served++;
+            }
+        }
+        return served;
+    }
+
+    private class SlowAppConfigClient implements AppConfigClient {
+        @Override
+        public GetConfigurationResponse getConfiguration(final GetConfigurationRequest request) {
+            final int call = upstreamCalls.incrementAndGet();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return GetConfigurationResponse.builder()
+                    .content(SdkBytes.fromUtf8String("{\"movies\":[]}"))
+                    .configurationVersion(String.valueOf(call))
+                    .build();
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}